@@ -1,5 +1,6 @@
 package com.dyuus.academy_features;
 
+import com.dyuus.academy_features.network.ShopNetworkingClient;
 import com.dyuus.academy_features.network.TeraNetworkingClient;
 import com.dyuus.academy_features.screen.ShopScreen;
 import com.dyuus.academy_features.screen.TeraTypeSelectionScreen;
@@ -15,6 +16,7 @@ public class DyuusAcademyFeaturesClient implements ClientModInitializer {
 
 		// Register client-side networking receivers
 		TeraNetworkingClient.registerClientReceivers();
+		ShopNetworkingClient.registerClientReceivers();
 
 		DyuusAcademyFeatures.LOGGER.info("Dyuu's Academy Features Client initialized");
 	}
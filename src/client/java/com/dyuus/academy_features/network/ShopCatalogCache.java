@@ -0,0 +1,184 @@
+package com.dyuus.academy_features.network;
+
+import com.dyuus.academy_features.DyuusAcademyFeatures;
+import com.dyuus.academy_features.config.ShopCatalog;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.util.Util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Client-side cache of shop catalogs, keyed by version.
+ *
+ * Catalogs received from the server are kept in memory and on disk, so reopening a shop
+ * (in this session or a later one) does not download its catalog again as long as it did
+ * not change. Both are bounded to the most recently used catalogs. Only used on the
+ * client thread; disk writes happen on Minecraft's IO worker.
+ */
+public class ShopCatalogCache {
+    private static final int MAX_ENTRIES = 32;
+    private static final String EXTENSION = ".bin";
+
+    private static final Map<Long, ShopCatalog> catalogs = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ShopCatalog> eldest) {
+            if (size() > MAX_ENTRIES) {
+                delete(eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private static boolean loaded = false;
+
+    /**
+     * Gets a cached catalog.
+     *
+     * @param version The catalog's version
+     * @return The catalog, or null if it is not cached
+     */
+    public static ShopCatalog get(long version) {
+        loadIfNeeded();
+        return catalogs.get(version);
+    }
+
+    /**
+     * Caches a catalog received from the server.
+     */
+    public static void put(ShopCatalog catalog) {
+        loadIfNeeded();
+        if (catalogs.put(catalog.version(), catalog) == null) {
+            save(catalog);
+        }
+    }
+
+    /**
+     * @return Versions of the cached catalogs, most recently used last
+     */
+    public static long[] versions() {
+        loadIfNeeded();
+        long[] versions = new long[catalogs.size()];
+        int i = 0;
+        for (long version : catalogs.keySet()) {
+            versions[i++] = version;
+        }
+        return versions;
+    }
+
+    // ==================== Persistence ====================
+
+    private static Path directory() {
+        return FabricLoader.getInstance().getGameDir().resolve(DyuusAcademyFeatures.MOD_ID).resolve("shop-catalogs");
+    }
+
+    private static Path file(long version) {
+        return directory().resolve(Long.toHexString(version) + EXTENSION);
+    }
+
+    /**
+     * Loads the catalogs saved by previous sessions, oldest first so the LRU order is kept.
+     */
+    private static void loadIfNeeded() {
+        if (loaded) return;
+        loaded = true;
+
+        Path directory = directory();
+        if (!Files.isDirectory(directory)) return;
+
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(directory)) {
+            stream.filter(path -> path.getFileName().toString().endsWith(EXTENSION)).forEach(files::add);
+        } catch (IOException e) {
+            DyuusAcademyFeatures.LOGGER.warn("Failed to list cached shop catalogs", e);
+            return;
+        }
+        files.sort(Comparator.comparing(ShopCatalogCache::lastModified));
+
+        for (Path path : files) {
+            ShopCatalog catalog = read(path);
+            if (catalog != null) {
+                catalogs.put(catalog.version(), catalog);
+            } else {
+                deleteQuietly(path);
+            }
+        }
+    }
+
+    private static ShopCatalog read(Path path) {
+        try (InputStream in = Files.newInputStream(path); DataInputStream data = new DataInputStream(in)) {
+            String shopId = data.readUTF();
+            long version = data.readLong();
+            byte[] bytes = data.readAllBytes();
+
+            ByteBuf buf = Unpooled.wrappedBuffer(bytes);
+            try {
+                ShopCatalog catalog = ShopCatalog.read(buf, shopId, version);
+                return buf.isReadable() ? null : catalog;
+            } finally {
+                buf.release();
+            }
+        } catch (Exception e) {
+            DyuusAcademyFeatures.LOGGER.warn("Ignoring unreadable cached shop catalog {}", path.getFileName());
+            return null;
+        }
+    }
+
+    private static void save(ShopCatalog catalog) {
+        String shopId = catalog.shopId() != null ? catalog.shopId() : "";
+        long version = catalog.version();
+        byte[] bytes = catalog.toBytes();
+
+        Util.getIoWorkerExecutor().execute(() -> {
+            try {
+                Path target = file(version);
+                Files.createDirectories(target.getParent());
+                Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+                try (OutputStream out = Files.newOutputStream(temp); DataOutputStream data = new DataOutputStream(out)) {
+                    data.writeUTF(shopId);
+                    data.writeLong(version);
+                    data.write(bytes);
+                }
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                DyuusAcademyFeatures.LOGGER.warn("Failed to cache shop catalog {}", shopId, e);
+            }
+        });
+    }
+
+    private static void delete(long version) {
+        Path path = file(version);
+        Util.getIoWorkerExecutor().execute(() -> deleteQuietly(path));
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            DyuusAcademyFeatures.LOGGER.warn("Failed to delete cached shop catalog {}", path.getFileName(), e);
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
@@ -1,14 +1,119 @@
 package com.dyuus.academy_features.network;
 
+import com.dyuus.academy_features.config.ShopCatalog;
+import com.dyuus.academy_features.screen.ShopScreenHandler;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 
+import java.util.List;
+
+/**
+ * Handles client-side networking for shops.
+ */
 public class ShopNetworkingClient {
 
-    public static void sendBuyRequest(int itemIndex, int quantity) {
-        ClientPlayNetworking.send(new ShopNetworking.BuyPayload(itemIndex, quantity));
+    /**
+     * Registers client-side packet receivers.
+     * Call this during CLIENT mod initialization (in DyuusAcademyFeaturesClient).
+     */
+    public static void registerClientReceivers() {
+        // Receive a catalog that was not in the cache
+        ClientPlayNetworking.registerGlobalReceiver(ShopNetworking.CatalogPayload.ID, (payload, context) -> {
+            context.client().execute(() -> {
+                ShopCatalog catalog = payload.catalog();
+                ShopCatalogCache.put(catalog);
+                if (context.player().currentScreenHandler instanceof ShopScreenHandler shopHandler
+                        && shopHandler.getCatalog() == null
+                        && shopHandler.getData().version() == catalog.version()) {
+                    shopHandler.setCatalog(catalog);
+                }
+            });
+        });
+
+        // Receive a page of a catalog sent page by page
+        ClientPlayNetworking.registerGlobalReceiver(ShopNetworking.PagePayload.ID, (payload, context) -> {
+            context.client().execute(() -> {
+                if (!(context.player().currentScreenHandler instanceof ShopScreenHandler shopHandler)
+                        || shopHandler.getData().version() != payload.version()) {
+                    return;
+                }
+                if (shopHandler.acceptPage(payload.page(), payload.items())) {
+                    // Complete: keep it like a catalog received at once
+                    ShopScreenHandler.Data data = shopHandler.getData();
+                    ShopCatalog catalog = ShopCatalog.of(data.shopId(), data.title(), shopHandler.getReceivedItems());
+                    if (catalog.version() == data.version()) {
+                        ShopCatalogCache.put(catalog);
+                    }
+                    shopHandler.setCatalog(catalog);
+                }
+            });
+        });
+
+        // Acknowledgement of quick mode transactions
+        ClientPlayNetworking.registerGlobalReceiver(ShopNetworking.TransactionResultPayload.ID, (payload, context) -> {
+            context.client().execute(() -> ShopTransactionTracker.accept(payload));
+        });
+
+        // Tell the server which catalogs it does not need to send
+        ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> {
+            long[] versions = ShopCatalogCache.versions();
+            if (versions.length > 0) {
+                sender.sendPacket(new ShopNetworking.CachedCatalogsPayload(versions));
+            }
+        });
+    }
+
+    /**
+     * Provides a shop screen with its catalog: the one sent with it (then cached), the cached
+     * one, or, if the cache no longer has it, one requested from the server. Paged catalogs
+     * are also taken from the cache when possible, otherwise their pages are requested as
+     * the screen needs them (see {@link #requestPage}).
+     *
+     * @param handler The shop screen handler being opened
+     */
+    public static void resolveCatalog(ShopScreenHandler handler) {
+        ShopScreenHandler.Data data = handler.getData();
+        if (data.delivery() == ShopScreenHandler.Delivery.INLINE) {
+            ShopCatalogCache.put(data.catalog());
+            return;
+        }
+
+        ShopCatalog cached = ShopCatalogCache.get(data.version());
+        if (cached != null) {
+            handler.setCatalog(cached);
+        } else if (data.delivery() == ShopScreenHandler.Delivery.CACHED) {
+            ClientPlayNetworking.send(new ShopNetworking.CatalogRequestPayload(data.shopId(), data.version()));
+        }
+    }
+
+    /**
+     * Requests a page of a catalog sent page by page, unless it was already requested.
+     *
+     * @param handler The open shop screen handler
+     * @param page The page's index
+     * @return true if the page was requested
+     */
+    public static boolean requestPage(ShopScreenHandler handler, int page) {
+        if (!handler.markPageRequested(page)) return false;
+        ClientPlayNetworking.send(new ShopNetworking.PageRequestPayload(handler.getData().version(), page));
+        return true;
+    }
+
+    // Confirmed requests, answered in chat (quick mode requests go through ShopTransactionTracker).
+    // They take tokens from the same server bucket, so the tracker counts them too
+
+    public static void sendBuyRequest(long version, int entryId, int quantity) {
+        ShopTransactionTracker.spendToken();
+        ClientPlayNetworking.send(new ShopNetworking.BuyPayload(version, entryId, quantity, 0));
+    }
+
+    public static void sendSellRequest(long version, int entryId, int quantity) {
+        ShopTransactionTracker.spendToken();
+        ClientPlayNetworking.send(new ShopNetworking.SellPayload(version, entryId, quantity, 0));
     }
 
-    public static void sendSellRequest(int itemIndex, int quantity) {
-        ClientPlayNetworking.send(new ShopNetworking.SellPayload(itemIndex, quantity));
+    public static void sendCheckout(long version, List<ShopNetworking.CheckoutPayload.Line> lines) {
+        ShopTransactionTracker.spendToken();
+        ClientPlayNetworking.send(new ShopNetworking.CheckoutPayload(version, lines, 0));
     }
 }
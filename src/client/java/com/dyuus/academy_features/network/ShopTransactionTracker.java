@@ -0,0 +1,226 @@
+package com.dyuus.academy_features.network;
+
+import com.dyuus.academy_features.config.ShopItem;
+import com.dyuus.academy_features.network.ShopNetworking.TransactionResultPayload;
+import com.dyuus.academy_features.screen.ShopScreenHandler;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.minecraft.util.Util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Client-side state of quick mode shop transactions.
+ *
+ * Quick mode requests are sent back to back without waiting for each other, each with a
+ * sequence number. Until the server acknowledges them with a {@link TransactionResultPayload},
+ * the balance shown is the last confirmed one plus the expected effect of the requests in
+ * flight; each result replaces the confirmed balance and settles the requests it answers.
+ * Requests the server never answers are given up after a timeout. Requests are also paced
+ * with the server's token bucket for purchases and sales (see {@link ShopRateLimiter}), so a
+ * click the server would throttle is refused here instead of being sent. Only used on the
+ * client thread, for the open shop screen.
+ */
+public class ShopTransactionTracker {
+    // Requests in flight at most, further clicks are ignored
+    public static final int MAX_IN_FLIGHT = ShopNetworking.MAX_IN_FLIGHT;
+    private static final long TIMEOUT_MS = 10_000;
+
+    // Mirrors the server's bucket: kept across screens, like the server's
+    private static final ShopRateLimiter.TokenBucket tokens = ShopRateLimiter.newActionBucket();
+
+    // Sequence numbers start at 1: 0 marks requests answered in chat
+    private static int nextSeq = 1;
+    private static final Map<Integer, Pending> pending = new LinkedHashMap<>();
+
+    private static ShopScreenHandler handler;
+    private static long confirmedBalance;
+
+    // Last outcome, for the screen to show
+    private static TransactionResultPayload.Status lastStatus;
+    private static long lastDelta;
+    private static long lastResultTime;
+    // Changes whenever anything the getters return does
+    private static int revision;
+
+    /**
+     * A request awaiting its result.
+     *
+     * @param expectedDelta Expected change of the balance if it succeeds
+     */
+    private record Pending(long expectedDelta, long sentTime) {
+    }
+
+    /**
+     * Starts tracking the transactions of a newly opened shop screen.
+     */
+    public static void open(ShopScreenHandler shopHandler) {
+        handler = shopHandler;
+        confirmedBalance = shopHandler.getBalance();
+        pending.clear();
+        lastStatus = null;
+        lastResultTime = 0;
+        revision++;
+    }
+
+    // ==================== Requests ====================
+
+    /**
+     * Sends a quick mode purchase, unless the balance left after the requests in flight
+     * cannot pay for it.
+     *
+     * @return true if the request was sent
+     */
+    public static boolean buy(ShopScreenHandler shopHandler, ShopItem item, int quantity) {
+        long cost = (long) item.buyPrice * quantity;
+        if (shopHandler != handler || pending.size() >= MAX_IN_FLIGHT) return false;
+        // Sales in flight may still fail: only count them once confirmed
+        long spendable = confirmedBalance;
+        for (Pending request : pending.values()) {
+            spendable += Math.min(0, request.expectedDelta);
+        }
+        if (spendable < cost) {
+            settle(TransactionResultPayload.Status.INSUFFICIENT_FUNDS, 0);
+            return false;
+        }
+        if (!acquireToken()) return false;
+
+        int seq = track(-cost);
+        ClientPlayNetworking.send(new ShopNetworking.BuyPayload(shopHandler.getData().version(), item.entryId, quantity, seq));
+        return true;
+    }
+
+    /**
+     * Sends a quick mode sale.
+     *
+     * @param quantity Quantity to sell, -1 for as many as possible
+     * @return true if the request was sent
+     */
+    public static boolean sell(ShopScreenHandler shopHandler, ShopItem item, int quantity) {
+        if (shopHandler != handler || pending.size() >= MAX_IN_FLIGHT || !acquireToken()) return false;
+
+        // The quantity of a "sell max" is only known once the server answers
+        int seq = track(quantity == -1 ? 0 : (long) item.sellPrice * quantity);
+        ClientPlayNetworking.send(new ShopNetworking.SellPayload(shopHandler.getData().version(), item.entryId, quantity, seq));
+        return true;
+    }
+
+    /**
+     * Accounts for a request sent outside quick mode, which the server throttles with the
+     * same bucket.
+     */
+    static void spendToken() {
+        tokens.tryAcquire();
+    }
+
+    private static boolean acquireToken() {
+        if (tokens.tryAcquire()) return true;
+        settle(TransactionResultPayload.Status.THROTTLED, 0);
+        return false;
+    }
+
+    private static int track(long expectedDelta) {
+        int seq = nextSeq;
+        nextSeq = nextSeq == Integer.MAX_VALUE ? 1 : nextSeq + 1;
+        pending.put(seq, new Pending(expectedDelta, Util.getMeasuringTimeMs()));
+        publishBalance();
+        return seq;
+    }
+
+    // ==================== Results ====================
+
+    /**
+     * Applies a result received from the server.
+     */
+    static void accept(TransactionResultPayload result) {
+        boolean known = pending.remove(result.seq()) != null;
+        for (int seq : result.merged()) {
+            known |= pending.remove(seq) != null;
+        }
+        // Results for a previous screen
+        if (!known) return;
+
+        // The server's balance already includes every request it committed before this one
+        confirmedBalance = result.balance();
+        settle(result.status(), result.delta());
+    }
+
+    /**
+     * Gives up on requests the server did not answer in time. Call once per frame.
+     */
+    public static void expire() {
+        long now = Util.getMeasuringTimeMs();
+        boolean expired = false;
+        for (Iterator<Pending> it = pending.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().sentTime >= TIMEOUT_MS) {
+                it.remove();
+                expired = true;
+            }
+        }
+        if (expired) {
+            settle(null, 0);
+        }
+    }
+
+    private static void settle(TransactionResultPayload.Status status, long delta) {
+        lastStatus = status;
+        lastDelta = delta;
+        lastResultTime = Util.getMeasuringTimeMs();
+        publishBalance();
+    }
+
+    /**
+     * Shows the predicted balance on the screen, e.g. for its affordability sort.
+     */
+    private static void publishBalance() {
+        revision++;
+        if (handler != null) {
+            handler.setBalance(getBalance());
+        }
+    }
+
+    // ==================== State ====================
+
+    /**
+     * @return The last confirmed balance plus the expected effect of the requests in flight
+     */
+    public static long getBalance() {
+        long balance = confirmedBalance;
+        for (Pending request : pending.values()) {
+            balance += request.expectedDelta;
+        }
+        return Math.max(0, balance);
+    }
+
+    /**
+     * @return A counter that changes whenever the balance, the requests in flight or the last
+     * outcome change, for the screen to rebuild what it shows of them
+     */
+    public static int getRevision() {
+        return revision;
+    }
+
+    public static int getInFlight() {
+        return pending.size();
+    }
+
+    /**
+     * @return Outcome of the last settled request, or null if there is none or it timed out
+     */
+    public static TransactionResultPayload.Status getLastStatus() {
+        return lastStatus;
+    }
+
+    public static long getLastDelta() {
+        return lastDelta;
+    }
+
+    /**
+     * @return Time the last request was settled at, in {@link Util#getMeasuringTimeMs()} time,
+     * or 0 if none was since the screen opened
+     */
+    public static long getLastResultTime() {
+        return lastResultTime;
+    }
+}
@@ -0,0 +1,188 @@
+package com.dyuus.academy_features.screen;
+
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.Util;
+
+/**
+ * Scrolling window over the entries matching the search, for {@link ShopScreen}'s scroll mode.
+ *
+ * The grid is laid out as rows of {@link #COLUMNS} entries, of which only the rows crossing
+ * the viewport, plus {@link #OVERSCAN_ROWS} above and below, are ever looked at. Their
+ * entries and display stacks are kept in a fixed pool of rows, indexed by row number modulo
+ * the pool size: a row is only rebuilt when it scrolls into a slot or the search results
+ * change, so the cost of a frame depends on the viewport's size, not on the shop's.
+ *
+ * Scrolling eases towards its target over a few frames, based on the time elapsed between
+ * frames rather than their number.
+ */
+class ShopGridViewport {
+    static final int COLUMNS = 9;
+    static final int VISIBLE_ROWS = 3;
+    static final int CELL_SIZE = 18;
+    static final int HEIGHT = VISIBLE_ROWS * CELL_SIZE;
+
+    // Rows prepared outside the viewport on each side
+    private static final int OVERSCAN_ROWS = 1;
+    // A viewport between two rows crosses VISIBLE_ROWS + 1 of them
+    private static final int POOL_SIZE = VISIBLE_ROWS + 1 + 2 * OVERSCAN_ROWS;
+    // Time for the scroll to cover about two thirds of the way to its target
+    private static final double SMOOTHING_MS = 50;
+
+    private final ShopRenderModel model;
+    private final Row[] pool = new Row[POOL_SIZE];
+
+    // Scroll offsets, in pixels from the top of the grid
+    private double scroll;
+    private double target;
+    private long lastFrame;
+
+    ShopGridViewport(ShopRenderModel model) {
+        this.model = model;
+        for (int i = 0; i < POOL_SIZE; i++) {
+            pool[i] = new Row();
+        }
+    }
+
+    // ==================== Scrolling ====================
+
+    /**
+     * Scrolls by a number of rows, negative to scroll up.
+     */
+    void scrollBy(double rows) {
+        target = clamp(target + rows * CELL_SIZE);
+    }
+
+    /**
+     * Jumps back to the first row, without easing.
+     */
+    void reset() {
+        scroll = 0;
+        target = 0;
+    }
+
+    /**
+     * Advances the scroll towards its target; call once per frame before drawing.
+     */
+    void update() {
+        long now = Util.getMeasuringTimeMs();
+        long elapsed = lastFrame == 0 ? 0 : now - lastFrame;
+        lastFrame = now;
+
+        // The results may have shrunk since the last frame
+        target = clamp(target);
+        double remaining = target - scroll;
+        if (Math.abs(remaining) < 0.5) {
+            scroll = target;
+        } else {
+            scroll += remaining * (1 - Math.exp(-elapsed / SMOOTHING_MS));
+        }
+    }
+
+    int totalRows() {
+        return (model.filteredCount() + COLUMNS - 1) / COLUMNS;
+    }
+
+    private double maxScroll() {
+        return Math.max(0, totalRows() * CELL_SIZE - HEIGHT);
+    }
+
+    private double clamp(double offset) {
+        return Math.max(0, Math.min(offset, maxScroll()));
+    }
+
+    // ==================== Rows ====================
+
+    /**
+     * @return First row to prepare, overscan included
+     */
+    int firstRow() {
+        return Math.max(0, (int) (scroll / CELL_SIZE) - OVERSCAN_ROWS);
+    }
+
+    /**
+     * @return Row after the last one to prepare, overscan included
+     */
+    int endRow() {
+        int lastVisible = (int) Math.ceil((scroll + HEIGHT) / CELL_SIZE);
+        return Math.min(totalRows(), lastVisible + OVERSCAN_ROWS);
+    }
+
+    /**
+     * @return Vertical position of a row relative to the top of the viewport
+     */
+    int rowY(int row) {
+        return row * CELL_SIZE - (int) Math.round(scroll);
+    }
+
+    /**
+     * @return The row's entries, from the pool
+     */
+    Row row(int row) {
+        Row cached = pool[row % POOL_SIZE];
+        int revision = model.filterRevision();
+        if (cached.row != row || cached.revision != revision) {
+            cached.fill(model, row, revision);
+        }
+        return cached;
+    }
+
+    /**
+     * Finds the search result under a point.
+     *
+     * @param relativeX Horizontal position relative to the left of the grid
+     * @param relativeY Vertical position relative to the top of the viewport
+     * @return The result's position among the search results, or -1 if there is none
+     */
+    int positionAt(double relativeX, double relativeY) {
+        if (relativeX < 0 || relativeY < 0 || relativeY >= HEIGHT) return -1;
+        int col = (int) (relativeX / CELL_SIZE);
+        double contentY = relativeY + Math.round(scroll);
+        int row = (int) (contentY / CELL_SIZE);
+        if (col >= COLUMNS || relativeX - col * CELL_SIZE >= 16 || contentY - row * CELL_SIZE >= 16) return -1;
+
+        int position = row * COLUMNS + col;
+        return position < model.filteredCount() ? position : -1;
+    }
+
+    // ==================== Scrollbar ====================
+
+    /**
+     * @return Height of the scrollbar's thumb, or 0 when everything fits in the viewport
+     */
+    int thumbHeight() {
+        int contentHeight = totalRows() * CELL_SIZE;
+        if (contentHeight <= HEIGHT) return 0;
+        return Math.max(8, HEIGHT * HEIGHT / contentHeight);
+    }
+
+    /**
+     * @return Position of the scrollbar's thumb relative to the top of the viewport
+     */
+    int thumbY() {
+        double max = maxScroll();
+        return max == 0 ? 0 : (int) ((HEIGHT - thumbHeight()) * (scroll / max));
+    }
+
+    /**
+     * A row of the grid: the catalog indices and display stacks of its entries.
+     */
+    static class Row {
+        private int row = -1;
+        private int revision;
+        int count;
+        final int[] indices = new int[COLUMNS];
+        // Null for unknown items and entries not received yet
+        final ItemStack[] stacks = new ItemStack[COLUMNS];
+
+        private void fill(ShopRenderModel model, int row, int revision) {
+            this.row = row;
+            this.revision = revision;
+            int start = row * COLUMNS;
+            count = Math.max(0, Math.min(COLUMNS, model.filteredCount() - start));
+            for (int col = 0; col < count; col++) {
+                indices[col] = model.filteredIndex(start + col);
+                stacks[col] = model.stack(indices[col]);
+            }
+        }
+    }
+}
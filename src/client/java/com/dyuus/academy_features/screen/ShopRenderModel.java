@@ -0,0 +1,334 @@
+package com.dyuus.academy_features.screen;
+
+import com.dyuus.academy_features.config.ShopItem;
+import net.minecraft.item.ItemStack;
+import net.minecraft.registry.Registries;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+import net.minecraft.util.Identifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What {@link ShopScreen} draws, built once instead of every frame.
+ *
+ * Display stacks and tooltips are built the first time an entry is needed and kept until
+ * the catalog changes; entries are added to a {@link ShopSearchIndex} as they arrive, and
+ * the sort orders and categories of a {@link ShopViewIndex} are computed once the catalog is
+ * complete. The indices of the entries shown are only recomputed when the search, the view
+ * or the shop's contents change (a new catalog, or a page of a paged catalog arriving), so
+ * drawing a frame allocates nothing here.
+ */
+class ShopRenderModel {
+    private static final Text EMPTY_LINE = Text.literal("");
+    private static final Text BUY_HINT = Text.literal("Clic gauche: Acheter x1").formatted(Formatting.DARK_GRAY);
+    private static final Text SELL_HINT = Text.literal("Clic droit: Vendre x1").formatted(Formatting.DARK_GRAY);
+    private static final Text SHIFT_HINT = Text.literal("Shift + Clic: x64 / max stock").formatted(Formatting.DARK_GRAY);
+    private static final Text CART_HINT = Text.literal("Ctrl + Clic: Ajouter au panier").formatted(Formatting.DARK_GRAY);
+
+    private static final String[] NO_CATEGORIES = new String[0];
+
+    private final ShopScreenHandler handler;
+
+    // Handler contents the caches were built for
+    private int revision = -1;
+    private int size = -1;
+
+    // Per entry, by catalog index (null until first needed)
+    private ItemStack[] stacks = new ItemStack[0];
+    private List<Text>[] tooltips = newTooltipArray(0);
+    private boolean[] indexed = new boolean[0];
+    private ShopSearchIndex searchIndex = new ShopSearchIndex(0);
+    // Null until the catalog is complete
+    private ShopViewIndex views;
+
+    // Indices of the entries shown, in order: either results, or an array of the views or
+    // identity when nothing needs filtering (never modified then)
+    private int[] filtered = new int[0];
+    private int filteredCount;
+    private int[] results = new int[0];
+    private int[] identity = new int[0];
+    private boolean[] marks = new boolean[0];
+    // Incremented each time the filter is recomputed
+    private int filterRevision;
+    private String query = "";
+    private ShopViewIndex.Sort sort = ShopViewIndex.Sort.DEFAULT;
+    // Index into the view's categories, -1 for all
+    private int category = -1;
+    // Balance the affordability order was computed for
+    private long balance;
+    private boolean filterDirty = true;
+
+    ShopRenderModel(ShopScreenHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Sets the search query; the filter is recomputed on next use if it changed.
+     */
+    void setQuery(String query) {
+        String normalizedQuery = ShopSearchIndex.normalize(query);
+        if (!normalizedQuery.equals(this.query)) {
+            this.query = normalizedQuery;
+            this.filterDirty = true;
+        }
+    }
+
+    boolean hasQuery() {
+        return !query.isEmpty();
+    }
+
+    // ==================== Views ====================
+
+    void setSort(ShopViewIndex.Sort sort) {
+        if (sort != this.sort) {
+            this.sort = sort;
+            this.filterDirty = true;
+        }
+    }
+
+    ShopViewIndex.Sort sort() {
+        return sort;
+    }
+
+    /**
+     * Shows a single category.
+     *
+     * @param category Index into {@link #categories()}, or -1 for all
+     */
+    void setCategory(int category) {
+        if (category != this.category) {
+            this.category = category;
+            this.filterDirty = true;
+        }
+    }
+
+    int category() {
+        return category;
+    }
+
+    /**
+     * @return The catalog's categories, empty until it is complete
+     */
+    String[] categories() {
+        sync();
+        return views != null ? views.categories() : NO_CATEGORIES;
+    }
+
+    /**
+     * @return true if the screen needs every entry: a search, sort or category is active
+     */
+    boolean needsAllEntries() {
+        return hasQuery() || sort != ShopViewIndex.Sort.DEFAULT || category >= 0;
+    }
+
+    // ==================== Filtered entries ====================
+
+    /**
+     * @return Number of entries matching the search (all entries when it is empty)
+     */
+    int filteredCount() {
+        sync();
+        return filteredCount;
+    }
+
+    /**
+     * @return Catalog index of the i-th entry matching the search
+     */
+    int filteredIndex(int i) {
+        sync();
+        return filtered[i];
+    }
+
+    /**
+     * @return A number that changes whenever the entries matching the search may have changed
+     */
+    int filterRevision() {
+        sync();
+        return filterRevision;
+    }
+
+    int filteredPages() {
+        int count = filteredCount();
+        return count == 0 ? 1 : (count + ShopScreenHandler.ITEMS_PER_PAGE - 1) / ShopScreenHandler.ITEMS_PER_PAGE;
+    }
+
+    // ==================== Entries ====================
+
+    /**
+     * @return The entry's display stack, or null if its item is unknown or not received yet
+     */
+    ItemStack stack(int index) {
+        sync();
+        ItemStack stack = stacks[index];
+        if (stack == null) {
+            ShopItem shopItem = handler.getItem(index);
+            if (shopItem == null) return null;
+            Identifier itemId = Identifier.tryParse(shopItem.itemId);
+            stack = itemId != null ? new ItemStack(Registries.ITEM.get(itemId)) : ItemStack.EMPTY;
+            stacks[index] = stack;
+        }
+        return stack.isEmpty() ? null : stack;
+    }
+
+    /**
+     * @return The entry's tooltip, or null if it was not received yet
+     */
+    List<Text> tooltip(int index) {
+        sync();
+        List<Text> tooltip = tooltips[index];
+        if (tooltip == null) {
+            ShopItem shopItem = handler.getItem(index);
+            if (shopItem == null) return null;
+            tooltip = buildTooltip(shopItem);
+            tooltips[index] = tooltip;
+        }
+        return tooltip;
+    }
+
+    private static List<Text> buildTooltip(ShopItem shopItem) {
+        List<Text> tooltip = new ArrayList<>();
+        tooltip.add(Text.literal(shopItem.displayName).formatted(Formatting.AQUA));
+        tooltip.add(EMPTY_LINE);
+
+        if (shopItem.canBuy) {
+            tooltip.add(Text.literal("Achat: ")
+                    .formatted(Formatting.GRAY)
+                    .append(Text.literal(shopItem.buyPrice + " PokéDollars")
+                            .formatted(Formatting.GREEN)));
+        }
+        if (shopItem.canSell) {
+            tooltip.add(Text.literal("Vente: ")
+                    .formatted(Formatting.GRAY)
+                    .append(Text.literal(shopItem.sellPrice + " PokéDollars")
+                            .formatted(Formatting.GOLD)));
+        }
+
+        tooltip.add(EMPTY_LINE);
+        tooltip.add(BUY_HINT);
+        tooltip.add(SELL_HINT);
+        tooltip.add(SHIFT_HINT);
+        if (shopItem.canBuy) {
+            tooltip.add(CART_HINT);
+        }
+        return Collections.unmodifiableList(tooltip);
+    }
+
+    // ==================== Invalidation ====================
+
+    /**
+     * Drops caches the handler's contents no longer match, and recomputes the filter if needed.
+     */
+    private void sync() {
+        int currentRevision = handler.getContentRevision();
+        if (currentRevision != revision) {
+            int currentSize = handler.getItemCount();
+            if (currentSize != size || !handler.isPaged()) {
+                // New catalog: every entry may have changed
+                stacks = new ItemStack[currentSize];
+                tooltips = newTooltipArray(currentSize);
+                indexed = new boolean[currentSize];
+                searchIndex = new ShopSearchIndex(currentSize);
+                views = null;
+                category = -1;
+                results = new int[currentSize];
+                marks = new boolean[currentSize];
+                identity = new int[currentSize];
+                for (int i = 0; i < currentSize; i++) {
+                    identity[i] = i;
+                }
+                size = currentSize;
+            }
+            // Otherwise a page arrived: entries already built are still valid
+            index();
+            if (views == null && handler.getCatalog() != null) {
+                views = new ShopViewIndex(handler.getCatalog().items());
+            }
+            revision = currentRevision;
+            filterDirty = true;
+        }
+        if (sort == ShopViewIndex.Sort.AFFORDABLE && handler.getBalance() != balance) {
+            filterDirty = true;
+        }
+        if (filterDirty) {
+            filter();
+            filterDirty = false;
+        }
+    }
+
+    /**
+     * Adds the entries received since the last call to the search index.
+     */
+    private void index() {
+        for (int i = 0; i < size; i++) {
+            if (indexed[i]) continue;
+            // Paged catalogs are indexed as their pages arrive
+            ShopItem shopItem = handler.getItem(i);
+            if (shopItem == null) continue;
+            searchIndex.add(i, shopItem.displayName, shopItem.itemId);
+            indexed[i] = true;
+        }
+    }
+
+    /**
+     * Combines the search results with the view: the order of the sort (relevance by
+     * default), restricted to the category.
+     */
+    private void filter() {
+        filterRevision++;
+        balance = handler.getBalance();
+        // Views only apply once the catalog is complete
+        int[] order = views != null ? views.order(sort, balance) : null;
+        int selected = views != null ? category : -1;
+
+        if (query.isEmpty()) {
+            if (selected < 0) {
+                filtered = order != null ? order : identity;
+                filteredCount = size;
+            } else if (order == null) {
+                filtered = views.categoryEntries(selected);
+                filteredCount = filtered.length;
+            } else {
+                filteredCount = 0;
+                for (int index : order) {
+                    if (views.categoryOf(index) == selected) {
+                        results[filteredCount++] = index;
+                    }
+                }
+                filtered = results;
+            }
+            return;
+        }
+
+        int matches = searchIndex.search(query, results);
+        filteredCount = 0;
+        if (order == null) {
+            // Relevance order, as ranked by the search
+            for (int i = 0; i < matches; i++) {
+                int index = results[i];
+                if (selected < 0 || views.categoryOf(index) == selected) {
+                    results[filteredCount++] = index;
+                }
+            }
+        } else {
+            for (int i = 0; i < matches; i++) {
+                int index = results[i];
+                marks[index] = selected < 0 || views.categoryOf(index) == selected;
+            }
+            for (int index : order) {
+                if (marks[index]) {
+                    marks[index] = false;
+                    results[filteredCount++] = index;
+                }
+            }
+        }
+        filtered = results;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Text>[] newTooltipArray(int size) {
+        return (List<Text>[]) new List<?>[size];
+    }
+}
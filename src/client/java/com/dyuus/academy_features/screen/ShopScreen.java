@@ -1,49 +1,92 @@
 package com.dyuus.academy_features.screen;
 
 import com.dyuus.academy_features.config.ShopItem;
+import com.dyuus.academy_features.network.ShopNetworking;
 import com.dyuus.academy_features.network.ShopNetworkingClient;
+import com.dyuus.academy_features.network.ShopTransactionTracker;
 import net.minecraft.client.gui.DrawContext;
 import net.minecraft.client.gui.screen.ingame.HandledScreen;
+import net.minecraft.client.gui.tooltip.Tooltip;
 import net.minecraft.client.gui.widget.ButtonWidget;
 import net.minecraft.client.gui.widget.TextFieldWidget;
 import net.minecraft.entity.player.PlayerInventory;
-import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
-import net.minecraft.registry.Registries;
+import net.minecraft.text.MutableText;
 import net.minecraft.text.Text;
 import net.minecraft.util.Formatting;
 import net.minecraft.util.Identifier;
+import net.minecraft.util.Util;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 
 public class ShopScreen extends HandledScreen<ShopScreenHandler> {
     private static final Identifier SHOP_TEXTURE = Identifier.of("dyuus-academy-features", "textures/gui/shop_background.png");
     private static final Identifier INVENTORY_TEXTURE = Identifier.ofVanilla("textures/gui/container/generic_54.png");
-    private static final int ITEMS_PER_PAGE = 27; // 9 columns × 3 rows
+    private static final int ITEMS_PER_PAGE = ShopScreenHandler.ITEMS_PER_PAGE; // 9 columns × 3 rows
     private static final int SHOP_ROWS = 3;
+    // Pages of a paged catalog downloaded at once while searching
+    private static final int MAX_PAGES_IN_FLIGHT = 4;
+    private static final Text LOADING_TEXT = Text.literal("Chargement...").formatted(Formatting.GRAY);
+    // How long the outcome of a quick mode transaction stays shown
+    private static final long RESULT_DISPLAY_MS = 3000;
 
     private ButtonWidget previousButton;
     private ButtonWidget nextButton;
+    private ButtonWidget cartButton;
+    private ButtonWidget modeButton;
+    private ButtonWidget sortButton;
+    private ButtonWidget categoryButton;
+    private ButtonWidget quickButton;
+
+    // ==================== Quick mode ====================
+    // Clicks buy and sell without confirmation, several requests in flight (kept for the session)
+    private static boolean quickMode = false;
+    // Status texts, rebuilt only when the tracker's revision changes
+    private Text balanceText;
+    private Text resultText;
+    private int resultTextWidth;
+    private int shownRevision;
+
+    // ==================== Scroll mode ====================
+    // Continuous scrolling instead of pages, on by default for shops sent page by page
+    private boolean scrollMode;
+    private final ShopGridViewport grid;
+
+    // ==================== Views ====================
+    // Categories the category button was last updated for
+    private String[] shownCategories;
+
+    // ==================== Cart ====================
+    // Quantity of each item in the cart, in the order they were added
+    private final Map<ShopItem, Integer> cart = new LinkedHashMap<>();
 
     // ==================== Search ====================
     private TextFieldWidget searchField;
-    private String searchQuery = "";
-    private List<ShopItem> filteredItems = new ArrayList<>();
+    // Cached stacks, tooltips and search results
+    private final ShopRenderModel model;
 
     // ==================== Confirmation dialog ====================
     private boolean showConfirmation = false;
-    private int pendingItemIndex = -1;
     private int pendingQuantity = 1;
     private boolean pendingIsBuy = true;
     private ShopItem pendingShopItem = null;
+    private boolean pendingCheckout = false;
 
     public ShopScreen(ShopScreenHandler handler, PlayerInventory inventory, Text title) {
         super(handler, inventory, Text.literal(handler.getShopTitle()));
+        this.model = new ShopRenderModel(handler);
+        this.grid = new ShopGridViewport(model);
+        this.scrollMode = handler.isPaged();
         this.backgroundHeight = 107 + 96;
         this.backgroundWidth = 176;
         this.playerInventoryTitleY = 107 + 4;
+
+        // Use the cached catalog, or download it if the server did not send it
+        ShopNetworkingClient.resolveCatalog(handler);
+        ShopTransactionTracker.open(handler);
     }
 
     @Override
@@ -55,7 +98,7 @@ public class ShopScreen extends HandledScreen<ShopScreenHandler> {
         // ==================== Search field ====================
         int searchX = this.x + 8;
         int searchY = this.y + 17;
-        int searchWidth = this.backgroundWidth - 16;
+        int searchWidth = this.backgroundWidth - 16 - 4 * 14;
 
         this.searchField = new TextFieldWidget(this.textRenderer, searchX, searchY, searchWidth, 12, Text.literal("Rechercher..."));
         this.searchField.setMaxLength(50);
@@ -65,10 +108,56 @@ public class ShopScreen extends HandledScreen<ShopScreenHandler> {
         this.searchField.setChangedListener(this::onSearchChanged);
         this.addDrawableChild(this.searchField);
 
+        this.modeButton = ButtonWidget.builder(Text.literal("⇅"), button -> {
+                    scrollMode = !scrollMode;
+                    grid.reset();
+                    handler.setCurrentPage(0);
+                    updateModeButton();
+                })
+                .dimensions(searchX + searchWidth + 2, searchY, 12, 12)
+                .build();
+        this.addDrawableChild(modeButton);
+        updateModeButton();
+
+        // ==================== View buttons ====================
+        // Click: next sort order, Shift + click: back to the shop's order
+        this.sortButton = ButtonWidget.builder(Text.literal(model.sort().symbol), button -> {
+                    model.setSort(hasShiftDown() ? ShopViewIndex.Sort.DEFAULT : model.sort().next());
+                    onViewChanged();
+                })
+                .dimensions(searchX + searchWidth + 16, searchY, 12, 12)
+                .build();
+        this.addDrawableChild(sortButton);
+
+        // Click: next category, Shift + click: every category
+        this.categoryButton = ButtonWidget.builder(Text.literal("#"), button -> {
+                    int categories = model.categories().length;
+                    int next = model.category() + 1;
+                    model.setCategory(hasShiftDown() || next >= categories ? -1 : next);
+                    onViewChanged();
+                })
+                .dimensions(searchX + searchWidth + 30, searchY, 12, 12)
+                .build();
+        this.addDrawableChild(categoryButton);
+        updateViewButtons();
+
+        this.quickButton = ButtonWidget.builder(Text.literal("⚡"), button -> {
+                    quickMode = !quickMode;
+                    updateQuickButton();
+                })
+                .dimensions(searchX + searchWidth + 44, searchY, 12, 12)
+                .build();
+        this.addDrawableChild(quickButton);
+        updateQuickButton();
+
         // ==================== Page buttons ====================
         int buttonY = this.y + 89;
 
         this.previousButton = ButtonWidget.builder(Text.literal("◀"), button -> {
+                    if (scrollMode) {
+                        grid.scrollBy(-ShopGridViewport.VISIBLE_ROWS);
+                        return;
+                    }
                     int currentPage = handler.getCurrentPage();
                     if (currentPage > 0) {
                         handler.setCurrentPage(currentPage - 1);
@@ -79,6 +168,10 @@ public class ShopScreen extends HandledScreen<ShopScreenHandler> {
         this.addDrawableChild(previousButton);
 
         this.nextButton = ButtonWidget.builder(Text.literal("▶"), button -> {
+                    if (scrollMode) {
+                        grid.scrollBy(ShopGridViewport.VISIBLE_ROWS);
+                        return;
+                    }
                     int currentPage = handler.getCurrentPage();
                     int totalPages = getFilteredTotalPages();
                     if (currentPage < totalPages - 1) {
@@ -89,65 +182,184 @@ public class ShopScreen extends HandledScreen<ShopScreenHandler> {
                 .build();
         this.addDrawableChild(nextButton);
 
-        // Initialize filtered items
-        updateFilteredItems();
+        // Left click: check out, Shift + click: empty the cart
+        this.cartButton = ButtonWidget.builder(Text.literal("Panier"), button -> {
+                    if (hasShiftDown()) {
+                        cart.clear();
+                        updateCartButton();
+                    } else if (!cart.isEmpty()) {
+                        openCheckout();
+                    }
+                })
+                .dimensions(this.x + 66, buttonY, 44, 14)
+                .build();
+        this.addDrawableChild(cartButton);
+        updateCartButton();
     }
 
     // ==================== Search logic ====================
 
     private void onSearchChanged(String query) {
-        this.searchQuery = query;
+        model.setQuery(query);
         handler.setCurrentPage(0);
-        updateFilteredItems();
+        grid.reset();
     }
 
-    private void updateFilteredItems() {
-        List<ShopItem> allItems = handler.getItems();
-        if (searchQuery == null || searchQuery.isEmpty()) {
-            filteredItems = new ArrayList<>(allItems);
-        } else {
-            String lowerQuery = searchQuery.toLowerCase(Locale.ROOT);
-            filteredItems = new ArrayList<>();
-            for (ShopItem item : allItems) {
-                if (item.displayName.toLowerCase(Locale.ROOT).contains(lowerQuery)) {
-                    filteredItems.add(item);
-                }
+    private void onViewChanged() {
+        handler.setCurrentPage(0);
+        grid.reset();
+        updateViewButtons();
+    }
+
+    private void updateViewButtons() {
+        ShopViewIndex.Sort sort = model.sort();
+        this.sortButton.setMessage(Text.literal(sort.symbol));
+        this.sortButton.setTooltip(Tooltip.of(Text.literal("Tri: " + sort.label + "\nClic: Tri suivant\nShift + Clic: Ordre du shop")
+                .formatted(Formatting.GRAY)));
+
+        String[] categories = model.categories();
+        this.shownCategories = categories;
+        this.categoryButton.active = categories.length > 0;
+        int category = model.category();
+        String categoryLabel = category >= 0 && category < categories.length ? categories[category] : "Toutes";
+        this.categoryButton.setTooltip(Tooltip.of(Text.literal(categories.length == 0
+                ? "Aucune catégorie"
+                : "Catégorie: " + categoryLabel + "\nClic: Catégorie suivante\nShift + Clic: Toutes").formatted(Formatting.GRAY)));
+    }
+
+    /**
+     * Requests the pages of a paged catalog the screen needs: the ones shown and the next
+     * one when browsing, every page (a few at a time) when searching, sorting or filtering
+     * by category.
+     */
+    private void requestMissingPages() {
+        if (!handler.isPaged()) return;
+
+        if (!model.needsAllEntries()) {
+            // Without a search, entries are shown in catalog order
+            int firstPage;
+            int lastPage;
+            if (scrollMode) {
+                firstPage = grid.firstRow() * ShopGridViewport.COLUMNS / ITEMS_PER_PAGE;
+                lastPage = Math.max(firstPage, (grid.endRow() * ShopGridViewport.COLUMNS - 1) / ITEMS_PER_PAGE);
+            } else {
+                firstPage = handler.getCurrentPage();
+                lastPage = firstPage;
+            }
+            for (int page = firstPage; page <= lastPage + 1; page++) {
+                ShopNetworkingClient.requestPage(handler, page);
+            }
+            return;
+        }
+
+        int budget = MAX_PAGES_IN_FLIGHT - handler.getPagesInFlight();
+        int pages = handler.getTotalPages();
+        for (int page = 0; page < pages && budget > 0; page++) {
+            if (ShopNetworkingClient.requestPage(handler, page)) {
+                budget--;
             }
         }
     }
 
     private int getFilteredTotalPages() {
-        if (filteredItems.isEmpty()) return 1;
-        return (filteredItems.size() + ITEMS_PER_PAGE - 1) / ITEMS_PER_PAGE;
+        return model.filteredPages();
     }
 
-    private int getRealIndex(ShopItem item) {
-        return handler.getItems().indexOf(item);
+    private void updateModeButton() {
+        this.modeButton.setTooltip(Tooltip.of(Text.literal(scrollMode
+                ? "Défilement continu (molette)\nClic: Afficher par pages"
+                : "Affichage par pages\nClic: Défilement continu").formatted(Formatting.GRAY)));
+    }
+
+    private void updateQuickButton() {
+        this.quickButton.setMessage(Text.literal("⚡").formatted(quickMode ? Formatting.YELLOW : Formatting.GRAY));
+        this.quickButton.setTooltip(Tooltip.of(Text.literal(quickMode
+                ? "Mode rapide: activé\nLes clics achètent et vendent sans confirmation"
+                : "Mode rapide: désactivé\nClic: Acheter et vendre sans confirmation").formatted(Formatting.GRAY)));
+    }
+
+    // ==================== Cart logic ====================
+
+    private void addToCart(ShopItem shopItem, int quantity) {
+        if (!cart.containsKey(shopItem) && cart.size() >= ShopNetworking.MAX_CART_LINES) return;
+        cart.merge(shopItem, quantity, (a, b) -> Math.min(a + b, ShopScreenHandler.MAX_CART_QUANTITY));
+        updateCartButton();
+    }
+
+    private long getCartTotal() {
+        long total = 0;
+        for (Map.Entry<ShopItem, Integer> entry : cart.entrySet()) {
+            total += (long) entry.getKey().buyPrice * entry.getValue();
+        }
+        return total;
+    }
+
+    private void updateCartButton() {
+        this.cartButton.setMessage(Text.literal(cart.isEmpty() ? "Panier" : "Panier " + cart.size()));
+
+        if (cart.isEmpty()) {
+            this.cartButton.setTooltip(Tooltip.of(Text.literal("Ctrl + Clic sur un item pour l'ajouter").formatted(Formatting.GRAY)));
+            return;
+        }
+        MutableText tooltip = Text.empty();
+        for (Map.Entry<ShopItem, Integer> entry : cart.entrySet()) {
+            tooltip.append(Text.literal(entry.getValue() + "x " + entry.getKey().displayName + "\n").formatted(Formatting.WHITE));
+        }
+        tooltip.append(Text.literal("Total: " + getCartTotal() + " PokéDollars\n").formatted(Formatting.YELLOW));
+        tooltip.append(Text.literal("Shift + Clic: Vider le panier").formatted(Formatting.DARK_GRAY));
+        this.cartButton.setTooltip(Tooltip.of(tooltip));
+    }
+
+    private void openCheckout() {
+        openConfirmation(0, true, null);
+        this.pendingCheckout = true;
+    }
+
+    private void sendCheckout() {
+        List<ShopNetworking.CheckoutPayload.Line> lines = new ArrayList<>();
+        for (Map.Entry<ShopItem, Integer> entry : cart.entrySet()) {
+            lines.add(new ShopNetworking.CheckoutPayload.Line(entry.getKey().entryId, entry.getValue()));
+        }
+        ShopNetworkingClient.sendCheckout(handler.getData().version(), lines);
+        cart.clear();
+        updateCartButton();
     }
 
     // ==================== Confirmation dialog logic ====================
 
-    private void openConfirmation(int realItemIndex, int quantity, boolean isBuy, ShopItem shopItem) {
+    private void openConfirmation(int quantity, boolean isBuy, ShopItem shopItem) {
         this.showConfirmation = true;
-        this.pendingItemIndex = realItemIndex;
         this.pendingQuantity = quantity;
         this.pendingIsBuy = isBuy;
         this.pendingShopItem = shopItem;
 
         this.searchField.setFocused(false);
         this.searchField.visible = false;
+        this.modeButton.active = false;
+        this.modeButton.visible = false;
+        this.sortButton.active = false;
+        this.sortButton.visible = false;
+        this.categoryButton.active = false;
+        this.categoryButton.visible = false;
+        this.quickButton.active = false;
+        this.quickButton.visible = false;
         this.previousButton.active = false;
         this.previousButton.visible = false;
         this.nextButton.active = false;
         this.nextButton.visible = false;
+        this.cartButton.active = false;
+        this.cartButton.visible = false;
     }
 
     private void confirmPurchase() {
-        if (pendingItemIndex >= 0 && pendingShopItem != null) {
+        if (pendingCheckout) {
+            sendCheckout();
+        } else if (pendingShopItem != null) {
+            long version = handler.getData().version();
             if (pendingIsBuy) {
-                ShopNetworkingClient.sendBuyRequest(pendingItemIndex, pendingQuantity);
+                ShopNetworkingClient.sendBuyRequest(version, pendingShopItem.entryId, pendingQuantity);
             } else {
-                ShopNetworkingClient.sendSellRequest(pendingItemIndex, pendingQuantity);
+                ShopNetworkingClient.sendSellRequest(version, pendingShopItem.entryId, pendingQuantity);
             }
         }
         closeConfirmation();
@@ -155,15 +367,25 @@ public class ShopScreen extends HandledScreen<ShopScreenHandler> {
 
     private void closeConfirmation() {
         this.showConfirmation = false;
-        this.pendingItemIndex = -1;
         this.pendingQuantity = 1;
         this.pendingShopItem = null;
+        this.pendingCheckout = false;
 
         this.previousButton.active = true;
         this.previousButton.visible = true;
         this.searchField.visible = true;
+        this.modeButton.active = true;
+        this.modeButton.visible = true;
+        this.sortButton.active = true;
+        this.sortButton.visible = true;
+        this.categoryButton.active = model.categories().length > 0;
+        this.categoryButton.visible = true;
+        this.quickButton.active = true;
+        this.quickButton.visible = true;
         this.nextButton.active = true;
         this.nextButton.visible = true;
+        this.cartButton.active = true;
+        this.cartButton.visible = true;
     }
 
     // ==================== Rendering ====================
@@ -193,11 +415,33 @@ public class ShopScreen extends HandledScreen<ShopScreenHandler> {
             renderConfirmationDialog(context, mouseX, mouseY);
         }
 
+        ShopTransactionTracker.expire();
+        if (quickMode && !showConfirmation) {
+            renderQuickStatus(context);
+        }
+
         this.drawMouseoverTooltip(context, mouseX, mouseY);
     }
 
     private void renderShopItems(DrawContext context, int mouseX, int mouseY) {
-        updateFilteredItems();
+        if (handler.getCatalog() == null && !handler.isPaged()) {
+            context.drawText(this.textRenderer, LOADING_TEXT, x + (backgroundWidth - textRenderer.getWidth(LOADING_TEXT)) / 2, y + 54, 0xFFFFFF, true);
+            return;
+        }
+
+        // Categories are known once the catalog is complete
+        if (model.categories() != shownCategories) {
+            updateViewButtons();
+        }
+
+        if (scrollMode) {
+            grid.update();
+            requestMissingPages();
+            renderScrollingGrid(context, mouseX, mouseY);
+            return;
+        }
+
+        requestMissingPages();
 
         int currentPage = handler.getCurrentPage();
         int maxPage = Math.max(0, getFilteredTotalPages() - 1);
@@ -207,10 +451,12 @@ public class ShopScreen extends HandledScreen<ShopScreenHandler> {
         }
 
         int startIndex = currentPage * ITEMS_PER_PAGE;
-        int endIndex = Math.min(startIndex + ITEMS_PER_PAGE, filteredItems.size());
+        int endIndex = Math.min(startIndex + ITEMS_PER_PAGE, model.filteredCount());
 
         for (int i = startIndex; i < endIndex; i++) {
-            ShopItem shopItem = filteredItems.get(i);
+            int index = model.filteredIndex(i);
+            ItemStack stack = model.stack(index);
+            if (stack == null) continue; // Unknown item, or page not received yet
             int relativeIndex = i - startIndex;
             int row = relativeIndex / 9;
             int col = relativeIndex % 9;
@@ -218,47 +464,91 @@ public class ShopScreen extends HandledScreen<ShopScreenHandler> {
             int itemX = x + 10 + col * 18;
             int itemY = y + 30 + row * 18;
 
-            Identifier itemId = Identifier.tryParse(shopItem.itemId);
-            if (itemId != null) {
-                Item item = Registries.ITEM.get(itemId);
-                ItemStack stack = new ItemStack(item);
-                context.drawItem(stack, itemX, itemY);
+            context.drawItem(stack, itemX, itemY);
 
-                if (mouseX >= itemX && mouseX < itemX + 16 && mouseY >= itemY && mouseY < itemY + 16) {
-                    renderShopItemTooltip(context, shopItem, mouseX, mouseY);
-                }
+            if (mouseX >= itemX && mouseX < itemX + 16 && mouseY >= itemY && mouseY < itemY + 16) {
+                context.drawTooltip(this.textRenderer, model.tooltip(index), mouseX, mouseY);
             }
         }
     }
 
-    private void renderShopItemTooltip(DrawContext context, ShopItem shopItem, int mouseX, int mouseY) {
-        List<Text> tooltip = new ArrayList<>();
-        tooltip.add(Text.literal(shopItem.displayName).formatted(Formatting.AQUA));
-        tooltip.add(Text.literal(""));
+    private void renderScrollingGrid(DrawContext context, int mouseX, int mouseY) {
+        int gridX = x + 10;
+        int gridY = y + 30;
+
+        // Rows cut by the viewport's edges are clipped
+        context.enableScissor(gridX, gridY, gridX + ShopGridViewport.COLUMNS * ShopGridViewport.CELL_SIZE, gridY + ShopGridViewport.HEIGHT);
+        int endRow = grid.endRow();
+        for (int r = grid.firstRow(); r < endRow; r++) {
+            ShopGridViewport.Row row = grid.row(r);
+            int itemY = gridY + grid.rowY(r);
+            for (int col = 0; col < row.count; col++) {
+                ItemStack stack = row.stacks[col];
+                if (stack == null) continue; // Unknown item, or page not received yet
+                context.drawItem(stack, gridX + col * ShopGridViewport.CELL_SIZE, itemY);
+            }
+        }
+        context.disableScissor();
 
-        if (shopItem.canBuy) {
-            tooltip.add(Text.literal("Achat: ")
-                    .formatted(Formatting.GRAY)
-                    .append(Text.literal(shopItem.buyPrice + " PokéDollars")
-                            .formatted(Formatting.GREEN)));
+        int thumbHeight = grid.thumbHeight();
+        if (thumbHeight > 0) {
+            int barX = gridX + ShopGridViewport.COLUMNS * ShopGridViewport.CELL_SIZE - 1;
+            context.fill(barX, gridY, barX + 2, gridY + ShopGridViewport.HEIGHT, 0x40000000);
+            context.fill(barX, gridY + grid.thumbY(), barX + 2, gridY + grid.thumbY() + thumbHeight, 0xFFAAAAAA);
         }
-        if (shopItem.canSell) {
-            tooltip.add(Text.literal("Vente: ")
-                    .formatted(Formatting.GRAY)
-                    .append(Text.literal(shopItem.sellPrice + " PokéDollars")
-                            .formatted(Formatting.GOLD)));
+
+        int position = grid.positionAt(mouseX - gridX, mouseY - gridY);
+        if (position >= 0) {
+            int index = model.filteredIndex(position);
+            if (model.stack(index) != null) {
+                context.drawTooltip(this.textRenderer, model.tooltip(index), mouseX, mouseY);
+            }
+        }
+    }
+
+    /**
+     * Draws the predicted balance, the requests in flight and the last outcome above the
+     * player's inventory.
+     */
+    private void renderQuickStatus(DrawContext context) {
+        int statusY = y + playerInventoryTitleY;
+        int revision = ShopTransactionTracker.getRevision();
+        if (balanceText == null || revision != shownRevision) {
+            MutableText balance = Text.literal("Solde: " + ShopTransactionTracker.getBalance()).formatted(Formatting.GRAY);
+            int inFlight = ShopTransactionTracker.getInFlight();
+            if (inFlight > 0) {
+                balance.append(Text.literal(" ⏳" + inFlight).formatted(Formatting.DARK_GRAY));
+            }
+            balanceText = balance;
+            resultText = resultText(ShopTransactionTracker.getLastStatus(), ShopTransactionTracker.getLastDelta());
+            resultTextWidth = textRenderer.getWidth(resultText);
+            shownRevision = revision;
         }
+        context.drawText(this.textRenderer, balanceText, x + 8, statusY, 0xFFFFFF, false);
 
-        tooltip.add(Text.literal(""));
-        tooltip.add(Text.literal("Clic gauche: Acheter x1").formatted(Formatting.DARK_GRAY));
-        tooltip.add(Text.literal("Clic droit: Vendre x1").formatted(Formatting.DARK_GRAY));
-        tooltip.add(Text.literal("Shift + Clic: x64 / max stock").formatted(Formatting.DARK_GRAY));
+        long resultTime = ShopTransactionTracker.getLastResultTime();
+        if (resultTime == 0 || Util.getMeasuringTimeMs() - resultTime > RESULT_DISPLAY_MS) return;
+        context.drawText(this.textRenderer, resultText, x + backgroundWidth - 8 - resultTextWidth, statusY, 0xFFFFFF, false);
+    }
 
-        context.drawTooltip(this.textRenderer, tooltip, mouseX, mouseY);
+    private static Text resultText(ShopNetworking.TransactionResultPayload.Status status, long delta) {
+        if (status == null) {
+            return Text.literal("Pas de réponse").formatted(Formatting.RED);
+        }
+        return switch (status) {
+            case OK -> Text.literal((delta >= 0 ? "✔ +" : "✔ ") + delta).formatted(delta >= 0 ? Formatting.GOLD : Formatting.GREEN);
+            case INSUFFICIENT_FUNDS -> Text.literal("Solde insuffisant!").formatted(Formatting.RED);
+            case INVENTORY_FULL -> Text.literal("Inventaire plein!").formatted(Formatting.RED);
+            case NOT_ENOUGH_ITEMS -> Text.literal("Pas assez d'items").formatted(Formatting.RED);
+            case UNAVAILABLE -> Text.literal("Indisponible").formatted(Formatting.RED);
+            case CATALOG_CHANGED -> Text.literal("Boutique modifiée").formatted(Formatting.RED);
+            case THROTTLED -> Text.literal("Trop rapide!").formatted(Formatting.RED);
+            case CLOSED, INVALID -> Text.literal("Refusé").formatted(Formatting.RED);
+        };
     }
 
     private void renderConfirmationDialog(DrawContext context, int mouseX, int mouseY) {
-        if (pendingShopItem == null) return;
+        if (pendingShopItem == null && !pendingCheckout) return;
 
         int dialogWidth = 120;
         int dialogHeight = 62;
@@ -273,22 +563,35 @@ public class ShopScreen extends HandledScreen<ShopScreenHandler> {
         context.fill(dialogX, dialogY, dialogX + dialogWidth, dialogY + dialogHeight, 0xFF2A2A2A);
 
         // Title
-        String actionText = pendingIsBuy ? "Acheter" : "Vendre";
+        String actionText = pendingCheckout ? "Payer le panier" : pendingIsBuy ? "Acheter" : "Vendre";
         Formatting actionColor = pendingIsBuy ? Formatting.GREEN : Formatting.GOLD;
         Text titleLine = Text.literal(actionText + " ?").formatted(actionColor, Formatting.BOLD);
         int titleWidth = this.textRenderer.getWidth(titleLine);
         context.drawText(this.textRenderer, titleLine, dialogX + (dialogWidth - titleWidth) / 2, dialogY + 4, 0xFFFFFF, true);
 
         // Item name + quantity
-        String qtyText = (pendingQuantity == -1) ? "max" : (pendingQuantity + "x");
-        Text itemLine = Text.literal(qtyText + " ")
-                .formatted(Formatting.WHITE)
-                .append(Text.literal(pendingShopItem.displayName).formatted(Formatting.AQUA));
+        Text itemLine;
+        if (pendingCheckout) {
+            int articles = 0;
+            for (int quantity : cart.values()) {
+                articles += quantity;
+            }
+            itemLine = Text.literal(articles + " articles").formatted(Formatting.AQUA);
+        } else {
+            String qtyText = (pendingQuantity == -1) ? "max" : (pendingQuantity + "x");
+            itemLine = Text.literal(qtyText + " ")
+                    .formatted(Formatting.WHITE)
+                    .append(Text.literal(pendingShopItem.displayName).formatted(Formatting.AQUA));
+        }
         int itemWidth = this.textRenderer.getWidth(itemLine);
         context.drawText(this.textRenderer, itemLine, dialogX + (dialogWidth - itemWidth) / 2, dialogY + 16, 0xFFFFFF, true);
 
         // Price
-        if (pendingQuantity == -1) {
+        if (pendingCheckout) {
+            Text priceLine = Text.literal(getCartTotal() + " PokéDollars").formatted(Formatting.YELLOW);
+            int priceWidth = this.textRenderer.getWidth(priceLine);
+            context.drawText(this.textRenderer, priceLine, dialogX + (dialogWidth - priceWidth) / 2, dialogY + 27, 0xFFFFFF, true);
+        } else if (pendingQuantity == -1) {
             int unitPrice = pendingIsBuy ? pendingShopItem.buyPrice : pendingShopItem.sellPrice;
             Text priceLine = Text.literal(unitPrice + " PokéDollars/u").formatted(Formatting.YELLOW);
             int priceWidth = this.textRenderer.getWidth(priceLine);
@@ -360,46 +663,87 @@ public class ShopScreen extends HandledScreen<ShopScreenHandler> {
             return true; // Block all other clicks while dialog is open
         }
 
-        int currentPage = handler.getCurrentPage();
-        int startIndex = currentPage * ITEMS_PER_PAGE;
-        int endIndex = Math.min(startIndex + ITEMS_PER_PAGE, filteredItems.size());
+        int position = positionAt(mouseX, mouseY);
+        if (position >= 0) {
+            ShopItem shopItem = handler.getItem(model.filteredIndex(position));
+            if (shopItem == null) return true;
 
-        for (int i = startIndex; i < endIndex; i++) {
-            int relativeIndex = i - startIndex;
-            int row = relativeIndex / 9;
-            int col = relativeIndex % 9;
-
-            int itemX = x + 10 + col * 18;
-            int itemY = y + 30 + row * 18;
+            boolean isBuy = (button == 0);
+            boolean isShift = hasShiftDown();
 
-            if (mouseX >= itemX && mouseX < itemX + 16 && mouseY >= itemY && mouseY < itemY + 16) {
-                ShopItem shopItem = filteredItems.get(i);
-                int realIndex = getRealIndex(shopItem);
-                if (realIndex < 0) return true;
+            // Ctrl + left click: add to the cart (x64 with Shift)
+            if (isBuy && hasControlDown()) {
+                if (shopItem.canBuy) {
+                    addToCart(shopItem, isShift ? 64 : 1);
+                }
+                return true;
+            }
 
-                boolean isBuy = (button == 0);
-                boolean isShift = hasShiftDown();
+            if (isBuy && !shopItem.canBuy) return true;
+            if (!isBuy && !shopItem.canSell) return true;
 
-                if (isBuy && !shopItem.canBuy) return true;
-                if (!isBuy && !shopItem.canSell) return true;
+            // Shift+click: buy 64, sell max stock (server resolves -1 to min(64, available))
+            // Normal click: buy/sell 1
+            int quantity;
+            if (isShift) {
+                quantity = isBuy ? 64 : -1;
+            } else {
+                quantity = 1;
+            }
 
-                // Shift+click: buy 64, sell max stock (server resolves -1 to min(64, available))
-                // Normal click: buy/sell 1
-                int quantity;
-                if (isShift) {
-                    quantity = isBuy ? 64 : -1;
+            if (quickMode) {
+                // Sent at once; the outcome shows up when the server acknowledges it
+                if (isBuy) {
+                    ShopTransactionTracker.buy(handler, shopItem, quantity);
                 } else {
-                    quantity = 1;
+                    ShopTransactionTracker.sell(handler, shopItem, quantity);
                 }
-
-                openConfirmation(realIndex, quantity, isBuy, shopItem);
                 return true;
             }
+
+            openConfirmation(quantity, isBuy, shopItem);
+            return true;
         }
 
         return super.mouseClicked(mouseX, mouseY, button);
     }
 
+    @Override
+    public boolean mouseScrolled(double mouseX, double mouseY, double horizontalAmount, double verticalAmount) {
+        if (!showConfirmation && scrollMode) {
+            grid.scrollBy(-verticalAmount);
+            return true;
+        }
+        return super.mouseScrolled(mouseX, mouseY, horizontalAmount, verticalAmount);
+    }
+
+    /**
+     * Finds the search result under the mouse, in either display mode.
+     *
+     * @return The result's position among the search results, or -1 if there is none
+     */
+    private int positionAt(double mouseX, double mouseY) {
+        if (scrollMode) {
+            return grid.positionAt(mouseX - (x + 10), mouseY - (y + 30));
+        }
+
+        int startIndex = handler.getCurrentPage() * ITEMS_PER_PAGE;
+        int endIndex = Math.min(startIndex + ITEMS_PER_PAGE, model.filteredCount());
+        for (int i = startIndex; i < endIndex; i++) {
+            int relativeIndex = i - startIndex;
+            int row = relativeIndex / 9;
+            int col = relativeIndex % 9;
+
+            int itemX = x + 10 + col * 18;
+            int itemY = y + 30 + row * 18;
+
+            if (mouseX >= itemX && mouseX < itemX + 16 && mouseY >= itemY && mouseY < itemY + 16) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     @Override
     public boolean keyPressed(int keyCode, int scanCode, int modifiers) {
         if (showConfirmation) {
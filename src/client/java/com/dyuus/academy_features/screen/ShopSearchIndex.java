@@ -0,0 +1,259 @@
+package com.dyuus.academy_features.screen;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Search index over a shop's entries, for {@link ShopScreen}'s search field.
+ *
+ * Display names and item IDs are normalized once when entries are added: accents are
+ * stripped ("Bûche de chêne" → "buche de chene"), case is folded and punctuation becomes
+ * spaces ("cobblemon:poke_ball" → "cobblemon poke ball"). Every word is indexed by its
+ * trigrams (padded with spaces, so word starts and ends count) and by its one and two
+ * letter prefixes.
+ *
+ * Each word of a query must match: words of three letters or more through their trigrams,
+ * tolerating typos as long as half of them are found; shorter words as a word prefix.
+ * Matches are ranked by the share of trigrams found, with bonuses for exact substrings and
+ * word prefixes in the name, so only candidates sharing trigrams with the query are scored.
+ */
+class ShopSearchIndex {
+    // Share of a query word's trigrams an entry must contain to match it
+    private static final double MIN_TRIGRAM_SHARE = 0.5;
+
+    private static final int NAME_SUBSTRING_BONUS = 1000;
+    private static final int NAME_PREFIX_BONUS = 1000;
+    private static final int ID_SUBSTRING_BONUS = 500;
+    private static final int TRIGRAM_SCALE = 1000;
+
+    // Trigram or prefix → entries containing it
+    private final Map<Long, Postings> trigrams = new HashMap<>();
+    private final Map<Long, Postings> prefixes = new HashMap<>();
+
+    // Per entry, by catalog index
+    private String[] names;
+    private String[] ids;
+
+    // Query scratch space, reused between searches
+    private int[] hits;
+    private int[] scores;
+    private int[] matched;
+    private int[] touched;
+
+    ShopSearchIndex(int capacity) {
+        this.names = new String[capacity];
+        this.ids = new String[capacity];
+        this.hits = new int[capacity];
+        this.scores = new int[capacity];
+        this.matched = new int[capacity];
+        this.touched = new int[capacity];
+    }
+
+    // ==================== Indexing ====================
+
+    /**
+     * Indexes an entry.
+     *
+     * @param index The entry's catalog index
+     * @param displayName The entry's display name
+     * @param itemId The entry's item ID
+     */
+    void add(int index, String displayName, String itemId) {
+        String name = normalize(displayName);
+        String id = normalize(itemId);
+        names[index] = name;
+        ids[index] = id;
+
+        Set<Long> entryTrigrams = new HashSet<>();
+        Set<Long> entryPrefixes = new HashSet<>();
+        for (String text : new String[]{name, id}) {
+            for (String word : text.split(" ")) {
+                if (word.isEmpty()) continue;
+                addTrigrams(word, entryTrigrams);
+                entryPrefixes.add(key(word, 0, 1));
+                if (word.length() >= 2) {
+                    entryPrefixes.add(key(word, 0, 2));
+                }
+            }
+        }
+        for (long trigram : entryTrigrams) {
+            trigrams.computeIfAbsent(trigram, k -> new Postings()).add(index);
+        }
+        for (long prefix : entryPrefixes) {
+            prefixes.computeIfAbsent(prefix, k -> new Postings()).add(index);
+        }
+    }
+
+    /**
+     * Folds a text for searching: no accents, lower case, words separated by single spaces.
+     */
+    static String normalize(String text) {
+        if (text == null || text.isEmpty()) return "";
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean space = true;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+                space = false;
+            } else if (!space) {
+                normalized.append(' ');
+                space = true;
+            }
+        }
+        int length = normalized.length();
+        if (length > 0 && normalized.charAt(length - 1) == ' ') {
+            normalized.setLength(length - 1);
+        }
+        return normalized.toString();
+    }
+
+    // ==================== Searching ====================
+
+    /**
+     * Finds the entries matching a query, best first.
+     *
+     * @param query The query, already {@link #normalize normalized}
+     * @param out Receives the matching entries' catalog indices
+     * @return Number of matching entries
+     */
+    int search(String query, int[] out) {
+        String[] words = query.split(" ");
+        int touchedCount = 0;
+        int requiredWords = 0;
+
+        for (String word : words) {
+            if (word.isEmpty()) continue;
+            requiredWords++;
+            touchedCount = matchWord(word, touchedCount);
+        }
+
+        // Keep entries that matched every word, ranked by score then catalog order
+        long[] ranked = new long[touchedCount];
+        int count = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int entry = touched[i];
+            if (matched[entry] == requiredWords) {
+                ranked[count++] = ((long) scores[entry] << 32) | (Integer.MAX_VALUE - entry);
+            }
+            matched[entry] = 0;
+            scores[entry] = 0;
+        }
+        Arrays.sort(ranked, 0, count);
+        for (int i = 0; i < count; i++) {
+            out[i] = Integer.MAX_VALUE - (int) ranked[count - 1 - i];
+        }
+        return count;
+    }
+
+    /**
+     * Scores the entries matching one word of a query.
+     *
+     * @return The new number of touched entries
+     */
+    private int matchWord(String word, int touchedCount) {
+        if (word.length() < 3) {
+            Postings postings = prefixes.get(key(word, 0, word.length()));
+            if (postings == null) return touchedCount;
+            for (int i = 0; i < postings.size; i++) {
+                int entry = postings.entries[i];
+                touchedCount = accept(entry, score(entry, word, 0), touchedCount);
+            }
+            return touchedCount;
+        }
+
+        Set<Long> wordTrigrams = new HashSet<>();
+        addTrigrams(word, wordTrigrams);
+        int candidateCount = 0;
+        int[] candidates = new int[16];
+        for (long trigram : wordTrigrams) {
+            Postings postings = trigrams.get(trigram);
+            if (postings == null) continue;
+            for (int i = 0; i < postings.size; i++) {
+                int entry = postings.entries[i];
+                if (hits[entry]++ == 0) {
+                    if (candidateCount == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                    }
+                    candidates[candidateCount++] = entry;
+                }
+            }
+        }
+
+        int needed = (int) Math.ceil(wordTrigrams.size() * MIN_TRIGRAM_SHARE);
+        for (int i = 0; i < candidateCount; i++) {
+            int entry = candidates[i];
+            int found = hits[entry];
+            hits[entry] = 0;
+            if (found >= needed) {
+                touchedCount = accept(entry, score(entry, word, found * TRIGRAM_SCALE / wordTrigrams.size()), touchedCount);
+            }
+        }
+        return touchedCount;
+    }
+
+    private int score(int entry, String word, int trigramScore) {
+        int score = trigramScore;
+        String name = names[entry];
+        int at = name.indexOf(word);
+        if (at >= 0) {
+            score += NAME_SUBSTRING_BONUS;
+            if (at == 0 || name.charAt(at - 1) == ' ') {
+                score += NAME_PREFIX_BONUS;
+            }
+        } else if (ids[entry].contains(word)) {
+            score += ID_SUBSTRING_BONUS;
+        }
+        return score;
+    }
+
+    private int accept(int entry, int score, int touchedCount) {
+        if (matched[entry] == 0) {
+            touched[touchedCount++] = entry;
+        }
+        matched[entry]++;
+        scores[entry] += score;
+        return touchedCount;
+    }
+
+    // ==================== Internals ====================
+
+    private static void addTrigrams(String word, Set<Long> out) {
+        String padded = " " + word + " ";
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            out.add(key(padded, i, i + 3));
+        }
+    }
+
+    /**
+     * Packs up to three characters into a key.
+     */
+    private static long key(String text, int from, int to) {
+        long key = to - from;
+        for (int i = from; i < to; i++) {
+            key = (key << 16) | text.charAt(i);
+        }
+        return key;
+    }
+
+    /**
+     * Growable list of entry indices.
+     */
+    private static class Postings {
+        int[] entries = new int[4];
+        int size;
+
+        void add(int entry) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entries[size++] = entry;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.dyuus.academy_features.screen;
+
+import com.dyuus.academy_features.config.ShopItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Sort orders and categories of a complete catalog, for {@link ShopScreen}'s views.
+ *
+ * Every order is a permutation of the catalog's indices computed once when the catalog
+ * arrives, and every category an array of its entries' indices, so switching the view
+ * swaps arrays instead of sorting items. The affordability order is derived from the price
+ * order: the entries a balance can pay for are a prefix of it, found by binary search, so a
+ * new balance only rearranges that permutation, it never re-sorts it.
+ */
+class ShopViewIndex {
+
+    /**
+     * Order of the shop's entries.
+     */
+    enum Sort {
+        // The shop's own order, or relevance while searching
+        DEFAULT("≡", "Ordre du shop"),
+        NAME("A", "Nom"),
+        // Buy price, cheapest first, then the entries that can only be sold
+        PRICE("$", "Prix"),
+        // Entries the balance pays for, most expensive first, then the others, cheapest first
+        AFFORDABLE("✔", "Abordable");
+
+        final String symbol;
+        final String label;
+
+        Sort(String symbol, String label) {
+            this.symbol = symbol;
+            this.label = label;
+        }
+
+        Sort next() {
+            return values()[(ordinal() + 1) % values().length];
+        }
+    }
+
+    private final int[] byName;
+    private final int[] byPrice;
+    // Buy prices along byPrice, for its buyable prefix
+    private final int[] sortedPrices;
+    private final int buyableCount;
+
+    private final String[] categories;
+    private final int[][] categoryEntries;
+    // Category of each entry, as an index into categories (-1: none)
+    private final int[] categoryOf;
+
+    // Last affordability order, and the number of affordable entries it was built for
+    private int[] affordable;
+    private int affordableCount = -1;
+
+    ShopViewIndex(List<ShopItem> items) {
+        int size = items.size();
+
+        String[] names = new String[size];
+        for (int i = 0; i < size; i++) {
+            names[i] = ShopSearchIndex.normalize(items.get(i).displayName);
+        }
+        this.byName = sorted(size, Comparator.comparing((Integer i) -> names[i]));
+
+        this.byPrice = sorted(size, (a, b) -> {
+            ShopItem first = items.get(a);
+            ShopItem second = items.get(b);
+            if (first.canBuy != second.canBuy) return first.canBuy ? -1 : 1;
+            return first.canBuy
+                    ? Integer.compare(first.buyPrice, second.buyPrice)
+                    : Integer.compare(first.sellPrice, second.sellPrice);
+        });
+        int buyable = 0;
+        while (buyable < size && items.get(byPrice[buyable]).canBuy) {
+            buyable++;
+        }
+        this.buyableCount = buyable;
+        this.sortedPrices = new int[buyable];
+        for (int i = 0; i < buyable; i++) {
+            sortedPrices[i] = items.get(byPrice[i]).buyPrice;
+        }
+
+        // Categories in alphabetical order, each with its entries in catalog order
+        TreeMap<String, List<Integer>> grouped = new TreeMap<>();
+        for (int i = 0; i < size; i++) {
+            String category = items.get(i).category;
+            if (category != null && !category.isEmpty()) {
+                grouped.computeIfAbsent(category, k -> new ArrayList<>()).add(i);
+            }
+        }
+        this.categories = grouped.keySet().toArray(new String[0]);
+        this.categoryEntries = new int[categories.length][];
+        this.categoryOf = new int[size];
+        Arrays.fill(categoryOf, -1);
+        for (int c = 0; c < categories.length; c++) {
+            List<Integer> entries = grouped.get(categories[c]);
+            categoryEntries[c] = new int[entries.size()];
+            for (int e = 0; e < entries.size(); e++) {
+                categoryEntries[c][e] = entries.get(e);
+                categoryOf[entries.get(e)] = c;
+            }
+        }
+    }
+
+    // ==================== Orders ====================
+
+    /**
+     * @param sort The order
+     * @param balance The player's balance, for {@link Sort#AFFORDABLE}
+     * @return The catalog's indices in that order (not to be modified), or null for {@link Sort#DEFAULT}
+     */
+    int[] order(Sort sort, long balance) {
+        return switch (sort) {
+            case DEFAULT -> null;
+            case NAME -> byName;
+            case PRICE -> byPrice;
+            case AFFORDABLE -> affordable(balance);
+        };
+    }
+
+    private int[] affordable(long balance) {
+        // Number of buyable entries with a price up to the balance
+        int low = 0;
+        int high = buyableCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedPrices[mid] <= balance) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        if (low != affordableCount) {
+            int[] order = new int[byPrice.length];
+            for (int i = 0; i < low; i++) {
+                order[i] = byPrice[low - 1 - i];
+            }
+            System.arraycopy(byPrice, low, order, low, byPrice.length - low);
+            affordable = order;
+            affordableCount = low;
+        }
+        return affordable;
+    }
+
+    // ==================== Categories ====================
+
+    /**
+     * @return The catalog's categories, in alphabetical order
+     */
+    String[] categories() {
+        return categories;
+    }
+
+    /**
+     * @return The entries of a category, in catalog order (not to be modified)
+     */
+    int[] categoryEntries(int category) {
+        return categoryEntries[category];
+    }
+
+    /**
+     * @return The entry's category, as an index into {@link #categories()}, or -1 if it has none
+     */
+    int categoryOf(int index) {
+        return categoryOf[index];
+    }
+
+    private static int[] sorted(int size, Comparator<Integer> comparator) {
+        Integer[] indices = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = i;
+        }
+        // Stable: ties keep the catalog's order
+        Arrays.sort(indices, comparator);
+        int[] sorted = new int[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = indices[i];
+        }
+        return sorted;
+    }
+}
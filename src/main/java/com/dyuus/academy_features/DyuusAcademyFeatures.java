@@ -4,6 +4,7 @@ import com.dyuus.academy_features.cobblemon.PokedexRewardHandler;
 import com.dyuus.academy_features.command.PokeDollarsCommand;
 import com.dyuus.academy_features.command.ShopCommand;
 import com.dyuus.academy_features.command.TeraCommand;
+import com.dyuus.academy_features.config.CurrencyConfig;
 import com.dyuus.academy_features.config.PokedexRewardConfig;
 import com.dyuus.academy_features.config.ShopConfigManager;
 import com.dyuus.academy_features.config.TeraConfigManager;
@@ -54,6 +55,7 @@ public class DyuusAcademyFeatures implements ModInitializer {
 
 		// ==================== Configuration ====================
 		ShopConfigManager.initialize();
+		CurrencyConfig.initialize();
 		CurrencyManager.initialize();
 		TeraConfigManager.initialize();
 		TeraItemConfig.initializeServer();
@@ -9,6 +9,7 @@ import com.cobblemon.mod.common.api.pokedex.SpeciesDexRecord;
 import com.dyuus.academy_features.DyuusAcademyFeatures;
 import com.dyuus.academy_features.config.PokedexRewardConfig;
 import com.dyuus.academy_features.currency.CurrencyManager;
+import com.dyuus.academy_features.currency.TransactionSource;
 import kotlin.Unit;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
@@ -258,9 +259,7 @@ public class PokedexRewardHandler {
         // ==================== Give total reward ====================
 
         if (totalReward > 0) {
-            CurrencyManager.addBalance(player, totalReward);
-            DyuusAcademyFeatures.LOGGER.info("Rewarded {} with {} PokéDollars total for Pokédex update",
-                    player.getName().getString(), totalReward);
+            CurrencyManager.addBalance(player, totalReward, TransactionSource.POKEDEX_REWARD, speciesName, 0);
         }
     }
 
@@ -1,18 +1,46 @@
 package com.dyuus.academy_features.command;
 
+import com.mojang.authlib.GameProfile;
 import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.dyuus.academy_features.DyuusAcademyFeatures;
+import com.dyuus.academy_features.currency.AuditEntry;
 import com.dyuus.academy_features.currency.CurrencyManager;
+import com.dyuus.academy_features.currency.EconomyReport;
+import com.dyuus.academy_features.currency.TransactionSource;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
 import net.minecraft.command.argument.EntityArgumentType;
+import net.minecraft.command.argument.GameProfileArgumentType;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
 import net.minecraft.util.Formatting;
+import net.minecraft.util.Util;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class PokeDollarsCommand {
 
+    // Number of transactions shown by /pokedollars history
+    private static final int HISTORY_LIMIT = 10;
+    // Number of players per /pokedollars top page
+    private static final int TOP_PAGE_SIZE = 10;
+    // Number of accounts listed by /pokedollars changed
+    private static final int CHANGED_LIMIT = 20;
+    private static final DateTimeFormatter HISTORY_TIME_FORMAT =
+            DateTimeFormatter.ofPattern("dd/MM HH:mm").withZone(ZoneId.systemDefault());
+
     public static void register() {
         CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> {
             dispatcher.register(CommandManager.literal("pokedollars")
@@ -64,6 +92,53 @@ public class PokeDollarsCommand {
                                     )
                             )
                     )
+
+                    // /pokedollars history → show your recent transactions
+                    // /pokedollars history <player> → show a player's recent transactions, even offline (admin)
+                    .then(CommandManager.literal("history")
+                            .executes(PokeDollarsCommand::showOwnHistory)
+                            .then(CommandManager.argument("player", GameProfileArgumentType.gameProfile())
+                                    .requires(source -> source.hasPermissionLevel(2))
+                                    .executes(PokeDollarsCommand::showOtherHistory)
+                            )
+                    )
+
+                    // /pokedollars top [page] → show the richest players
+                    .then(CommandManager.literal("top")
+                            .executes(context -> showTop(context, 1))
+                            .then(CommandManager.argument("page", IntegerArgumentType.integer(1))
+                                    .executes(context -> showTop(context, IntegerArgumentType.getInteger(context, "page")))
+                            )
+                    )
+
+                    // /pokedollars rank [player] → show your or a player's leaderboard position
+                    // (other players' balances are only shown to admins)
+                    .then(CommandManager.literal("rank")
+                            .executes(PokeDollarsCommand::showOwnRank)
+                            .then(CommandManager.argument("player", GameProfileArgumentType.gameProfile())
+                                    .executes(PokeDollarsCommand::showOtherRank)
+                            )
+                    )
+
+                    // /pokedollars stats → show money supply and flows (admin)
+                    .then(CommandManager.literal("stats")
+                            .requires(source -> source.hasPermissionLevel(2))
+                            .executes(PokeDollarsCommand::showStats)
+                    )
+
+                    // /pokedollars changed <minutes> → show balances changed recently, "sqlite" storage only (admin)
+                    .then(CommandManager.literal("changed")
+                            .requires(source -> source.hasPermissionLevel(2))
+                            .then(CommandManager.argument("minutes", IntegerArgumentType.integer(1, 7 * 24 * 60))
+                                    .executes(PokeDollarsCommand::showChanged)
+                            )
+                    )
+
+                    // /pokedollars export → write all balances to pokedollars-export.json (admin)
+                    .then(CommandManager.literal("export")
+                            .requires(source -> source.hasPermissionLevel(2))
+                            .executes(PokeDollarsCommand::exportBalances)
+                    )
             );
         });
     }
@@ -124,21 +199,16 @@ public class PokeDollarsCommand {
                 return 0;
             }
 
-            // Check that the sender has enough money
-            int senderBalance = CurrencyManager.getBalance(sender);
-            if (senderBalance < amount) {
+            // Transaction (fails atomically if the sender does not have enough money)
+            if (!CurrencyManager.transfer(sender.getUuid(), target.getUuid(), amount)) {
                 sender.sendMessage(
-                        Text.literal("Solde insuffisant! Vous avez " + senderBalance + " PokéDollars")
+                        Text.literal("Solde insuffisant! Vous avez " + CurrencyManager.getBalance(sender) + " PokéDollars")
                                 .formatted(Formatting.RED),
                         false
                 );
                 return 0;
             }
 
-            // Transaction
-            CurrencyManager.removeBalance(sender, amount);
-            CurrencyManager.addBalance(target, amount);
-
             // Messages
             sender.sendMessage(
                     Text.literal("Vous avez envoyé ")
@@ -171,7 +241,7 @@ public class PokeDollarsCommand {
             ServerPlayerEntity target = EntityArgumentType.getPlayer(context, "player");
             int amount = IntegerArgumentType.getInteger(context, "amount");
 
-            CurrencyManager.setBalance(target, amount);
+            CurrencyManager.setBalance(target.getUuid(), amount, TransactionSource.ADMIN_SET);
 
             context.getSource().sendFeedback(
                     () -> Text.literal("Solde de " + target.getName().getString() + " défini à " + amount + " PokéDollars")
@@ -201,7 +271,7 @@ public class PokeDollarsCommand {
             ServerPlayerEntity target = EntityArgumentType.getPlayer(context, "player");
             int amount = IntegerArgumentType.getInteger(context, "amount");
 
-            CurrencyManager.addBalance(target, amount);
+            CurrencyManager.addBalance(target, amount, TransactionSource.ADMIN_ADD, null, 0);
 
             // Feedback to command executor (usually console or command block)
             context.getSource().sendFeedback(
@@ -237,9 +307,8 @@ public class PokeDollarsCommand {
             ServerPlayerEntity target = EntityArgumentType.getPlayer(context, "player");
             int amount = IntegerArgumentType.getInteger(context, "amount");
 
-            int currentBalance = CurrencyManager.getBalance(target);
-
-            if (currentBalance < amount) {
+            if (!CurrencyManager.removeBalance(target, amount, TransactionSource.ADMIN_REMOVE, null, 0)) {
+                int currentBalance = CurrencyManager.getBalance(target);
                 context.getSource().sendFeedback(
                         () -> Text.literal("Impossible: " + target.getName().getString() + " n'a que " + currentBalance + " PokéDollars")
                                 .formatted(Formatting.RED),
@@ -248,8 +317,6 @@ public class PokeDollarsCommand {
                 return 0;
             }
 
-            CurrencyManager.removeBalance(target, amount);
-
             // Feedback to command executor
             context.getSource().sendFeedback(
                     () -> Text.literal("Retiré " + amount + " PokéDollars de " + target.getName().getString())
@@ -273,4 +340,333 @@ public class PokeDollarsCommand {
             return 0;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Export all balances to a JSON file in the world's data folder.
+     * The export runs off the server thread; feedback is sent when it completes.
+     * Command: /pokedollars export
+     */
+    private static int exportBalances(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        MinecraftServer server = source.getServer();
+
+        CurrencyManager.exportToJson(server).whenComplete((result, error) -> server.execute(() -> {
+            if (error != null) {
+                DyuusAcademyFeatures.LOGGER.error("Failed to export PokéDollars balances", error);
+                source.sendError(Text.literal("Échec de l'export des soldes: " + error.getMessage()));
+                return;
+            }
+            source.sendFeedback(
+                    () -> Text.literal("Exporté " + result.getValue() + " soldes vers " + result.getKey().getFileName())
+                            .formatted(Formatting.GREEN),
+                    true
+            );
+        }));
+
+        return 1;
+    }
+
+    /**
+     * Show the command source's own recent transactions.
+     * Command: /pokedollars history
+     */
+    private static int showOwnHistory(CommandContext<ServerCommandSource> context) {
+        ServerPlayerEntity player = context.getSource().getPlayer();
+        if (player == null) return 0;
+
+        sendHistory(context.getSource(), player.getUuid(), player.getName().getString());
+        return 1;
+    }
+
+    /**
+     * Show a player's recent transactions, read from the audit log (works for offline players).
+     * Command: /pokedollars history <player>
+     */
+    private static int showOtherHistory(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        Collection<GameProfile> profiles = GameProfileArgumentType.getProfileArgument(context, "player");
+        for (GameProfile profile : profiles) {
+            sendHistory(context.getSource(), profile.getId(), profile.getName());
+        }
+        return profiles.size();
+    }
+
+    /**
+     * Reads a player's history off the server thread, then sends it to the command source.
+     */
+    private static void sendHistory(ServerCommandSource source, UUID uuid, String name) {
+        MinecraftServer server = source.getServer();
+
+        CurrencyManager.getHistory(uuid, HISTORY_LIMIT).whenComplete((entries, error) -> server.execute(() -> {
+            if (error != null) {
+                if (error.getCause() instanceof UnsupportedOperationException
+                        || error instanceof UnsupportedOperationException) {
+                    source.sendError(Text.literal("L'historique des transactions est désactivé"));
+                    return;
+                }
+                DyuusAcademyFeatures.LOGGER.error("Failed to read PokéDollars history of {}", name, error);
+                source.sendError(Text.literal("Échec de la lecture de l'historique: " + error.getMessage()));
+                return;
+            }
+            sendHistoryLines(source, server, name, entries);
+        }));
+    }
+
+    private static void sendHistoryLines(ServerCommandSource source, MinecraftServer server, String name, List<AuditEntry> entries) {
+        if (entries.isEmpty()) {
+            source.sendFeedback(() -> Text.literal("Aucune transaction pour " + name).formatted(Formatting.GRAY), false);
+            return;
+        }
+
+        source.sendFeedback(() -> Text.literal("Dernières transactions de " + name + ":").formatted(Formatting.GOLD), false);
+        for (AuditEntry entry : entries) {
+            String delta = (entry.delta() >= 0 ? "+" : "") + entry.delta();
+            StringBuilder details = new StringBuilder();
+            if (entry.counterparty() != null) {
+                details.append(entry.delta() >= 0 ? "de " : "à ").append(playerName(server, entry.counterparty()));
+            }
+            if (entry.detail() != null) {
+                if (!details.isEmpty()) details.append(", ");
+                if (entry.quantity() > 0) details.append(entry.quantity()).append("x ");
+                details.append(entry.detail());
+            }
+
+            Text line = Text.literal("[" + HISTORY_TIME_FORMAT.format(Instant.ofEpochMilli(entry.timestamp())) + "] ")
+                    .formatted(Formatting.GRAY)
+                    .append(Text.literal(entry.source().getLabel() + " ")
+                            .formatted(Formatting.YELLOW))
+                    .append(Text.literal(delta)
+                            .formatted(entry.delta() >= 0 ? Formatting.GREEN : Formatting.RED))
+                    .append(Text.literal(" → " + entry.balance())
+                            .formatted(Formatting.GOLD))
+                    .append(Text.literal(details.isEmpty() ? "" : " (" + details + ")")
+                            .formatted(Formatting.GRAY));
+            source.sendFeedback(() -> line, false);
+        }
+    }
+
+    /**
+     * Resolves a player's name from the server's user cache, falling back to their UUID.
+     */
+    private static String playerName(MinecraftServer server, UUID uuid) {
+        ServerPlayerEntity online = server.getPlayerManager().getPlayer(uuid);
+        if (online != null) {
+            return online.getName().getString();
+        }
+        if (server.getUserCache() != null) {
+            return server.getUserCache().getByUuid(uuid).map(GameProfile::getName).orElse(uuid.toString());
+        }
+        return uuid.toString();
+    }
+
+    /**
+     * Show a page of the leaderboard. Answered right away, unless the leaderboard is still
+     * being rebuilt after startup; feedback is then sent once it is ready.
+     * Command: /pokedollars top [page]
+     */
+    private static int showTop(CommandContext<ServerCommandSource> context, int page) {
+        ServerCommandSource source = context.getSource();
+        MinecraftServer server = source.getServer();
+        int offset = (page - 1) * TOP_PAGE_SIZE;
+
+        CurrencyManager.getRankedPlayerCount()
+                .thenCombine(CurrencyManager.getLeaderboard(offset, TOP_PAGE_SIZE), Map::entry)
+                .whenComplete((result, error) -> server.execute(() -> {
+                    if (error != null) {
+                        DyuusAcademyFeatures.LOGGER.error("Failed to read the PokéDollars leaderboard", error);
+                        source.sendError(Text.literal("Échec de la lecture du classement: " + error.getMessage()));
+                        return;
+                    }
+                    sendTopPage(source, page, offset, result.getKey(), result.getValue());
+                }));
+        return 1;
+    }
+
+    private static void sendTopPage(ServerCommandSource source, int page, int offset, int ranked,
+                                    List<Map.Entry<UUID, Integer>> entries) {
+        int pages = Math.max(1, (ranked + TOP_PAGE_SIZE - 1) / TOP_PAGE_SIZE);
+        if (page > pages) {
+            source.sendError(Text.literal("Page " + page + " introuvable (" + pages + " page" + (pages > 1 ? "s" : "") + ")"));
+            return;
+        }
+
+        source.sendFeedback(() -> Text.literal("Classement PokéDollars (page " + page + "/" + pages + "):")
+                .formatted(Formatting.GOLD), false);
+        if (entries.isEmpty()) {
+            source.sendFeedback(() -> Text.literal("Aucun joueur classé").formatted(Formatting.GRAY), false);
+            return;
+        }
+
+        for (int i = 0; i < entries.size(); i++) {
+            Map.Entry<UUID, Integer> entry = entries.get(i);
+            Text line = Text.literal("#" + (offset + i + 1) + " ")
+                    .formatted(Formatting.GRAY)
+                    .append(Text.literal(playerName(source.getServer(), entry.getKey()) + " ")
+                            .formatted(Formatting.YELLOW))
+                    .append(Text.literal(entry.getValue() + " PokéDollars")
+                            .formatted(Formatting.GOLD));
+            source.sendFeedback(() -> line, false);
+        }
+    }
+
+    /**
+     * Show the command source's own leaderboard position.
+     * Command: /pokedollars rank
+     */
+    private static int showOwnRank(CommandContext<ServerCommandSource> context) {
+        ServerPlayerEntity player = context.getSource().getPlayer();
+        if (player == null) return 0;
+
+        return sendRank(context.getSource(), player.getUuid(), player.getName().getString());
+    }
+
+    /**
+     * Show a player's leaderboard position (works for offline players). Their balance is
+     * only shown to admins.
+     * Command: /pokedollars rank <player>
+     */
+    private static int showOtherRank(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        int result = 0;
+        for (GameProfile profile : GameProfileArgumentType.getProfileArgument(context, "player")) {
+            result = sendRank(context.getSource(), profile.getId(), profile.getName());
+        }
+        return result;
+    }
+
+    /**
+     * Reads a player's rank, then sends it to the command source. The balance is only shown
+     * for the source's own rank or to admins; it is read off the server thread, since the
+     * player may be offline and their account not in memory.
+     */
+    private static int sendRank(ServerCommandSource source, UUID uuid, String name) {
+        MinecraftServer server = source.getServer();
+        ServerPlayerEntity self = source.getPlayer();
+        boolean showBalance = source.hasPermissionLevel(2) || (self != null && self.getUuid().equals(uuid));
+        CompletableFuture<Integer> balanceFuture = showBalance
+                ? CompletableFuture.supplyAsync(() -> CurrencyManager.getBalance(uuid), Util.getIoWorkerExecutor())
+                : CompletableFuture.completedFuture(-1);
+
+        CurrencyManager.getRank(uuid)
+                .thenCombine(CurrencyManager.getRankedPlayerCount(), Map::entry)
+                .thenCombine(balanceFuture, Map::entry)
+                .whenComplete((result, error) -> server.execute(() -> {
+                    if (error != null) {
+                        DyuusAcademyFeatures.LOGGER.error("Failed to read the PokéDollars rank of {}", name, error);
+                        source.sendError(Text.literal("Échec de la lecture du classement: " + error.getMessage()));
+                        return;
+                    }
+                    int rank = result.getKey().getKey();
+                    if (rank == 0) {
+                        source.sendFeedback(() -> Text.literal(name + " n'est pas classé").formatted(Formatting.GRAY), false);
+                        return;
+                    }
+
+                    int ranked = result.getKey().getValue();
+                    int balance = result.getValue();
+                    source.sendFeedback(
+                            () -> Text.literal(name + " est ")
+                                    .formatted(Formatting.GOLD)
+                                    .append(Text.literal("#" + rank)
+                                            .formatted(Formatting.YELLOW))
+                                    .append(Text.literal(" sur " + ranked + (balance >= 0 ? " avec " + balance + " PokéDollars" : ""))
+                                            .formatted(Formatting.GOLD)),
+                            false
+                    );
+                }));
+        return 1;
+    }
+
+    /**
+     * Show the accounts whose balance was saved in the last minutes, most recent first.
+     * Answered from the "sqlite" backend's index, off the server thread.
+     * Command: /pokedollars changed <minutes>
+     */
+    private static int showChanged(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        MinecraftServer server = source.getServer();
+        int minutes = IntegerArgumentType.getInteger(context, "minutes");
+        long since = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(minutes);
+
+        CurrencyManager.getBalancesChangedSince(since).whenComplete((entries, error) -> server.execute(() -> {
+            if (error != null) {
+                if (error.getCause() instanceof UnsupportedOperationException
+                        || error instanceof UnsupportedOperationException) {
+                    source.sendError(Text.literal("Cette commande nécessite le stockage \"sqlite\""));
+                    return;
+                }
+                DyuusAcademyFeatures.LOGGER.error("Failed to read recently changed PokéDollars balances", error);
+                source.sendError(Text.literal("Échec de la lecture des soldes: " + error.getMessage()));
+                return;
+            }
+            if (entries.isEmpty()) {
+                source.sendFeedback(() -> Text.literal("Aucun solde modifié depuis " + minutes + " min")
+                        .formatted(Formatting.GRAY), false);
+                return;
+            }
+
+            source.sendFeedback(() -> Text.literal(entries.size() + " solde(s) modifié(s) depuis " + minutes + " min:")
+                    .formatted(Formatting.GOLD), false);
+            // Oldest change first: list the most recent ones
+            for (int i = entries.size() - 1; i >= Math.max(0, entries.size() - CHANGED_LIMIT); i--) {
+                Map.Entry<UUID, Integer> entry = entries.get(i);
+                Text line = Text.literal(playerName(server, entry.getKey()) + " ")
+                        .formatted(Formatting.YELLOW)
+                        .append(Text.literal(entry.getValue() + " PokéDollars")
+                                .formatted(Formatting.GOLD));
+                source.sendFeedback(() -> line, false);
+            }
+            if (entries.size() > CHANGED_LIMIT) {
+                int more = entries.size() - CHANGED_LIMIT;
+                source.sendFeedback(() -> Text.literal("... et " + more + " autre(s)").formatted(Formatting.GRAY), false);
+            }
+        }));
+        return 1;
+    }
+
+    /**
+     * Show the economy aggregates: money supply, and money created, destroyed and
+     * transferred over the last minute, hour and day.
+     * Command: /pokedollars stats
+     */
+    private static int showStats(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        EconomyReport report = CurrencyManager.getEconomyReport();
+
+        source.sendFeedback(
+                () -> Text.literal("Masse monétaire: ")
+                        .formatted(Formatting.GOLD)
+                        .append(Text.literal(report.moneySupply() + " PokéDollars")
+                                .formatted(Formatting.YELLOW)),
+                false
+        );
+        sendWindow(source, "1 min", report.lastMinute());
+        sendWindow(source, "1 h", report.lastHour());
+        sendWindow(source, "24 h", report.lastDay());
+
+        EconomyReport.Window day = report.lastDay();
+        for (Map.Entry<TransactionSource, Long> entry : day.createdBySource().entrySet()) {
+            source.sendFeedback(() -> Text.literal("  + " + entry.getKey().getLabel() + ": " + entry.getValue())
+                    .formatted(Formatting.GREEN), false);
+        }
+        for (Map.Entry<TransactionSource, Long> entry : day.destroyedBySource().entrySet()) {
+            source.sendFeedback(() -> Text.literal("  - " + entry.getKey().getLabel() + ": " + entry.getValue())
+                    .formatted(Formatting.RED), false);
+        }
+        return 1;
+    }
+
+    private static void sendWindow(ServerCommandSource source, String label, EconomyReport.Window window) {
+        source.sendFeedback(
+                () -> Text.literal(label + ": ")
+                        .formatted(Formatting.GOLD)
+                        .append(Text.literal("+" + window.created() + " créés")
+                                .formatted(Formatting.GREEN))
+                        .append(Text.literal(", ")
+                                .formatted(Formatting.GRAY))
+                        .append(Text.literal("-" + window.destroyed() + " détruits")
+                                .formatted(Formatting.RED))
+                        .append(Text.literal(", " + window.transferred() + " transférés")
+                                .formatted(Formatting.GRAY)),
+                false
+        );
+    }
+}
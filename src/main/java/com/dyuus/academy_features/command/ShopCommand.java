@@ -7,6 +7,7 @@ import com.mojang.brigadier.suggestion.SuggestionProvider;
 import com.dyuus.academy_features.DyuusAcademyFeatures;
 import com.dyuus.academy_features.config.ShopConfig;
 import com.dyuus.academy_features.config.ShopConfigManager;
+import com.dyuus.academy_features.network.ShopRateLimiter;
 import com.dyuus.academy_features.screen.ShopScreenHandler;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
 import net.fabricmc.fabric.api.screenhandler.v1.ExtendedScreenHandlerFactory;
@@ -56,6 +57,11 @@ public class ShopCommand {
                     .then(CommandManager.literal("list")
                             .executes(ShopCommand::listShops)
                     )
+
+                    // /shop throttled → shop packets dropped by the rate limiter
+                    .then(CommandManager.literal("throttled")
+                            .executes(ShopCommand::showThrottled)
+                    )
             );
         });
     }
@@ -136,7 +142,7 @@ public class ShopCommand {
             player.openHandledScreen(new ExtendedScreenHandlerFactory<ShopScreenHandler.Data>() {
                 @Override
                 public ShopScreenHandler.Data getScreenOpeningData(ServerPlayerEntity player) {
-                    return data;
+                    return data.forPlayer(player);
                 }
 
                 @Override
@@ -201,6 +207,33 @@ public class ShopCommand {
         return 1;
     }
 
+    /**
+     * Shows how many shop packets the rate limiter dropped, in total and per online player.
+     */
+    private static int showThrottled(CommandContext<ServerCommandSource> context) {
+        long total = ShopRateLimiter.getTotalDropped();
+        context.getSource().sendFeedback(
+                () -> Text.literal("Paquets de shop ignorés: ")
+                        .formatted(Formatting.GOLD)
+                        .append(Text.literal(String.valueOf(total)).formatted(Formatting.YELLOW)),
+                false
+        );
+
+        for (var entry : ShopRateLimiter.getDroppedByPlayer().entrySet()) {
+            context.getSource().sendFeedback(
+                    () -> Text.literal(" - ")
+                            .formatted(Formatting.GRAY)
+                            .append(Text.literal(entry.getKey())
+                                    .formatted(Formatting.GREEN))
+                            .append(Text.literal(" : " + entry.getValue())
+                                    .formatted(Formatting.DARK_GRAY)),
+                    false
+            );
+        }
+
+        return 1;
+    }
+
     /**
      * Reloads all shop configurations.
      */
@@ -0,0 +1,168 @@
+package com.dyuus.academy_features.config;
+
+import com.dyuus.academy_features.DyuusAcademyFeatures;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Configuration class for the PokéDollars economy.
+ * Handles loading and saving economy settings from/to a JSON file.
+ */
+public class CurrencyConfig {
+
+    // Gson instance with pretty printing for readable JSON files
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    // Config file location in the minecraft config folder
+    private static File configFile;
+
+    // Singleton instance of the config
+    private static CurrencyConfig INSTANCE;
+
+    public static final String STORAGE_LEDGER = "ledger";
+    public static final String STORAGE_COMPONENT = "component";
+
+    public static final String BACKEND_LEDGER = "ledger";
+    public static final String BACKEND_SQLITE = "sqlite";
+    public static final String BACKEND_JSON = "json";
+
+    // ==================== Configuration Fields ====================
+
+    /**
+     * Where player balances are stored:
+     *   "ledger"    - Balances are saved by the storage backend below (default)
+     *   "component" - A player component saved with each player's own data and synced to
+     *                 their client. Offline players only keep pending credits in the storage backend,
+     *                 which are merged into the component on their next join.
+     * Requires a server restart to take effect.
+     */
+    public String storageMode = STORAGE_LEDGER;
+
+    /**
+     * Format balances are saved in, in the world's data folder:
+     *   "ledger" - Binary ledger files, updated in place (default)
+     *   "sqlite" - A SQLite database (pokedollars.db), with indexed queries such as top balances
+     *   "json"   - The original pokedollars.json file, entirely rewritten on each save
+     * Balances are copied over automatically when this changes.
+     * Requires a server restart to take effect.
+     */
+    public String storageBackend = BACKEND_LEDGER;
+
+    /**
+     * Maximum number of offline players' balances kept in memory.
+     * Balances are loaded on join or on first access; beyond this limit, the least recently
+     * used offline balances are dropped from memory once saved. Online players are always kept.
+     */
+    public int maxCachedAccounts = 10_000;
+
+    /**
+     * Whether every balance change is recorded in the audit log
+     * (data/academy_features/audit in the world folder), viewable with /pokedollars history.
+     */
+    public boolean auditLog = true;
+
+    /**
+     * Number of days audit log files are kept (0 keeps them forever).
+     */
+    public int auditRetentionDays = 30;
+
+    // ==================== Static Methods ====================
+
+    /**
+     * Initializes the configuration system.
+     * Creates the config file if it doesn't exist, or loads existing config.
+     */
+    public static void initialize() {
+        configFile = new File(FabricLoader.getInstance().getConfigDir().toFile(),
+                "dyuus-academy-features/currency.json");
+
+        // Create parent directories if they don't exist
+        if (!configFile.getParentFile().exists()) {
+            configFile.getParentFile().mkdirs();
+        }
+
+        // Load existing config or create new one
+        if (configFile.exists()) {
+            load();
+        } else {
+            INSTANCE = new CurrencyConfig();
+            save();
+        }
+
+        DyuusAcademyFeatures.LOGGER.info("Currency Config initialized - Storage mode: {}, backend: {}",
+                INSTANCE.storageMode, INSTANCE.storageBackend);
+    }
+
+    /**
+     * Returns the current configuration instance.
+     * @return The config instance, or a new default instance if not initialized.
+     */
+    public static CurrencyConfig get() {
+        if (INSTANCE == null) {
+            INSTANCE = new CurrencyConfig();
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Whether balances of online players are stored in their player component.
+     */
+    public boolean useComponentStorage() {
+        return STORAGE_COMPONENT.equalsIgnoreCase(storageMode);
+    }
+
+    /**
+     * Loads the configuration from the JSON file.
+     */
+    public static void load() {
+        try (FileReader reader = new FileReader(configFile)) {
+            INSTANCE = GSON.fromJson(reader, CurrencyConfig.class);
+
+            // Validate loaded values
+            if (INSTANCE == null) {
+                INSTANCE = new CurrencyConfig();
+            }
+            if (INSTANCE.storageMode == null) {
+                INSTANCE.storageMode = STORAGE_LEDGER;
+            }
+            if (INSTANCE.storageBackend == null) {
+                INSTANCE.storageBackend = BACKEND_LEDGER;
+            }
+            INSTANCE.storageBackend = INSTANCE.storageBackend.toLowerCase(Locale.ROOT);
+            if (!INSTANCE.storageBackend.equals(BACKEND_SQLITE) && !INSTANCE.storageBackend.equals(BACKEND_JSON)) {
+                INSTANCE.storageBackend = BACKEND_LEDGER;
+            }
+            if (INSTANCE.maxCachedAccounts < 0) {
+                INSTANCE.maxCachedAccounts = 0;
+            }
+            if (INSTANCE.auditRetentionDays < 0) {
+                INSTANCE.auditRetentionDays = 0;
+            }
+
+            DyuusAcademyFeatures.LOGGER.info("Currency Config loaded successfully");
+        } catch (IOException e) {
+            DyuusAcademyFeatures.LOGGER.error("Failed to load Currency Config, using defaults", e);
+            INSTANCE = new CurrencyConfig();
+            save(); // Save defaults
+        }
+    }
+
+    /**
+     * Saves the current configuration to the JSON file.
+     */
+    public static void save() {
+        try (FileWriter writer = new FileWriter(configFile)) {
+            GSON.toJson(INSTANCE, writer);
+            DyuusAcademyFeatures.LOGGER.info("Currency Config saved successfully");
+        } catch (IOException e) {
+            DyuusAcademyFeatures.LOGGER.error("Failed to save Currency Config", e);
+        }
+    }
+}
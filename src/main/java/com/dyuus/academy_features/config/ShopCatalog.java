@@ -0,0 +1,282 @@
+package com.dyuus.academy_features.config;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable snapshot of a shop, as shown to players.
+ *
+ * Built once per shop by {@link ShopConfigManager} when shops are loaded or reloaded, and
+ * shared by every screen opened on that shop. The catalog is encoded a single time: each
+ * screen opening packet only copies the cached bytes, whatever the number of players.
+ * The version is a hash of the shop's ID and contents, so clients can cache catalogs across
+ * screen openings and sessions and only download one when it changed.
+ * Shop items get their {@link ShopItem#entryId} when the catalog is built and must not be
+ * modified afterwards (their server-side {@link ShopItem#template} aside, which is never encoded).
+ */
+public final class ShopCatalog {
+    // Version of the encoding, first byte of the encoded contents
+    private static final int FORMAT = 4;
+
+    private final String shopId;
+    private final long version;
+    private final String title;
+    private final List<ShopItem> items;
+
+    // Open-addressing table of entry ID → index + 1 (0 = empty slot), see indexOf()
+    private final int[] entryIds;
+    private final int[] entryIndices;
+
+    // Encoded title and items (see ShopItemCodec), as written by write()
+    private final byte[] encoded;
+
+    private ShopCatalog(String shopId, long version, String title, List<ShopItem> items, byte[] encoded) {
+        this.shopId = shopId;
+        this.version = version;
+        this.title = title;
+        this.items = items;
+        this.encoded = encoded;
+
+        int capacity = Integer.highestOneBit(Math.max(4, items.size() * 2 - 1)) << 1;
+        this.entryIds = new int[capacity];
+        this.entryIndices = new int[capacity];
+        for (int i = 0; i < items.size(); i++) {
+            int slot = find(items.get(i).entryId);
+            if (entryIndices[slot] == 0) {
+                entryIds[slot] = items.get(i).entryId;
+                entryIndices[slot] = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Builds and encodes a catalog from a shop's current configuration.
+     *
+     * @param config The shop configuration
+     * @return The catalog
+     */
+    public static ShopCatalog of(ShopConfig config) {
+        String title = config.displayName != null ? config.displayName : config.shopId;
+        List<ShopItem> items = new ArrayList<>();
+        if (config.items != null) {
+            for (ShopItem item : config.items) {
+                if (item != null) {
+                    items.add(item);
+                }
+            }
+        }
+        return of(config.shopId, title, items);
+    }
+
+    /**
+     * Builds and encodes a catalog from its contents, e.g. pages received one by one.
+     *
+     * @param shopId The shop's ID
+     * @param title The shop's title
+     * @param items The shop's items, in order
+     * @return The catalog
+     */
+    public static ShopCatalog of(String shopId, String title, List<ShopItem> items) {
+        items = Collections.unmodifiableList(new ArrayList<>(items));
+        assignEntryIds(items);
+
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            writeContents(buf, title, items);
+            byte[] encoded = new byte[buf.readableBytes()];
+            buf.readBytes(encoded);
+            return new ShopCatalog(shopId, computeVersion(shopId, encoded), title, items, encoded);
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * An empty catalog, for shops that do not exist.
+     */
+    public static ShopCatalog empty(String title) {
+        return of(new ShopConfig(null, title));
+    }
+
+    public String shopId() {
+        return shopId;
+    }
+
+    /**
+     * @return Hash of the shop's ID and contents; changes whenever the catalog does
+     */
+    public long version() {
+        return version;
+    }
+
+    public String title() {
+        return title;
+    }
+
+    /**
+     * @return The shop's items, unmodifiable
+     */
+    public List<ShopItem> items() {
+        return items;
+    }
+
+    /**
+     * Finds an item by its entry ID, in constant time.
+     *
+     * @param entryId The item's {@link ShopItem#entryId}
+     * @return The item's index, or -1 if this catalog has no such item
+     */
+    public int indexOf(int entryId) {
+        return entryIndices[find(entryId)] - 1;
+    }
+
+    // ==================== Entry IDs ====================
+
+    /**
+     * Gives each item an entry ID derived from its item ID and components, so an entry keeps
+     * its ID when the shop is reordered or its prices change. Duplicate entries get the next
+     * free ID, in order.
+     */
+    private static void assignEntryIds(List<ShopItem> items) {
+        Set<Integer> used = new HashSet<>();
+        for (ShopItem item : items) {
+            int id = identityHash(item);
+            while (!used.add(id)) {
+                id++;
+            }
+            item.entryId = id;
+        }
+    }
+
+    private static int identityHash(ShopItem item) {
+        int hash = Objects.requireNonNullElse(item.itemId, "").hashCode();
+        if (item.components != null) {
+            for (Map.Entry<String, String> entry : new TreeMap<>(item.components).entrySet()) {
+                hash = hash * 31 + entry.getKey().hashCode();
+                hash = hash * 31 + Objects.requireNonNullElse(entry.getValue(), "").hashCode();
+            }
+        }
+        // Murmur3 finalizer, so similar item IDs do not get neighbouring IDs
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * @return The table slot holding an entry ID, or the empty slot where it would go
+     */
+    private int find(int entryId) {
+        int mask = entryIds.length - 1;
+        int slot = (entryId * 0x9E3779B9) & mask;
+        while (entryIndices[slot] != 0 && entryIds[slot] != entryId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // ==================== Encoding ====================
+
+    /**
+     * Writes the catalog's title and items (its cached bytes).
+     */
+    public void write(ByteBuf buf) {
+        buf.writeBytes(encoded);
+    }
+
+    /**
+     * Reads a catalog written by {@link #write}.
+     *
+     * @param buf The buffer to read from
+     * @param shopId The shop's ID, sent alongside
+     * @param version The catalog's version, sent alongside
+     * @return The catalog
+     */
+    public static ShopCatalog read(ByteBuf buf, String shopId, long version) {
+        int start = buf.readerIndex();
+        int format = buf.readUnsignedByte();
+        if (format != FORMAT) {
+            throw new IllegalArgumentException("Unsupported shop catalog format: " + format);
+        }
+        String title = ShopItemCodec.readString(buf);
+        List<ShopItem> items = ShopItemCodec.read(buf);
+
+        // Keep the bytes, so the catalog can be cached as received
+        byte[] encoded = new byte[buf.readerIndex() - start];
+        buf.getBytes(start, encoded);
+        return new ShopCatalog(shopId, version, title, Collections.unmodifiableList(items), encoded);
+    }
+
+    /**
+     * Writes a range of the catalog's items, for catalogs too large to be sent at once.
+     *
+     * @param buf The buffer to write to
+     * @param from Index of the first item (inclusive)
+     * @param to Index of the last item (exclusive)
+     */
+    public void writeItems(ByteBuf buf, int from, int to) {
+        ShopItemCodec.write(buf, items.subList(from, to));
+    }
+
+    /**
+     * Reads items written by {@link #writeItems}.
+     */
+    public static List<ShopItem> readItems(ByteBuf buf) {
+        return ShopItemCodec.read(buf);
+    }
+
+    /**
+     * @return Size of the catalog's encoded title and items, in bytes
+     */
+    public int encodedSize() {
+        return encoded.length;
+    }
+
+    /**
+     * @return Size the catalog would have in the legacy format (fixed-size ints, no string table), in bytes
+     */
+    public int legacyEncodedSize() {
+        byte[] title = Objects.requireNonNullElse(this.title, "").getBytes(StandardCharsets.UTF_8);
+        return Integer.BYTES + title.length + ShopItemCodec.legacySize(items);
+    }
+
+    /**
+     * @return A copy of the catalog's encoded title and items
+     */
+    public byte[] toBytes() {
+        return encoded.clone();
+    }
+
+    private static long computeVersion(String shopId, byte[] encoded) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(Objects.requireNonNullElse(shopId, "").getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(encoded);
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void writeContents(ByteBuf buf, String title, List<ShopItem> items) {
+        buf.writeByte(FORMAT);
+        ShopItemCodec.writeString(buf, title);
+        ShopItemCodec.write(buf, items);
+    }
+}
@@ -2,13 +2,30 @@ package com.dyuus.academy_features.config;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
 import com.dyuus.academy_features.DyuusAcademyFeatures;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.JsonOps;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.component.ComponentType;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.RegistryOps;
+import net.minecraft.registry.RegistryWrapper;
+import net.minecraft.util.Identifier;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Stream;
@@ -21,9 +38,15 @@ public class ShopConfigManager {
     // Map of shopId -> ShopConfig
     private static final Map<String, ShopConfig> shops = new HashMap<>();
 
+    // Map of shopId -> immutable catalog sent to clients, rebuilt only when shops are (re)loaded
+    private static final Map<String, ShopCatalog> catalogs = new HashMap<>();
+
     // Default shop ID (used when no shop is specified)
     private static final String DEFAULT_SHOP_ID = "general";
 
+    // Registries of the running server, needed to compile shop items (null while no server is running)
+    private static RegistryWrapper.WrapperLookup registries = null;
+
     public static void initialize() {
         try {
             Files.createDirectories(SHOPS_DIR);
@@ -36,9 +59,17 @@ public class ShopConfigManager {
                 DyuusAcademyFeatures.LOGGER.info("No shops found, creating default shop...");
                 createDefaultShops();
             }
+            rebuildCatalogs();
 
             DyuusAcademyFeatures.LOGGER.info("Shop configuration loaded successfully - {} shops available", shops.size());
 
+            // Items and components can only be resolved once the server's registries exist
+            ServerLifecycleEvents.SERVER_STARTED.register(server -> {
+                registries = server.getRegistryManager();
+                compileAllShops();
+            });
+            ServerLifecycleEvents.SERVER_STOPPED.register(server -> registries = null);
+
         } catch (IOException e) {
             DyuusAcademyFeatures.LOGGER.error("Failed to initialize shop configuration", e);
         }
@@ -84,6 +115,150 @@ public class ShopConfigManager {
         }
     }
 
+    // ==================== Catalogs ====================
+
+    /**
+     * Builds the catalog snapshot of every shop, replacing the previous ones.
+     * Screens already open keep the snapshot they were opened with.
+     */
+    private static void rebuildCatalogs() {
+        catalogs.clear();
+        long encodedBytes = 0;
+        long legacyBytes = 0;
+        for (ShopConfig config : shops.values()) {
+            ShopCatalog catalog = ShopCatalog.of(config);
+            catalogs.put(config.shopId, catalog);
+
+            int legacySize = catalog.legacyEncodedSize();
+            encodedBytes += catalog.encodedSize();
+            legacyBytes += legacySize;
+            DyuusAcademyFeatures.LOGGER.debug("Shop '{}' catalog: {} items, {} bytes (legacy format: {} bytes)",
+                    config.shopId, catalog.items().size(), catalog.encodedSize(), legacySize);
+        }
+        if (legacyBytes > 0) {
+            DyuusAcademyFeatures.LOGGER.info("Shop catalogs encoded in {} bytes ({}% of the legacy format's {} bytes)",
+                    encodedBytes, encodedBytes * 100 / legacyBytes, legacyBytes);
+        }
+    }
+
+    /**
+     * Gets the shared catalog snapshot of a shop.
+     *
+     * @param shopId The shop identifier
+     * @return The catalog, or null if the shop does not exist
+     */
+    public static ShopCatalog getCatalog(String shopId) {
+        return catalogs.get(shopId);
+    }
+
+    /**
+     * @return Versions of the current catalogs of all shops
+     */
+    public static Set<Long> getCatalogVersions() {
+        Set<Long> versions = new HashSet<>();
+        for (ShopCatalog catalog : catalogs.values()) {
+            versions.add(catalog.version());
+        }
+        return versions;
+    }
+
+    // ==================== Compilation ====================
+
+    /**
+     * Compiles every item of every shop into its template stack (see {@link ShopItem#template}).
+     * Invalid items and components are reported here, once, instead of on each purchase.
+     * Does nothing while no server is running; called again when one starts.
+     */
+    private static void compileAllShops() {
+        if (registries == null) return;
+
+        RegistryOps<JsonElement> ops = RegistryOps.of(JsonOps.INSTANCE, registries);
+        int invalid = 0;
+        for (ShopConfig config : shops.values()) {
+            for (ShopItem shopItem : config.items) {
+                if (!compileItem(config, shopItem, ops)) {
+                    invalid++;
+                }
+            }
+        }
+
+        if (invalid > 0) {
+            DyuusAcademyFeatures.LOGGER.warn("{} shop items have errors, see above", invalid);
+        }
+    }
+
+    /**
+     * Resolves a shop item's ID and decodes its components through their codecs into its template stack.
+     *
+     * @return true if the item compiled without errors
+     */
+    private static boolean compileItem(ShopConfig config, ShopItem shopItem, RegistryOps<JsonElement> ops) {
+        shopItem.template = null;
+
+        Identifier itemId = shopItem.itemId != null ? Identifier.tryParse(shopItem.itemId) : null;
+        Item item = itemId != null ? Registries.ITEM.getOrEmpty(itemId).orElse(Items.AIR) : Items.AIR;
+        if (item == Items.AIR) {
+            DyuusAcademyFeatures.LOGGER.error("Shop '{}': unknown item '{}', it cannot be bought or sold",
+                    config.shopId, shopItem.itemId);
+            return false;
+        }
+
+        ItemStack stack = new ItemStack(item);
+        boolean valid = true;
+        if (shopItem.components != null) {
+            for (Map.Entry<String, String> entry : shopItem.components.entrySet()) {
+                try {
+                    applyComponent(stack, entry.getKey(), entry.getValue(), ops);
+                } catch (RuntimeException e) {
+                    DyuusAcademyFeatures.LOGGER.error("Shop '{}': invalid component {} on '{}', ignored: {}",
+                            config.shopId, entry.getKey(), shopItem.itemId, e.getMessage());
+                    valid = false;
+                }
+            }
+        }
+
+        shopItem.template = stack;
+        shopItem.componentSignature = stack.getComponentChanges().hashCode();
+        return valid;
+    }
+
+    private static void applyComponent(ItemStack stack, String key, String value, RegistryOps<JsonElement> ops) {
+        Identifier componentId = Identifier.tryParse(key);
+        ComponentType<?> type = componentId != null ? Registries.DATA_COMPONENT_TYPE.get(componentId) : null;
+        if (type == null) {
+            throw new IllegalArgumentException("unknown component type");
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("missing value");
+        }
+        decodeComponent(stack, type, value, ops);
+    }
+
+    /**
+     * Decodes a component value with the component's own codec and sets it on the stack.
+     * Values are JSON (e.g. a text component for minecraft:custom_name); a value that is not
+     * valid JSON, or that the codec rejects as JSON, is read as a plain string.
+     */
+    private static <T> void decodeComponent(ItemStack stack, ComponentType<T> type, String value, RegistryOps<JsonElement> ops) {
+        Codec<T> codec = type.getCodec();
+        if (codec == null) {
+            throw new IllegalArgumentException("component cannot be configured");
+        }
+
+        JsonElement json;
+        try {
+            json = JsonParser.parseString(value);
+        } catch (JsonParseException e) {
+            json = new JsonPrimitive(value);
+        }
+
+        DataResult<T> result = codec.parse(ops, json);
+        if (result.isError() && !(json instanceof JsonPrimitive primitive && primitive.isString())) {
+            result = codec.parse(ops, new JsonPrimitive(value));
+        }
+        stack.set(type, result.getOrThrow(IllegalArgumentException::new));
+    }
+
     /**
      * Saves a shop config to its JSON file.
      *
@@ -215,6 +390,8 @@ public class ShopConfigManager {
      */
     public static void reloadConfig() {
         loadAllShops();
+        compileAllShops();
+        rebuildCatalogs();
         DyuusAcademyFeatures.LOGGER.info("Reloaded {} shops", shops.size());
     }
 
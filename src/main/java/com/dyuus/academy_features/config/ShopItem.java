@@ -2,11 +2,13 @@ package com.dyuus.academy_features.config;
 
 import com.mojang.serialization.Codec;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
-import net.minecraft.network.RegistryByteBuf;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.item.ItemStack;
 
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 public class ShopItem {
     public String itemId;
@@ -20,6 +22,21 @@ public class ShopItem {
     // NOUVEAU : Map optionnelle pour les composants personnalisés
     public Map<String, String> components = new HashMap<>();
 
+    // Optional category players can filter the shop by (null or empty: none)
+    public String category;
+
+    // Stack given to buyers, with its components decoded: compiled once by ShopConfigManager
+    // when the server starts or shops are reloaded (never saved or sent, null if invalid)
+    public transient ItemStack template;
+
+    // Hash of the template's components (those differing from the item's defaults), compiled
+    // with it: stacks are only sold as this item if their components match
+    public transient int componentSignature;
+
+    // Identifies the entry in its shop's catalog, assigned by ShopCatalog from the item's
+    // ID and components so it survives reloads that reorder the shop (never saved)
+    public transient int entryId;
+
     public static final Codec<ShopItem> CODEC = RecordCodecBuilder.create(instance ->
             instance.group(
                     Codec.STRING.fieldOf("itemId").forGetter(i -> i.itemId),
@@ -28,8 +45,9 @@ public class ShopItem {
                     Codec.INT.fieldOf("sellPrice").forGetter(i -> i.sellPrice),
                     Codec.BOOL.fieldOf("canBuy").forGetter(i -> i.canBuy),
                     Codec.BOOL.fieldOf("canSell").forGetter(i -> i.canSell),
-                    Codec.INT.fieldOf("maxStackSize").forGetter(i -> i.maxStackSize)
-            ).apply(instance, (itemId, displayName, buyPrice, sellPrice, canBuy, canSell, maxStackSize) -> {
+                    Codec.INT.fieldOf("maxStackSize").forGetter(i -> i.maxStackSize),
+                    Codec.STRING.optionalFieldOf("category").forGetter(i -> Optional.ofNullable(i.category))
+            ).apply(instance, (itemId, displayName, buyPrice, sellPrice, canBuy, canSell, maxStackSize, category) -> {
                 ShopItem item = new ShopItem();
                 item.itemId = itemId;
                 item.displayName = displayName;
@@ -38,11 +56,36 @@ public class ShopItem {
                 item.canBuy = canBuy;
                 item.canSell = canSell;
                 item.maxStackSize = maxStackSize;
+                item.category = category.orElse(null);
                 return item;
             })
     );
 
-    public static void encode(RegistryByteBuf buf, ShopItem item) {  // ← CHANGER ICI
+    /**
+     * Creates the stack given to a buyer from the compiled template.
+     *
+     * @param quantity Stack size
+     * @return A copy of the template, or ItemStack.EMPTY if this item failed to compile
+     */
+    public ItemStack createStack(int quantity) {
+        return template != null ? template.copyWithCount(quantity) : ItemStack.EMPTY;
+    }
+
+    /**
+     * Checks whether a stack is this item, components included (a stack with other
+     * components, e.g. another booster pack variant, does not match).
+     *
+     * @param stack The stack to check
+     * @return true if the stack can be sold as this item
+     */
+    public boolean matches(ItemStack stack) {
+        return template != null
+                && stack.getItem() == template.getItem()
+                && stack.getComponentChanges().hashCode() == componentSignature
+                && ItemStack.areItemsAndComponentsEqual(stack, template);
+    }
+
+    public static void encode(ByteBuf buf, ShopItem item) {  // ← CHANGER ICI
         writeString(buf, item.itemId);
         writeString(buf, item.displayName);
         buf.writeInt(item.buyPrice);
@@ -52,14 +95,15 @@ public class ShopItem {
         buf.writeInt(item.maxStackSize);
 
         // NOUVEAU : Encoder les composants
-        buf.writeInt(item.components.size());
-        for (Map.Entry<String, String> entry : item.components.entrySet()) {
+        Map<String, String> components = item.components != null ? item.components : Map.of();
+        buf.writeInt(components.size());
+        for (Map.Entry<String, String> entry : components.entrySet()) {
             writeString(buf, entry.getKey());
             writeString(buf, entry.getValue());
         }
     }
 
-    public static ShopItem decode(RegistryByteBuf buf) {  // ← CHANGER ICI
+    public static ShopItem decode(ByteBuf buf) {  // ← CHANGER ICI
         ShopItem item = new ShopItem();
         item.itemId = readString(buf);
         item.displayName = readString(buf);
@@ -81,13 +125,13 @@ public class ShopItem {
         return item;
     }
 
-    private static void writeString(RegistryByteBuf buf, String str) {  // ← CHANGER ICI
-        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+    private static void writeString(ByteBuf buf, String str) {  // ← CHANGER ICI
+        byte[] bytes = (str != null ? str : "").getBytes(StandardCharsets.UTF_8);
         buf.writeInt(bytes.length);
         buf.writeBytes(bytes);
     }
 
-    private static String readString(RegistryByteBuf buf) {  // ← CHANGER ICI
+    private static String readString(ByteBuf buf) {  // ← CHANGER ICI
         int length = buf.readInt();
         byte[] bytes = new byte[length];
         buf.readBytes(bytes);
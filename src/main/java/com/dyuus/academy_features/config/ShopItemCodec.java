@@ -0,0 +1,184 @@
+package com.dyuus.academy_features.config;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.encoding.VarInts;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Compact wire format of a list of shop items, used by {@link ShopCatalog}.
+ *
+ * Compared to {@link ShopItem#encode}: lengths, prices and counts are varints, canBuy and
+ * canSell share one flag byte, and item namespaces, categories and component keys, which
+ * repeat across a shop's items, are written once in a string table at the head of the list
+ * and referenced by index.
+ *
+ * Layout: [table size][table strings...][item count][items...], where an item is
+ * [flags][entry ID][namespace index][item path][display name][buy price][sell price][max stack size]
+ * [category index][component count][(key index, value)...] and strings are [varint UTF-8 length][bytes].
+ * The namespace and category indices are only present when the matching flag is set.
+ */
+final class ShopItemCodec {
+    private static final int CAN_BUY = 1;
+    private static final int CAN_SELL = 1 << 1;
+    // The item ID has an explicit namespace (otherwise only its path is written)
+    private static final int NAMESPACED = 1 << 2;
+    private static final int HAS_CATEGORY = 1 << 3;
+
+    private static final int MAX_TABLE_SIZE = 65536;
+
+    private ShopItemCodec() {
+    }
+
+    // ==================== Encoding ====================
+
+    static void write(ByteBuf buf, List<ShopItem> items) {
+        // String table: namespaces, categories and component keys, in order of first use
+        Map<String, Integer> table = new LinkedHashMap<>();
+        for (ShopItem item : items) {
+            int separator = separator(item.itemId);
+            if (separator >= 0) {
+                table.putIfAbsent(item.itemId.substring(0, separator), table.size());
+            }
+            if (hasCategory(item)) {
+                table.putIfAbsent(item.category, table.size());
+            }
+            if (item.components != null) {
+                for (String key : item.components.keySet()) {
+                    table.putIfAbsent(Objects.requireNonNullElse(key, ""), table.size());
+                }
+            }
+        }
+
+        VarInts.write(buf, table.size());
+        for (String entry : table.keySet()) {
+            writeString(buf, entry);
+        }
+
+        VarInts.write(buf, items.size());
+        for (ShopItem item : items) {
+            String itemId = Objects.requireNonNullElse(item.itemId, "");
+            int separator = separator(itemId);
+
+            int flags = (item.canBuy ? CAN_BUY : 0) | (item.canSell ? CAN_SELL : 0)
+                    | (separator >= 0 ? NAMESPACED : 0) | (hasCategory(item) ? HAS_CATEGORY : 0);
+            buf.writeByte(flags);
+            buf.writeInt(item.entryId);
+            if (separator >= 0) {
+                VarInts.write(buf, table.get(itemId.substring(0, separator)));
+            }
+            writeString(buf, separator >= 0 ? itemId.substring(separator + 1) : itemId);
+            writeString(buf, item.displayName);
+            VarInts.write(buf, item.buyPrice);
+            VarInts.write(buf, item.sellPrice);
+            VarInts.write(buf, item.maxStackSize);
+            if (hasCategory(item)) {
+                VarInts.write(buf, table.get(item.category));
+            }
+
+            Map<String, String> components = item.components != null ? item.components : Map.of();
+            VarInts.write(buf, components.size());
+            for (Map.Entry<String, String> entry : components.entrySet()) {
+                VarInts.write(buf, table.get(Objects.requireNonNullElse(entry.getKey(), "")));
+                writeString(buf, entry.getValue());
+            }
+        }
+    }
+
+    static List<ShopItem> read(ByteBuf buf) {
+        int tableSize = VarInts.read(buf);
+        if (tableSize < 0 || tableSize > MAX_TABLE_SIZE) {
+            throw new IllegalArgumentException("Invalid shop string table size: " + tableSize);
+        }
+        String[] table = new String[tableSize];
+        for (int i = 0; i < tableSize; i++) {
+            table[i] = readString(buf);
+        }
+
+        int size = VarInts.read(buf);
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid shop item count: " + size);
+        }
+        List<ShopItem> items = new ArrayList<>(Math.min(size, 1024));
+        for (int i = 0; i < size; i++) {
+            ShopItem item = new ShopItem();
+            int flags = buf.readUnsignedByte();
+            item.canBuy = (flags & CAN_BUY) != 0;
+            item.canSell = (flags & CAN_SELL) != 0;
+            item.entryId = buf.readInt();
+
+            if ((flags & NAMESPACED) != 0) {
+                String namespace = table[VarInts.read(buf)];
+                item.itemId = namespace + ':' + readString(buf);
+            } else {
+                item.itemId = readString(buf);
+            }
+            item.displayName = readString(buf);
+            item.buyPrice = VarInts.read(buf);
+            item.sellPrice = VarInts.read(buf);
+            item.maxStackSize = VarInts.read(buf);
+            if ((flags & HAS_CATEGORY) != 0) {
+                item.category = table[VarInts.read(buf)];
+            }
+
+            // In wire order: re-encoding the items gives back the same bytes, and the same version
+            int componentCount = VarInts.read(buf);
+            item.components = new LinkedHashMap<>();
+            for (int c = 0; c < componentCount; c++) {
+                String key = table[VarInts.read(buf)];
+                item.components.put(key, readString(buf));
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Measures the size of items in the legacy format of {@link ShopItem#encode}, to compare
+     * with the compact one.
+     */
+    static int legacySize(List<ShopItem> items) {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            buf.writeInt(items.size());
+            for (ShopItem item : items) {
+                ShopItem.encode(buf, item);
+            }
+            return buf.readableBytes();
+        } finally {
+            buf.release();
+        }
+    }
+
+    // ==================== Strings ====================
+
+    static void writeString(ByteBuf buf, String str) {
+        byte[] bytes = Objects.requireNonNullElse(str, "").getBytes(StandardCharsets.UTF_8);
+        VarInts.write(buf, bytes.length);
+        buf.writeBytes(bytes);
+    }
+
+    static String readString(ByteBuf buf) {
+        int length = VarInts.read(buf);
+        if (length < 0 || length > buf.readableBytes()) {
+            throw new IllegalArgumentException("Invalid shop string length: " + length);
+        }
+        String str = buf.toString(buf.readerIndex(), length, StandardCharsets.UTF_8);
+        buf.skipBytes(length);
+        return str;
+    }
+
+    private static boolean hasCategory(ShopItem item) {
+        return item.category != null && !item.category.isEmpty();
+    }
+
+    private static int separator(String itemId) {
+        return itemId != null ? itemId.indexOf(':') : -1;
+    }
+}
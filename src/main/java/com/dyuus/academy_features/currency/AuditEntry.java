@@ -0,0 +1,19 @@
+package com.dyuus.academy_features.currency;
+
+import java.util.UUID;
+
+/**
+ * One PokéDollars balance change read back from the audit log.
+ *
+ * @param timestamp    Time of the change, in milliseconds since the epoch
+ * @param player       Account that changed
+ * @param source       What caused the change
+ * @param delta        Signed change of the balance
+ * @param balance      Balance right after the change
+ * @param counterparty Other account of a payment, or null
+ * @param detail       Free-form detail such as the item bought, or null
+ * @param quantity     Quantity involved (items bought or sold), or 0
+ */
+public record AuditEntry(long timestamp, UUID player, TransactionSource source, long delta, long balance,
+                         UUID counterparty, String detail, int quantity) {
+}
@@ -0,0 +1,589 @@
+package com.dyuus.academy_features.currency;
+
+import com.dyuus.academy_features.DyuusAcademyFeatures;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured audit log of PokéDollars transactions.
+ *
+ * Producers publish events into a preallocated multi-producer ring buffer: claiming a slot
+ * is a single CAS and the event fields are copied into primitive arrays, so publishing
+ * never locks and never allocates. A background writer drains the ring into NDJSON files
+ * (one JSON object per line) that rotate daily or once they reach {@link #MAX_FILE_SIZE},
+ * and deletes files older than the retention period.
+ *
+ * Next to every log file, a binary index holds one fixed-size record per line (account,
+ * offset, length), each chained to the previous record of the same account in that file.
+ * Once a log file is closed, a heads file lists the last record of every account in it,
+ * sorted by account; for the open file the writer keeps them in memory. {@link #history}
+ * finds an account's last record by binary search and follows the chain backwards, so it
+ * only reads that account's records and lines, however large the files are.
+ */
+class AuditLog {
+    private static final int CAPACITY = 1 << 16;
+    private static final int MASK = CAPACITY - 1;
+    private static final long MAX_FILE_SIZE = 8L * 1024 * 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final String LOG_EXTENSION = ".ndjson";
+    private static final String INDEX_EXTENSION = ".idx";
+    private static final String HEADS_EXTENSION = ".heads";
+    // Index record: UUID most significant bits, UUID least significant bits, line offset, line length,
+    // number of the account's previous record in the same index (-1: none)
+    private static final int INDEX_RECORD_SIZE = Long.BYTES * 3 + Integer.BYTES * 2;
+    // Heads record: UUID most significant bits, UUID least significant bits, number of the last record
+    private static final int HEADS_RECORD_SIZE = Long.BYTES * 2 + Integer.BYTES;
+
+    // ==================== Ring buffer ====================
+
+    // Per-slot sequence: equal to the claim position when free, position + 1 once published
+    private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private final AtomicLong claimed = new AtomicLong();
+    private long drained = 0; // Writer thread only
+
+    private final long[] timestamps = new long[CAPACITY];
+    private final long[] msbs = new long[CAPACITY];
+    private final long[] lsbs = new long[CAPACITY];
+    private final long[] otherMsbs = new long[CAPACITY];
+    private final long[] otherLsbs = new long[CAPACITY];
+    private final long[] deltas = new long[CAPACITY];
+    private final long[] balances = new long[CAPACITY];
+    private final int[] sources = new int[CAPACITY];
+    private final int[] quantities = new int[CAPACITY];
+    private final String[] details = new String[CAPACITY];
+
+    // ==================== Files ====================
+
+    private final Path directory;
+    private final int retentionDays;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    private FileChannel logChannel;
+    private FileChannel indexChannel;
+    private LocalDate fileDate;
+    private long logSize;
+    private final StringBuilder line = new StringBuilder(256);
+    private final ByteBuffer logBuffer = ByteBuffer.allocate(64 * 1024);
+    private final ByteBuffer indexBuffer = ByteBuffer.allocate(INDEX_RECORD_SIZE * 1024);
+
+    // Last record of every account in the open index, buffered records included (writer thread only)
+    private BalanceStore chainHeads;
+    // Records numbered in the open index, and how many of them are written
+    private int indexRecords;
+    private int writtenRecords;
+    private volatile OpenIndex openIndex;
+
+    /**
+     * The index being written and the last record of every account in it, counting only the
+     * records already written (so readers never follow a chain past the end of the file).
+     */
+    private record OpenIndex(Path path, BalanceStore heads) {
+    }
+
+    /**
+     * @param directory     Folder holding the log files
+     * @param retentionDays Log files older than this are deleted (0 keeps them forever)
+     */
+    AuditLog(Path directory, int retentionDays) throws IOException {
+        this.directory = directory;
+        this.retentionDays = retentionDays;
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+
+        Files.createDirectories(directory);
+        deleteExpiredFiles();
+        sealIndexes();
+        openFiles();
+
+        this.writerThread = new Thread(this::runWriter, "PokeDollars-Audit");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Publishes a transaction. Lock-free and allocation-free; only waits if the writer is
+     * a full ring ({@value #CAPACITY} events) behind.
+     *
+     * @param msb      Most significant bits of the account's UUID
+     * @param lsb      Least significant bits of the account's UUID
+     * @param source   What caused the change
+     * @param delta    Signed change of the balance
+     * @param balance  Balance right after the change
+     * @param other    Other account of a payment, or null
+     * @param detail   Free-form detail such as an item ID, or null
+     * @param quantity Quantity involved, or 0
+     */
+    void publish(long msb, long lsb, TransactionSource source, long delta, long balance,
+                 UUID other, String detail, int quantity) {
+        if (!running) return;
+
+        long position;
+        while (true) {
+            position = claimed.get();
+            long sequence = sequences.getAcquire((int) (position & MASK));
+            if (sequence == position) {
+                if (claimed.compareAndSet(position, position + 1)) break;
+            } else if (sequence < position) {
+                // Full: the writer frees slots in bulk, so this is short-lived
+                Thread.onSpinWait();
+                if (!running) return;
+            }
+            // Otherwise another producer claimed this position first; retry with the next one
+        }
+
+        int slot = (int) (position & MASK);
+        timestamps[slot] = System.currentTimeMillis();
+        msbs[slot] = msb;
+        lsbs[slot] = lsb;
+        otherMsbs[slot] = other != null ? other.getMostSignificantBits() : 0L;
+        otherLsbs[slot] = other != null ? other.getLeastSignificantBits() : 0L;
+        deltas[slot] = delta;
+        balances[slot] = balance;
+        sources[slot] = source.ordinal();
+        quantities[slot] = quantity;
+        details[slot] = detail;
+        sequences.setRelease(slot, position + 1);
+    }
+
+    /**
+     * Drains the remaining events, closes the files and stops the writer.
+     */
+    void close() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ==================== History ====================
+
+    /**
+     * Reads an account's most recent transactions, newest first.
+     * Walks the log files from the newest backwards, following the account's chain of
+     * index records in each; only that account's records and lines are read.
+     * Safe to call from any thread while the writer runs.
+     *
+     * @param player The account
+     * @param limit  Maximum number of entries
+     */
+    List<AuditEntry> history(UUID player, int limit) throws IOException {
+        long msb = player.getMostSignificantBits();
+        long lsb = player.getLeastSignificantBits();
+        List<AuditEntry> entries = new ArrayList<>();
+
+        List<Path> indexes = listFiles(INDEX_EXTENSION, true);
+        // Read after listing: a file rotated out in between is sealed before the next one opens
+        OpenIndex open = openIndex;
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_RECORD_SIZE);
+        for (Path indexPath : indexes) {
+            if (entries.size() >= limit) break;
+            Path logPath = siblingWithExtension(indexPath, LOG_EXTENSION);
+            if (!Files.exists(logPath)) continue;
+
+            int record = open != null && indexPath.equals(open.path())
+                    ? (int) open.heads().find(msb, lsb)
+                    : findHead(siblingWithExtension(indexPath, HEADS_EXTENSION), msb, lsb);
+            if (record < 0) continue;
+
+            try (FileChannel index = FileChannel.open(indexPath, StandardOpenOption.READ);
+                 FileChannel log = FileChannel.open(logPath, StandardOpenOption.READ)) {
+                long logLength = log.size();
+                while (record >= 0 && entries.size() < limit) {
+                    entry.clear();
+                    if (!readFully(index, entry, (long) record * INDEX_RECORD_SIZE)
+                            || entry.getLong(0) != msb || entry.getLong(8) != lsb) break;
+
+                    long offset = entry.getLong(16);
+                    int length = entry.getInt(24);
+                    int previous = entry.getInt(28);
+                    if (length > 0 && offset + length <= logLength) {
+                        ByteBuffer bytes = ByteBuffer.allocate(length);
+                        readFully(log, bytes, offset);
+                        AuditEntry parsed = parse(new String(bytes.array(), 0, bytes.position(), StandardCharsets.UTF_8));
+                        if (parsed != null) {
+                            entries.add(parsed);
+                        }
+                    }
+                    // Chains only point backwards, a damaged record must not loop
+                    record = previous < record ? previous : -1;
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Binary searches a heads file for an account.
+     *
+     * @return Number of the account's last record in the matching index, or -1 if it has none
+     */
+    private static int findHead(Path headsPath, long msb, long lsb) throws IOException {
+        if (!Files.exists(headsPath)) return -1;
+        try (FileChannel heads = FileChannel.open(headsPath, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(HEADS_RECORD_SIZE);
+            long low = 0;
+            long high = heads.size() / HEADS_RECORD_SIZE - 1;
+            while (low <= high) {
+                long mid = (low + high) >>> 1;
+                head.clear();
+                if (!readFully(heads, head, mid * HEADS_RECORD_SIZE)) return -1;
+                int cmp = compareAccounts(head.getLong(0), head.getLong(8), msb, lsb);
+                if (cmp == 0) return head.getInt(16);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static int compareAccounts(long msb, long lsb, long otherMsb, long otherLsb) {
+        int cmp = Long.compare(msb, otherMsb);
+        return cmp != 0 ? cmp : Long.compare(lsb, otherLsb);
+    }
+
+    /**
+     * Reads until the buffer is full or the file ends.
+     *
+     * @return true if the buffer was filled
+     */
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) <= 0) return false;
+        }
+        return true;
+    }
+
+    private static AuditEntry parse(String json) {
+        try {
+            JsonObject object = JsonParser.parseString(json).getAsJsonObject();
+            JsonElement other = object.get("other");
+            JsonElement detail = object.get("detail");
+            JsonElement quantity = object.get("quantity");
+            return new AuditEntry(
+                    object.get("t").getAsLong(),
+                    UUID.fromString(object.get("player").getAsString()),
+                    TransactionSource.byName(object.get("source").getAsString()),
+                    object.get("delta").getAsLong(),
+                    object.get("balance").getAsLong(),
+                    other != null ? UUID.fromString(other.getAsString()) : null,
+                    detail != null ? detail.getAsString() : null,
+                    quantity != null ? quantity.getAsInt() : 0);
+        } catch (RuntimeException e) {
+            DyuusAcademyFeatures.LOGGER.debug("Skipping malformed audit log line: {}", json, e);
+            return null;
+        }
+    }
+
+    // ==================== Writer thread ====================
+
+    private void runWriter() {
+        while (true) {
+            boolean stopping = !running;
+            try {
+                int written = drain();
+                flushBuffers();
+                if (stopping) break;
+                if (written == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            } catch (IOException | RuntimeException e) {
+                DyuusAcademyFeatures.LOGGER.error("PokéDollars audit log writer failed", e);
+                if (stopping) break;
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+
+        try {
+            closeFiles();
+        } catch (IOException e) {
+            DyuusAcademyFeatures.LOGGER.error("Failed to close PokéDollars audit log", e);
+        }
+    }
+
+    /**
+     * Encodes every published event into {@link #logBuffer} and its index record into
+     * {@link #indexBuffer}, flushing both whenever one of them fills up.
+     *
+     * @return Number of events written
+     */
+    private int drain() throws IOException {
+        int written = 0;
+        while (true) {
+            int slot = (int) (drained & MASK);
+            if (sequences.getAcquire(slot) != drained + 1) break;
+
+            if (logSize >= MAX_FILE_SIZE || !LocalDate.now(ZoneId.systemDefault()).equals(fileDate)) {
+                flushBuffers();
+                rotate();
+            }
+
+            line.setLength(0);
+            appendJson(slot);
+            byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+            if (logBuffer.remaining() < bytes.length || indexBuffer.remaining() < INDEX_RECORD_SIZE) {
+                flushBuffers();
+            }
+            if (bytes.length > logBuffer.capacity()) {
+                writeFully(logChannel, ByteBuffer.wrap(bytes));
+            } else {
+                logBuffer.put(bytes);
+            }
+            indexBuffer.putLong(msbs[slot]);
+            indexBuffer.putLong(lsbs[slot]);
+            indexBuffer.putLong(logSize);
+            indexBuffer.putInt(bytes.length);
+            indexBuffer.putInt((int) chainHeads.find(msbs[slot], lsbs[slot]));
+            chainHeads.load(msbs[slot], lsbs[slot], indexRecords++);
+            logSize += bytes.length;
+
+            details[slot] = null;
+            sequences.setRelease(slot, drained + CAPACITY);
+            drained++;
+            written++;
+        }
+        return written;
+    }
+
+    private void appendJson(int slot) {
+        line.append("{\"t\":").append(timestamps[slot])
+                .append(",\"player\":\"").append(new UUID(msbs[slot], lsbs[slot])).append('"')
+                .append(",\"source\":\"").append(TransactionSource.byOrdinal(sources[slot]).name()).append('"')
+                .append(",\"delta\":").append(deltas[slot])
+                .append(",\"balance\":").append(balances[slot]);
+        if (otherMsbs[slot] != 0L || otherLsbs[slot] != 0L) {
+            line.append(",\"other\":\"").append(new UUID(otherMsbs[slot], otherLsbs[slot])).append('"');
+        }
+        if (details[slot] != null) {
+            line.append(",\"detail\":\"");
+            appendEscaped(details[slot]);
+            line.append('"');
+        }
+        if (quantities[slot] != 0) {
+            line.append(",\"quantity\":").append(quantities[slot]);
+        }
+        line.append("}\n");
+    }
+
+    private void appendEscaped(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        line.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered lines, then their index records, then makes those records the
+     * heads readers start from: an index record never points past the end of its log file,
+     * and a head never past the end of its index.
+     */
+    private void flushBuffers() throws IOException {
+        logBuffer.flip();
+        writeFully(logChannel, logBuffer);
+        logBuffer.clear();
+        indexBuffer.flip();
+        writeFully(indexChannel, indexBuffer);
+        BalanceStore heads = openIndex.heads();
+        for (int base = 0; base < indexBuffer.limit(); base += INDEX_RECORD_SIZE) {
+            heads.load(indexBuffer.getLong(base), indexBuffer.getLong(base + 8), writtenRecords++);
+        }
+        indexBuffer.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // ==================== File management ====================
+
+    private void openFiles() throws IOException {
+        fileDate = LocalDate.now(ZoneId.systemDefault());
+        String prefix = "pokedollars-" + fileDate + "-";
+
+        // Never append to a file from a previous run: start the next number of the day
+        int number = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + LOG_EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    number = Math.max(number, Integer.parseInt(
+                            name.substring(prefix.length(), name.length() - LOG_EXTENSION.length())) + 1);
+                } catch (NumberFormatException ignored) {
+                    // Not one of ours
+                }
+            }
+        }
+
+        String baseName = String.format(Locale.ROOT, "%s%03d", prefix, number);
+        Path indexPath = directory.resolve(baseName + INDEX_EXTENSION);
+        logChannel = FileChannel.open(directory.resolve(baseName + LOG_EXTENSION),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        indexChannel = FileChannel.open(indexPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        logSize = logChannel.size();
+        chainHeads = new BalanceStore();
+        indexRecords = 0;
+        writtenRecords = 0;
+        openIndex = new OpenIndex(indexPath, new BalanceStore());
+    }
+
+    private void rotate() throws IOException {
+        closeFiles();
+        deleteExpiredFiles();
+        openFiles();
+    }
+
+    private void closeFiles() throws IOException {
+        try {
+            logChannel.force(false);
+            indexChannel.force(false);
+        } finally {
+            logChannel.close();
+            indexChannel.close();
+        }
+        OpenIndex closed = openIndex;
+        writeHeads(siblingWithExtension(closed.path(), HEADS_EXTENSION), closed.heads());
+    }
+
+    /**
+     * Writes the heads file of every index left without one, e.g. by a crash, by following
+     * its records once. Records past a torn end are ignored.
+     */
+    private void sealIndexes() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_RECORD_SIZE * 1024);
+        for (Path indexPath : listFiles(INDEX_EXTENSION, false)) {
+            Path headsPath = siblingWithExtension(indexPath, HEADS_EXTENSION);
+            if (Files.exists(headsPath)) continue;
+
+            BalanceStore heads = new BalanceStore();
+            try (FileChannel index = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+                int record = 0;
+                buffer.clear();
+                while (index.read(buffer) > 0) {
+                    buffer.flip();
+                    while (buffer.remaining() >= INDEX_RECORD_SIZE) {
+                        heads.load(buffer.getLong(), buffer.getLong(), record++);
+                        buffer.position(buffer.position() + INDEX_RECORD_SIZE - Long.BYTES * 2);
+                    }
+                    buffer.compact();
+                }
+            }
+            writeHeads(headsPath, heads);
+        }
+    }
+
+    /**
+     * Writes the last record of every account, sorted by account for {@link #findHead}.
+     * Written to a temporary file first, so readers never see a partial heads file.
+     */
+    private static void writeHeads(Path headsPath, BalanceStore heads) throws IOException {
+        int count = heads.size();
+        long[] msbs = new long[count];
+        long[] lsbs = new long[count];
+        int[] records = new int[count];
+        int[] filled = {0};
+        heads.forEach((msb, lsb, record) -> {
+            int i = filled[0]++;
+            msbs[i] = msb;
+            lsbs[i] = lsb;
+            records[i] = (int) record;
+        });
+
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compareAccounts(msbs[a], lsbs[a], msbs[b], lsbs[b]));
+
+        ByteBuffer buffer = ByteBuffer.allocate(count * HEADS_RECORD_SIZE);
+        for (int i : order) {
+            buffer.putLong(msbs[i]).putLong(lsbs[i]).putInt(records[i]);
+        }
+        buffer.flip();
+        Path temp = headsPath.resolveSibling(headsPath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, buffer);
+            channel.force(false);
+        }
+        Files.move(temp, headsPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteExpiredFiles() throws IOException {
+        if (retentionDays <= 0) return;
+        FileTime cutoff = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays));
+        for (Path log : listFiles(LOG_EXTENSION, false)) {
+            if (Files.getLastModifiedTime(log).compareTo(cutoff) < 0) {
+                Files.deleteIfExists(log);
+                Files.deleteIfExists(siblingWithExtension(log, INDEX_EXTENSION));
+                Files.deleteIfExists(siblingWithExtension(log, HEADS_EXTENSION));
+            }
+        }
+    }
+
+    /**
+     * Lists this log's files with the given extension, sorted by name (i.e. by date and number).
+     */
+    private List<Path> listFiles(String extension, boolean newestFirst) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "pokedollars-*" + extension)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        if (newestFirst) {
+            Collections.reverse(files);
+        }
+        return files;
+    }
+
+    private static Path siblingWithExtension(Path file, String extension) {
+        String name = file.getFileName().toString();
+        return file.resolveSibling(name.substring(0, name.lastIndexOf('.')) + extension);
+    }
+}
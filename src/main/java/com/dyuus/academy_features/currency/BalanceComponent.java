@@ -0,0 +1,87 @@
+package com.dyuus.academy_features.currency;
+
+import com.dyuus.academy_features.DyuusAcademyFeatures;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.network.RegistryByteBuf;
+import net.minecraft.registry.RegistryWrapper;
+import net.minecraft.server.network.ServerPlayerEntity;
+import org.ladysnake.cca.api.v3.component.ComponentKey;
+import org.ladysnake.cca.api.v3.component.ComponentRegistry;
+import org.ladysnake.cca.api.v3.component.sync.AutoSyncedComponent;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Player component holding the player's PokéDollars balance when the "component"
+ * storage mode is enabled.
+ *
+ * The balance is saved with the player's own data and synced to the owning client only.
+ * While the player is online, {@link CurrencyManager} remains the entry point for all
+ * balance operations and mirrors every change into this component.
+ */
+public class BalanceComponent implements AutoSyncedComponent {
+    public static final ComponentKey<BalanceComponent> KEY =
+            ComponentRegistry.getOrCreate(DyuusAcademyFeatures.id("balance"), BalanceComponent.class);
+
+    private static final String BALANCE_KEY = "balance";
+
+    private final PlayerEntity owner;
+    private volatile long balance = 0L;
+
+    // Set while a sync is queued on the server thread, so bursts of changes sync once
+    private final AtomicBoolean syncQueued = new AtomicBoolean(false);
+
+    public BalanceComponent(PlayerEntity owner) {
+        this.owner = owner;
+    }
+
+    public long getBalance() {
+        return balance;
+    }
+
+    /**
+     * Sets the balance and schedules a sync to the owning client.
+     * Safe to call from any thread; the sync itself always runs on the server thread.
+     */
+    void setBalance(long balance) {
+        this.balance = balance;
+
+        if (owner instanceof ServerPlayerEntity serverPlayer && syncQueued.compareAndSet(false, true)) {
+            serverPlayer.server.execute(() -> {
+                syncQueued.set(false);
+                KEY.sync(owner);
+            });
+        }
+    }
+
+    // ==================== Persistence ====================
+
+    @Override
+    public void readFromNbt(NbtCompound tag, RegistryWrapper.WrapperLookup registryLookup) {
+        balance = Math.max(0L, tag.getLong(BALANCE_KEY));
+    }
+
+    @Override
+    public void writeToNbt(NbtCompound tag, RegistryWrapper.WrapperLookup registryLookup) {
+        tag.putLong(BALANCE_KEY, balance);
+    }
+
+    // ==================== Sync ====================
+
+    @Override
+    public boolean shouldSyncWith(ServerPlayerEntity player) {
+        // A balance is private to its owner
+        return player == owner;
+    }
+
+    @Override
+    public void writeSyncPacket(RegistryByteBuf buf, ServerPlayerEntity recipient) {
+        buf.writeVarLong(balance);
+    }
+
+    @Override
+    public void applySyncPacket(RegistryByteBuf buf) {
+        balance = buf.readVarLong();
+    }
+}
@@ -0,0 +1,389 @@
+package com.dyuus.academy_features.currency;
+
+import com.dyuus.academy_features.DyuusAcademyFeatures;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Append-only journal of balance changes, written by a background thread.
+ *
+ * Every change is recorded as the account's new absolute balance, so replaying the
+ * journal on top of the target's last checkpoint is idempotent. Callers copy their change into a
+ * primitive staging buffer (no allocation); the writer swaps that buffer with a spare one
+ * and commits everything staged since its last wake-up with a single write + fsync
+ * (group commit), then applies the same batch to its {@link Target}.
+ * Once the journal grows past {@link #COMPACT_THRESHOLD} records, or every
+ * {@link #COMPACT_INTERVAL_MS} ms, the writer checkpoints the target and truncates the journal.
+ * A batch whose write or fsync fails is kept and retried before anything staged after it,
+ * so records always reach the journal and the target in order.
+ *
+ * Every appended record gets a sequence number; {@link #appliedSequence()} tells which of
+ * them have reached the target, so callers know when the target is up to date for an account.
+ */
+class BalanceJournal {
+    // Record layout: UUID most significant bits, UUID least significant bits, balance
+    static final int RECORD_SIZE = Long.BYTES * 3;
+
+    private static final int COMPACT_THRESHOLD = 50_000;
+    private static final long COMPACT_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final int MAX_BATCH = 4096;
+    private static final int LONGS_PER_RECORD = 3;
+    private static final long WRITE_RETRY_MS = 1000;
+    // Attempts at writing a failed batch once the journal is closing, before giving it up
+    private static final int CLOSE_WRITE_ATTEMPTS = 3;
+
+    /**
+     * Durable storage the journal is compacted into. All methods are called on the writer thread.
+     */
+    interface Target extends Closeable {
+        /**
+         * Applies a batch of records (msb, lsb, balance triples) that was just journaled.
+         */
+        void apply(long[] records, int longs) throws IOException;
+
+        /**
+         * Makes everything applied so far durable, so the journal can be truncated.
+         */
+        void checkpoint() throws IOException;
+    }
+
+    private final Path journalPath;
+    private final Target target;
+    private final Thread writerThread;
+
+    // Staging buffers: callers fill "pending", the writer swaps it with "batch" once that one is written
+    private final ReentrantLock stagingLock = new ReentrantLock();
+    private final Condition staged = stagingLock.newCondition();
+    private long[] pending = new long[LONGS_PER_RECORD * MAX_BATCH];
+    private int pendingLongs = 0;
+    private long sequence = 0;
+
+    // Batch being written (writer thread only), kept until its write succeeds
+    private long[] batch = new long[LONGS_PER_RECORD * MAX_BATCH];
+    private int batchLongs = 0;
+    private long batchSequence = 0;
+
+    // Sequence of the last record applied to the target
+    private volatile long appliedSequence = 0;
+    private final LongConsumer onApplied;
+
+    private final FileChannel channel;
+    // Size of the journal up to its last fully written batch
+    private long journalSize;
+    private long recordCount;
+    private long lastCompaction = System.currentTimeMillis();
+    private boolean applyFailed = false;
+    private volatile boolean compactRequested = false;
+    private volatile boolean running = true;
+
+    /**
+     * @param journalPath Path of the journal file
+     * @param target      Storage the journal is compacted into
+     * @param onApplied   Called on the writer thread with {@link #appliedSequence()} after every
+     *                    wake-up (at least once per second), may be null
+     */
+    BalanceJournal(Path journalPath, Target target, LongConsumer onApplied) throws IOException {
+        this.journalPath = journalPath;
+        this.target = target;
+        this.onApplied = onApplied;
+        this.channel = FileChannel.open(journalPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.recordCount = channel.size() / RECORD_SIZE;
+        this.journalSize = recordCount * RECORD_SIZE;
+        if (channel.size() != journalSize) {
+            // Drop a record torn by a crash, so new records stay aligned
+            channel.truncate(journalSize);
+        }
+
+        this.writerThread = new Thread(this::runWriter, "PokeDollars-Journal");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Replays a journal file, calling the consumer for every complete record in order.
+     * A truncated trailing record (e.g. after a crash mid-write) is ignored.
+     *
+     * @param journalPath Path of the journal file
+     * @param consumer    Receives (msb, lsb, balance) for each record
+     * @return Number of records replayed
+     */
+    static int replay(Path journalPath, BalanceStore.EntryConsumer consumer) throws IOException {
+        if (!Files.exists(journalPath)) return 0;
+
+        int replayed = 0;
+        try (FileChannel in = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 1024);
+            while (in.read(buffer) > 0) {
+                buffer.flip();
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    consumer.accept(buffer.getLong(), buffer.getLong(), buffer.getLong());
+                    replayed++;
+                }
+                buffer.compact();
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Replays a journal file into a target, in batches.
+     *
+     * @param journalPath Path of the journal file
+     * @param target      Receives the records through {@link Target#apply}
+     * @return Number of records replayed
+     */
+    static int replay(Path journalPath, Target target) throws IOException {
+        long[] batch = new long[LONGS_PER_RECORD * MAX_BATCH];
+        int[] batchLongs = {0};
+        int replayed;
+        try {
+            replayed = replay(journalPath, (msb, lsb, balance) -> {
+                batch[batchLongs[0]++] = msb;
+                batch[batchLongs[0]++] = lsb;
+                batch[batchLongs[0]++] = balance;
+                if (batchLongs[0] == batch.length) {
+                    applyReplayed(target, batch, batchLongs[0]);
+                    batchLongs[0] = 0;
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (batchLongs[0] > 0) {
+            target.apply(batch, batchLongs[0]);
+        }
+        return replayed;
+    }
+
+    private static void applyReplayed(Target target, long[] batch, int batchLongs) {
+        try {
+            target.apply(batch, batchLongs);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stages a balance change for the writer. Never waits for I/O.
+     *
+     * @param msb     Most significant bits of the player's UUID
+     * @param lsb     Least significant bits of the player's UUID
+     * @param balance The player's new balance
+     * @return The record's sequence number, or 0 if the journal is closed
+     */
+    long append(long msb, long lsb, long balance) {
+        if (!running) return 0L;
+
+        stagingLock.lock();
+        try {
+            if (pendingLongs + LONGS_PER_RECORD > pending.length) {
+                // Writer fell behind: grow rather than block the caller
+                long[] grown = new long[pending.length * 2];
+                System.arraycopy(pending, 0, grown, 0, pendingLongs);
+                pending = grown;
+            }
+            pending[pendingLongs++] = msb;
+            pending[pendingLongs++] = lsb;
+            pending[pendingLongs++] = balance;
+            staged.signal();
+            return ++sequence;
+        } finally {
+            stagingLock.unlock();
+        }
+    }
+
+    /**
+     * @return The sequence number of the last record applied to the target. Records that
+     *         could not be applied keep it from advancing.
+     */
+    long appliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Asks the writer to checkpoint the target and truncate the journal as soon as possible.
+     */
+    void requestCompaction() {
+        compactRequested = true;
+        wakeWriter();
+    }
+
+    /**
+     * Flushes pending changes, checkpoints and closes the target and stops the writer.
+     * Blocks until the writer has finished.
+     */
+    void close() {
+        running = false;
+        wakeWriter();
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            DyuusAcademyFeatures.LOGGER.error("Currency journal writer did not stop in time");
+        }
+    }
+
+    // ==================== Writer thread ====================
+
+    private void wakeWriter() {
+        stagingLock.lock();
+        try {
+            staged.signal();
+        } finally {
+            stagingLock.unlock();
+        }
+    }
+
+    private void runWriter() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE * MAX_BATCH);
+        int failedWrites = 0;
+
+        while (true) {
+            try {
+                boolean stopping;
+
+                stagingLock.lock();
+                try {
+                    // A failed batch is retried alone: what was staged since waits behind it
+                    if (batchLongs == 0) {
+                        if (pendingLongs == 0 && running && !compactRequested) {
+                            staged.await(1, TimeUnit.SECONDS);
+                        }
+                        long[] drained = pending;
+                        pending = batch;
+                        batch = drained;
+                        batchLongs = pendingLongs;
+                        pendingLongs = 0;
+                        batchSequence = sequence;
+                    }
+                    stopping = !running && pendingLongs == 0;
+                } finally {
+                    stagingLock.unlock();
+                }
+
+                if (batchLongs > 0 && !writeBatch(buffer)) {
+                    failedWrites++;
+                    if (!running && failedWrites >= CLOSE_WRITE_ATTEMPTS) {
+                        DyuusAcademyFeatures.LOGGER.error("Giving up on {} currency journal records that could not be written",
+                                (batchLongs + pendingLongs) / LONGS_PER_RECORD);
+                        break;
+                    }
+                    Thread.sleep(WRITE_RETRY_MS);
+                    continue;
+                }
+                failedWrites = 0;
+                if (stopping) {
+                    break;
+                }
+                if (onApplied != null) {
+                    onApplied.accept(appliedSequence);
+                }
+                if (shouldCompact()) {
+                    compact();
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                DyuusAcademyFeatures.LOGGER.error("Currency journal writer failed", e);
+            }
+        }
+
+        // Final checkpoint so the next start has nothing to replay
+        try {
+            compact();
+            channel.close();
+            target.close();
+        } catch (IOException | RuntimeException e) {
+            DyuusAcademyFeatures.LOGGER.error("Failed to close currency journal {}", journalPath, e);
+        }
+    }
+
+    /**
+     * Writes the current batch to the journal and applies it to the target.
+     *
+     * @return false if the write or the fsync failed: the batch is kept for a retry, and
+     *         {@link #appliedSequence()} does not advance past it
+     */
+    private boolean writeBatch(ByteBuffer buffer) {
+        try {
+            if (channel.size() != journalSize) {
+                // Leftovers of a failed attempt, possibly a torn record
+                channel.truncate(journalSize);
+            }
+            int offset = 0;
+            while (offset < batchLongs) {
+                buffer.clear();
+                while (offset < batchLongs && buffer.remaining() >= RECORD_SIZE) {
+                    buffer.putLong(batch[offset++]);
+                    buffer.putLong(batch[offset++]);
+                    buffer.putLong(batch[offset++]);
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            // One fsync for the whole batch
+            channel.force(false);
+        } catch (IOException e) {
+            DyuusAcademyFeatures.LOGGER.error("Failed to write currency journal batch, retrying", e);
+            return false;
+        }
+        int records = batchLongs / LONGS_PER_RECORD;
+        journalSize += (long) records * RECORD_SIZE;
+        recordCount += records;
+        int longs = batchLongs;
+        batchLongs = 0;
+
+        if (applyFailed) return true;
+        try {
+            target.apply(batch, longs);
+            appliedSequence = batchSequence;
+        } catch (IOException | RuntimeException e) {
+            // The records are safe in the journal; stop truncating it so they are replayed on next start
+            applyFailed = true;
+            DyuusAcademyFeatures.LOGGER.error("Failed to apply currency journal batch, keeping journal for replay", e);
+        }
+        return true;
+    }
+
+    private boolean shouldCompact() {
+        if (compactRequested) return true;
+        if (recordCount == 0) return false;
+        return recordCount >= COMPACT_THRESHOLD
+                || System.currentTimeMillis() - lastCompaction >= COMPACT_INTERVAL_MS;
+    }
+
+    /**
+     * Checkpoints the target and truncates the journal. Runs on the writer thread only, so
+     * every journaled record has already been applied to the target, and no record can be
+     * appended between the checkpoint and the truncation.
+     */
+    private void compact() throws IOException {
+        compactRequested = false;
+        lastCompaction = System.currentTimeMillis();
+        if (recordCount == 0 || applyFailed) return;
+
+        // If the checkpoint fails the journal is kept, so nothing is lost
+        target.checkpoint();
+        channel.truncate(0);
+        channel.force(true);
+        journalSize = 0;
+        DyuusAcademyFeatures.LOGGER.debug("Compacted {} journal records", recordCount);
+        recordCount = 0;
+    }
+}
@@ -0,0 +1,275 @@
+package com.dyuus.academy_features.currency;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One shard of the binary balance ledger, accessed through a memory-mapped file.
+ *
+ * Layout: a 24-byte header (magic, version, record count, reserved) followed by a
+ * power-of-two number of 24-byte slots (UUID most significant bits, UUID least significant
+ * bits, balance) forming an open-addressing hash table with linear probing. A slot holding
+ * the nil UUID is empty. Lookups and updates probe the mapping directly, so nothing about
+ * the shard is kept on the heap.
+ *
+ * The table is kept at most half full; {@link #grow} rebuilds it into a new, twice as large
+ * file. The magic is written last, so a file left incomplete by a crash is never opened.
+ *
+ * Not thread-safe: {@link ShardedLedger} serializes access to each shard.
+ */
+class BalanceLedger implements Closeable {
+    static final int RECORD_SIZE = Long.BYTES * 3;
+    static final int MIN_CAPACITY = 256;
+    private static final int HEADER_SIZE = 24;
+    private static final int MAGIC = 0x504B4C47; // "PKLG"
+    private static final int VERSION = 2;
+    // Single-file append-only layout used before the ledger was sharded
+    private static final int LEGACY_VERSION = 1;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer mapping;
+    private final int mask;
+    private int count;
+
+    private BalanceLedger(Path path, FileChannel channel, int capacity) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        this.mapping.order(ByteOrder.BIG_ENDIAN);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Opens an existing shard.
+     *
+     * @param path Path of the shard file
+     * @return The opened shard
+     * @throws IOException If the file is not a complete ledger shard
+     */
+    static BalanceLedger open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long capacity = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+            if (capacity < MIN_CAPACITY || Long.bitCount(capacity) != 1
+                    || HEADER_SIZE + capacity * RECORD_SIZE > Integer.MAX_VALUE) {
+                throw new IOException("Invalid ledger shard size: " + path);
+            }
+            BalanceLedger ledger = new BalanceLedger(path, channel, (int) capacity);
+            if (ledger.mapping.getInt(0) != MAGIC) {
+                throw new IOException("Incomplete ledger shard: " + path);
+            }
+            if (ledger.mapping.getInt(4) != VERSION) {
+                throw new IOException("Unsupported ledger version " + ledger.mapping.getInt(4) + " in " + path);
+            }
+            // The stored count may lag behind after a crash, so recount
+            for (int slot = 0; slot <= ledger.mask; slot++) {
+                if (!ledger.isEmpty(offsetOf(slot))) {
+                    ledger.count++;
+                }
+            }
+            return ledger;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates an empty shard, replacing any file at that path.
+     *
+     * @param path     Path of the shard file
+     * @param capacity Number of slots (a power of two, at least {@link #MIN_CAPACITY})
+     * @return The created shard
+     */
+    static BalanceLedger create(Path path, int capacity) throws IOException {
+        BalanceLedger ledger = createUnsealed(path, capacity);
+        ledger.seal();
+        return ledger;
+    }
+
+    private static BalanceLedger createUnsealed(Path path, int capacity) throws IOException {
+        if (HEADER_SIZE + (long) capacity * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IOException("Ledger shard too large: " + path);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new BalanceLedger(path, channel, capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a ledger file in the legacy single-file layout, feeding every account to the consumer.
+     *
+     * @return Number of accounts read
+     */
+    static int readLegacy(Path path, BalanceStore.EntryConsumer consumer) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && in.read(header) > 0) {
+                // Keep reading until the header is complete
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt(0) != MAGIC) {
+                throw new IOException("Not a PokéDollars ledger: " + path);
+            }
+            if (header.getInt(4) != LEGACY_VERSION) {
+                throw new IOException("Unsupported ledger version " + header.getInt(4) + " in " + path);
+            }
+
+            long remaining = header.getLong(8);
+            int read = 0;
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 1024);
+            while (remaining > 0 && in.read(buffer) > 0) {
+                buffer.flip();
+                while (remaining > 0 && buffer.remaining() >= RECORD_SIZE) {
+                    consumer.accept(buffer.getLong(), buffer.getLong(), buffer.getLong());
+                    remaining--;
+                    read++;
+                }
+                buffer.compact();
+            }
+            return read;
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    int size() {
+        return count;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return The stored balance, or -1 if the account is not in this shard
+     */
+    long read(long msb, long lsb) {
+        int offset = find(msb, lsb);
+        return isEmpty(offset) ? -1L : mapping.getLong(offset + 16);
+    }
+
+    /**
+     * Writes a balance in place, claiming a new slot for an unknown account.
+     * The nil UUID marks empty slots and is ignored.
+     *
+     * @return false if the account is new and the shard must {@link #grow} first
+     */
+    boolean write(long msb, long lsb, long balance) {
+        if (msb == 0L && lsb == 0L) return true;
+
+        int offset = find(msb, lsb);
+        if (isEmpty(offset)) {
+            if ((count + 1) * 2 > capacity()) {
+                return false;
+            }
+            mapping.putLong(offset, msb);
+            mapping.putLong(offset + 8, lsb);
+            count++;
+        }
+        mapping.putLong(offset + 16, balance);
+        return true;
+    }
+
+    /**
+     * Rebuilds this shard into a new file with twice the capacity and closes this one.
+     * The old file is left in place for the caller to delete.
+     *
+     * @param newPath Path of the new shard file
+     * @return The new shard
+     */
+    BalanceLedger grow(Path newPath) throws IOException {
+        BalanceLedger grown = createUnsealed(newPath, capacity() * 2);
+        try {
+            forEach((msb, lsb, balance) -> grown.write(msb, lsb, balance));
+            grown.mapping.force();
+            grown.seal();
+        } catch (RuntimeException e) {
+            grown.channel.close();
+            Files.deleteIfExists(newPath);
+            throw e;
+        }
+        close();
+        return grown;
+    }
+
+    /**
+     * Visits every account stored in this shard.
+     */
+    void forEach(BalanceStore.EntryConsumer consumer) {
+        for (int slot = 0; slot <= mask; slot++) {
+            int offset = offsetOf(slot);
+            if (!isEmpty(offset)) {
+                consumer.accept(mapping.getLong(offset), mapping.getLong(offset + 8), mapping.getLong(offset + 16));
+            }
+        }
+    }
+
+    /**
+     * Makes every write so far durable.
+     */
+    void force() {
+        mapping.putLong(8, count);
+        mapping.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    // ==================== Internals ====================
+
+    private void seal() {
+        mapping.putInt(4, VERSION);
+        mapping.putLong(8, count);
+        mapping.putInt(0, MAGIC);
+        mapping.force();
+    }
+
+    /**
+     * @return The offset of the account's slot, or of the empty slot where it would go
+     */
+    private int find(long msb, long lsb) {
+        int slot = slotHash(msb, lsb) & mask;
+        while (true) {
+            int offset = offsetOf(slot);
+            if (isEmpty(offset)) return offset;
+            if (mapping.getLong(offset) == msb && mapping.getLong(offset + 8) == lsb) return offset;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean isEmpty(int offset) {
+        return mapping.getLong(offset) == 0L && mapping.getLong(offset + 8) == 0L;
+    }
+
+    private static int offsetOf(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    // Part of the file format: changing it requires a new VERSION
+    private static int slotHash(long msb, long lsb) {
+        long h = msb ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
@@ -0,0 +1,78 @@
+package com.dyuus.academy_features.currency;
+
+import java.io.IOException;
+
+/**
+ * Durable storage backend for PokéDollars balances.
+ *
+ * {@link CurrencyManager} keeps the accounts it needs in memory and loads the others with
+ * {@link #read}; every change reaches the backend through the journal, which applies batches
+ * on its writer thread and truncates itself after each {@link #checkpoint}.
+ *
+ * Implementations must be safe to {@link #read} from any thread while the journal writer
+ * applies batches.
+ */
+interface BalanceStorage extends BalanceJournal.Target {
+
+    /**
+     * Produces accounts for {@link #importFrom}, e.g. another backend's {@link #forEach}.
+     */
+    @FunctionalInterface
+    interface Source {
+        void forEach(BalanceStore.EntryConsumer consumer) throws IOException;
+    }
+
+    /**
+     * Implemented by backends with secondary indexes, which answer these queries without
+     * visiting every account. Safe to call from any thread.
+     */
+    interface Indexed {
+        /**
+         * Visits accounts with a positive balance by decreasing balance, then by UUID.
+         */
+        void topBalances(int offset, int limit, BalanceStore.EntryConsumer consumer) throws IOException;
+
+        /**
+         * @return The account's 1-based position in the {@link #topBalances} order, or 0 if
+         *         it has no positive balance
+         */
+        int rank(long msb, long lsb) throws IOException;
+
+        /**
+         * @return Number of accounts with a positive balance
+         */
+        int rankedCount() throws IOException;
+
+        /**
+         * Visits accounts whose balance was stored at or after the given time, oldest first.
+         *
+         * @param epochMillis Time in milliseconds since the epoch
+         */
+        void changedSince(long epochMillis, BalanceStore.EntryConsumer consumer) throws IOException;
+    }
+
+    /**
+     * @return The stored balance, or -1 if the backend has no record of the account
+     */
+    long read(long msb, long lsb) throws IOException;
+
+    /**
+     * Visits every stored account. The consumer may {@link #read} but must not write to
+     * this storage.
+     */
+    void forEach(BalanceStore.EntryConsumer consumer) throws IOException;
+
+    /**
+     * Whether the backend has never held any data (nothing stored and no completed import).
+     */
+    boolean isNew();
+
+    /**
+     * Replaces everything stored with the accounts of the source and checkpoints.
+     * An interrupted import never leaves a mix of old and imported accounts behind, so it
+     * can simply be run again on the next start.
+     *
+     * @return Number of accounts imported
+     */
+    int importFrom(Source source) throws IOException;
+}
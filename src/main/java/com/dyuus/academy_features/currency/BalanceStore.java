@@ -0,0 +1,607 @@
+package com.dyuus.academy_features.currency;
+
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Primitive UUID → long balance map.
+ *
+ * Keys are stored as the two UUID longs and balances as primitive longs in open-addressing
+ * tables (linear probing), so reads and updates never box and never allocate once the
+ * table is sized. The map is split into {@link #STRIPES} independently locked stripes
+ * chosen by the UUID hash: updates lock a single stripe, and reads are optimistic
+ * (lock-free unless they race with a write on the same stripe).
+ *
+ * With a {@link Loader} the map is a read-through cache: an account that is not resident
+ * is loaded on first access, and {@link #evict} drops idle accounts (CLOCK, an LRU
+ * approximation that needs no list and no allocation on reads) once they are durable.
+ */
+class BalanceStore {
+    private static final int STRIPES = 32;
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Slot states; deleted slots keep probe chains intact until the next resize
+    private static final byte EMPTY = 0;
+    private static final byte FULL = 1;
+    private static final byte DELETED = 2;
+
+    // Returned by optimistic probes for accounts that are not resident
+    private static final long ABSENT = -1L;
+
+    /**
+     * Receives one account at a time without boxing.
+     */
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(long msb, long lsb, long balance);
+    }
+
+    /**
+     * Called under the stripe lock every time a balance changes, so changes to the same
+     * account are observed in the order they were applied.
+     */
+    @FunctionalInterface
+    interface ChangeListener {
+        /**
+         * @return A stamp stored with the account; {@link #evict} only drops accounts whose
+         *         stamp is covered by its durable stamp
+         */
+        long onChange(long msb, long lsb, long balance);
+    }
+
+    /**
+     * Supplies the balance of an account that is not resident. Called under the stripe lock.
+     */
+    @FunctionalInterface
+    interface Loader {
+        /**
+         * @return The stored balance, or 0 for an unknown account
+         */
+        long loadBalance(long msb, long lsb);
+    }
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private volatile ChangeListener listener;
+    private volatile Loader loader;
+
+    BalanceStore() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    void setListener(ChangeListener listener) {
+        this.listener = listener;
+    }
+
+    void setLoader(Loader loader) {
+        this.loader = loader;
+    }
+
+    // ==================== Reads ====================
+
+    long get(UUID uuid) {
+        return get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * Reads a balance, loading the account if it is not resident.
+     *
+     * @return The balance (0 for an unknown account)
+     */
+    long get(long msb, long lsb) {
+        int hash = hash(msb, lsb);
+        Stripe stripe = stripeFor(hash);
+        long balance = stripe.get(msb, lsb, hash);
+        if (balance != ABSENT) {
+            return balance;
+        }
+        if (loader == null) {
+            return 0L;
+        }
+
+        long stamp = stripe.lock.writeLock();
+        try {
+            // Loading may resize the stripe, so read the arrays only after it
+            int index = residentIndex(stripe, msb, lsb, hash);
+            return stripe.balances[index];
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Reads a resident balance without loading it.
+     *
+     * @return The balance, or -1 if the account is not resident
+     */
+    long find(long msb, long lsb) {
+        int hash = hash(msb, lsb);
+        return stripeFor(hash).get(msb, lsb, hash);
+    }
+
+    boolean contains(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        int hash = hash(msb, lsb);
+        return stripeFor(hash).contains(msb, lsb, hash);
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                size += stripe.size;
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Visits every account. Each stripe is read under its lock, so the view is consistent
+     * per stripe but not across stripes.
+     */
+    void forEach(EntryConsumer consumer) {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                for (int i = 0; i < stripe.states.length; i++) {
+                    if (stripe.states[i] == FULL) {
+                        consumer.accept(stripe.msbs[i], stripe.lsbs[i], stripe.balances[i]);
+                    }
+                }
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    // ==================== Updates ====================
+
+    /**
+     * Sets a balance without notifying the listener (used when loading from storage).
+     */
+    void load(long msb, long lsb, long balance) {
+        int hash = hash(msb, lsb);
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            stripe.put(msb, lsb, hash, balance);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    void set(UUID uuid, long balance) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        int hash = hash(msb, lsb);
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            int index = stripe.put(msb, lsb, hash, balance);
+            stripe.stamps[index] = notifyChange(msb, lsb, balance);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Sets a balance only if the current value (loaded if needed, 0 for an unknown account) equals the expected value.
+     *
+     * @return true if the balance was updated
+     */
+    boolean compareAndSet(UUID uuid, long expected, long balance) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        int hash = hash(msb, lsb);
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            int index = residentIndex(stripe, msb, lsb, hash);
+            if (stripe.balances[index] != expected) {
+                return false;
+            }
+            stripe.update(index, balance, notifyChange(msb, lsb, balance));
+            return true;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds to a balance, saturating at Long.MAX_VALUE and never going below 0.
+     *
+     * @return The new balance
+     */
+    long add(UUID uuid, long delta) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        int hash = hash(msb, lsb);
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            int index = residentIndex(stripe, msb, lsb, hash);
+            long balance = Math.max(0L, saturatedAdd(stripe.balances[index], delta));
+            stripe.update(index, balance, notifyChange(msb, lsb, balance));
+            return balance;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Subtracts from a balance only if it holds at least the given amount.
+     *
+     * @return The new balance, or -1 if the balance was insufficient
+     */
+    long subtractIfAtLeast(UUID uuid, long amount) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        int hash = hash(msb, lsb);
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            int index = residentIndex(stripe, msb, lsb, hash);
+            long current = stripe.balances[index];
+            if (current < amount) {
+                return -1L;
+            }
+            long balance = Math.max(0L, saturatedAdd(current, -amount));
+            stripe.update(index, balance, notifyChange(msb, lsb, balance));
+            return balance;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces a balance with the result of the operator (which receives the current balance, loaded if needed).
+     * The operator runs under the stripe lock, so it must be short and must not call back
+     * into this store.
+     *
+     * @return The new balance
+     */
+    long update(UUID uuid, LongUnaryOperator operator) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        int hash = hash(msb, lsb);
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            int index = residentIndex(stripe, msb, lsb, hash);
+            long balance = Math.max(0L, operator.applyAsLong(stripe.balances[index]));
+            // The operator may not touch this store, so the slot is still valid
+            stripe.update(index, balance, notifyChange(msb, lsb, balance));
+            return balance;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes an account from memory without notifying the listener.
+     *
+     * @return true if the account was resident
+     */
+    boolean remove(UUID uuid) {
+        return remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    boolean remove(long msb, long lsb) {
+        int hash = hash(msb, lsb);
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            return stripe.remove(msb, lsb, hash);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Pins an account in memory (loading it if needed) or releases it. Pinned accounts,
+     * such as those of online players, are never evicted.
+     */
+    void setPinned(UUID uuid, boolean pinned) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        int hash = hash(msb, lsb);
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            int index = pinned ? residentIndex(stripe, msb, lsb, hash) : stripe.indexOf(msb, lsb, hash);
+            if (index >= 0) {
+                stripe.pinned[index] = pinned;
+            }
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Evicts idle accounts until at most roughly {@code maxResident} remain.
+     * Each stripe runs a CLOCK sweep: an account read or written since the last sweep gets
+     * a second chance, pinned accounts are skipped, and an account is only dropped once its
+     * stamp is at most {@code durableStamp}, i.e. its latest balance can be loaded back.
+     *
+     * @return Number of accounts evicted
+     */
+    int evict(int maxResident, long durableStamp) {
+        int perStripe = Math.max(0, maxResident) / STRIPES;
+        int evicted = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.writeLock();
+            try {
+                evicted += stripe.evict(perStripe, durableStamp);
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+        return evicted;
+    }
+
+    void clear() {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.writeLock();
+            try {
+                stripe.reset(INITIAL_CAPACITY);
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    // ==================== Internals ====================
+
+    private long notifyChange(long msb, long lsb, long balance) {
+        ChangeListener current = listener;
+        return current != null ? current.onChange(msb, lsb, balance) : 0L;
+    }
+
+    /**
+     * Finds an account's slot, loading the account first if it is not resident.
+     * Must be called under the stripe's write lock.
+     */
+    private int residentIndex(Stripe stripe, long msb, long lsb, int hash) {
+        int index = stripe.indexOf(msb, lsb, hash);
+        if (index >= 0) {
+            return index;
+        }
+        Loader current = loader;
+        long balance = current != null ? Math.max(0L, current.loadBalance(msb, lsb)) : 0L;
+        return stripe.put(msb, lsb, hash, balance);
+    }
+
+    private Stripe stripeFor(int hash) {
+        // Top bits pick the stripe, low bits pick the slot inside it
+        return stripes[(hash >>> 27) & (STRIPES - 1)];
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = msb ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    static long saturatedAdd(long a, long b) {
+        long result = a + b;
+        // Overflow only if both operands have the same sign and the result's sign differs
+        if (((a ^ result) & (b ^ result)) < 0) {
+            return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return result;
+    }
+
+    private static final class Stripe {
+        final StampedLock lock = new StampedLock();
+        long[] msbs;
+        long[] lsbs;
+        long[] balances;
+        long[] stamps;
+        byte[] states;
+        // Second-chance bits for eviction, set without a lock by readers (a lost bit is harmless)
+        byte[] referenced;
+        boolean[] pinned;
+        int size;
+        int used; // FULL + DELETED slots, drives resizing
+        int hand; // CLOCK position
+
+        Stripe() {
+            reset(INITIAL_CAPACITY);
+        }
+
+        void reset(int capacity) {
+            msbs = new long[capacity];
+            lsbs = new long[capacity];
+            balances = new long[capacity];
+            stamps = new long[capacity];
+            states = new byte[capacity];
+            referenced = new byte[capacity];
+            pinned = new boolean[capacity];
+            size = 0;
+            used = 0;
+            hand = 0;
+        }
+
+        long get(long msb, long lsb, int hash) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0L) {
+                long value = probeOptimistic(msb, lsb, hash);
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                int index = indexOf(msb, lsb, hash);
+                if (index < 0) return ABSENT;
+                referenced[index] = 1;
+                return balances[index];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        boolean contains(long msb, long lsb, int hash) {
+            long stamp = lock.readLock();
+            try {
+                return indexOf(msb, lsb, hash) >= 0;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Probes without a lock. May observe a table mid-resize, so it works on local copies
+         * of the array references and tolerates any garbage; the caller validates the stamp.
+         */
+        private long probeOptimistic(long msb, long lsb, int hash) {
+            long[] m = msbs;
+            long[] l = lsbs;
+            long[] b = balances;
+            byte[] s = states;
+            byte[] r = referenced;
+            int length = Math.min(Math.min(m.length, l.length), Math.min(b.length, s.length));
+            length = Math.min(length, r.length);
+            if (length == 0) return ABSENT;
+            int mask = length - 1;
+            int index = hash & mask;
+            for (int probes = 0; probes < length; probes++) {
+                byte state = s[index];
+                if (state == EMPTY) return ABSENT;
+                if (state == FULL && m[index] == msb && l[index] == lsb) {
+                    r[index] = 1;
+                    return b[index];
+                }
+                index = (index + 1) & mask;
+            }
+            return ABSENT;
+        }
+
+        int indexOf(long msb, long lsb, int hash) {
+            int mask = states.length - 1;
+            int index = hash & mask;
+            while (true) {
+                byte state = states[index];
+                if (state == EMPTY) return -1;
+                if (state == FULL && msbs[index] == msb && lsbs[index] == lsb) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        /**
+         * Sets a balance, inserting the account if needed.
+         *
+         * @return The account's slot
+         */
+        int put(long msb, long lsb, int hash, long balance) {
+            int existing = indexOf(msb, lsb, hash);
+            if (existing >= 0) {
+                balances[existing] = balance;
+                referenced[existing] = 1;
+                return existing;
+            }
+
+            // Keep the load factor (including tombstones) under 3/4
+            if ((used + 1) * 4 > states.length * 3) {
+                rehash(size * 2 >= states.length / 2 ? states.length * 2 : states.length);
+            }
+
+            int mask = states.length - 1;
+            int index = hash & mask;
+            while (states[index] == FULL) {
+                index = (index + 1) & mask;
+            }
+            if (states[index] == EMPTY) {
+                used++;
+            }
+            msbs[index] = msb;
+            lsbs[index] = lsb;
+            balances[index] = balance;
+            stamps[index] = 0L;
+            referenced[index] = 1;
+            pinned[index] = false;
+            states[index] = FULL;
+            size++;
+            return index;
+        }
+
+        void update(int index, long balance, long stamp) {
+            balances[index] = balance;
+            stamps[index] = stamp;
+            referenced[index] = 1;
+        }
+
+        boolean remove(long msb, long lsb, int hash) {
+            int index = indexOf(msb, lsb, hash);
+            if (index < 0) return false;
+            removeAt(index);
+            return true;
+        }
+
+        private void removeAt(int index) {
+            states[index] = DELETED;
+            balances[index] = 0L;
+            pinned[index] = false;
+            size--;
+        }
+
+        int evict(int maxSize, long durableStamp) {
+            int evicted = 0;
+            int mask = states.length - 1;
+            // Two full turns: one to clear second-chance bits, one to evict
+            for (int steps = states.length * 2; steps > 0 && size > maxSize; steps--) {
+                int index = hand;
+                hand = (hand + 1) & mask;
+                if (states[index] != FULL || pinned[index] || stamps[index] > durableStamp) {
+                    continue;
+                }
+                if (referenced[index] != 0) {
+                    referenced[index] = 0;
+                    continue;
+                }
+                removeAt(index);
+                evicted++;
+            }
+            return evicted;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldMsbs = msbs;
+            long[] oldLsbs = lsbs;
+            long[] oldBalances = balances;
+            long[] oldStamps = stamps;
+            byte[] oldStates = states;
+            byte[] oldReferenced = referenced;
+            boolean[] oldPinned = pinned;
+
+            reset(capacity);
+            int mask = capacity - 1;
+            for (int i = 0; i < oldStates.length; i++) {
+                if (oldStates[i] != FULL) continue;
+                int index = hash(oldMsbs[i], oldLsbs[i]) & mask;
+                while (states[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                msbs[index] = oldMsbs[i];
+                lsbs[index] = oldLsbs[i];
+                balances[index] = oldBalances[i];
+                stamps[index] = oldStamps[i];
+                referenced[index] = oldReferenced[i];
+                pinned[index] = oldPinned[i];
+                states[index] = FULL;
+                size++;
+                used++;
+            }
+        }
+    }
+}
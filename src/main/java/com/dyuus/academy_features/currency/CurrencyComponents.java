@@ -0,0 +1,18 @@
+package com.dyuus.academy_features.currency;
+
+import org.ladysnake.cca.api.v3.entity.EntityComponentFactoryRegistry;
+import org.ladysnake.cca.api.v3.entity.EntityComponentInitializer;
+import org.ladysnake.cca.api.v3.entity.RespawnCopyStrategy;
+
+/**
+ * Cardinal Components entrypoint registering the PokéDollars player component.
+ * The component is always registered so player data stays readable when switching
+ * storage modes; it is only written to in the "component" storage mode.
+ */
+public class CurrencyComponents implements EntityComponentInitializer {
+
+    @Override
+    public void registerEntityComponentFactories(EntityComponentFactoryRegistry registry) {
+        registry.registerForPlayers(BalanceComponent.KEY, BalanceComponent::new, RespawnCopyStrategy.ALWAYS_COPY);
+    }
+}
@@ -1,42 +1,85 @@
 package com.dyuus.academy_features.currency;
 
 import com.dyuus.academy_features.DyuusAcademyFeatures;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import com.dyuus.academy_features.config.CurrencyConfig;
+import com.dyuus.academy_features.mixin.PlayerManagerInvoker;
+import net.fabricmc.fabric.api.entity.event.v1.ServerPlayerEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
 import net.minecraft.util.Formatting;
+import net.minecraft.util.Util;
 import net.minecraft.util.WorldSavePath;
 
 import java.io.IOException;
-import java.io.Reader;
-import java.io.Writer;
-import java.lang.reflect.Type;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * Manages player currency (PokéDollars) with persistent storage.
- * Data is saved to a JSON file in the world folder and persists across server restarts.
+ * Balances live in a {@link BalanceStorage} backend in the world folder (binary ledger by
+ * default, or SQLite / JSON, see {@link CurrencyConfig#storageBackend}).
+ * Accounts are loaded into memory on join or on first access; online players stay resident
+ * and idle offline accounts are evicted once the cache exceeds its configured size.
+ * Every change is appended to a journal by a background writer and applied to the backend;
+ * the journal is truncated each time the backend is checkpointed.
+ * Changes are also recorded in an append-only audit log, see {@link #getHistory}, and
+ * ranked on a leaderboard, see {@link #getLeaderboard}. Startup reads no balances: the
+ * leaderboard is answered from the database's index with the "sqlite" backend, or rebuilt
+ * in memory from the backend in the background, and the money supply is carried over from
+ * the last clean shutdown.
  */
 public class CurrencyManager {
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     private static final String DATA_FILE_NAME = "pokedollars.json";
-    private static final Type DATA_TYPE = new TypeToken<ConcurrentHashMap<UUID, Integer>>() {}.getType();
+    private static final String JOURNAL_FILE_NAME = "pokedollars.journal";
+    private static final String LEGACY_LEDGER_FILE_NAME = "pokedollars.ledger";
+    private static final String LEDGER_DIRECTORY_NAME = "pokedollars";
+    private static final String DATABASE_FILE_NAME = "pokedollars.db";
+    // Name of the backend the balances were last saved with
+    private static final String BACKEND_FILE_NAME = "pokedollars.backend";
+    private static final String EXPORT_FILE_NAME = "pokedollars-export.json";
+    private static final String AUDIT_DIRECTORY_NAME = "audit";
+    // Money supply at the last clean shutdown (deleted while the server runs)
+    private static final String SUPPLY_FILE_NAME = "pokedollars.supply";
 
-    // In-memory cache of player balances
-    private static final Map<UUID, Integer> playerBalances = new ConcurrentHashMap<>();
+    // In-memory cache of player balances (primitive UUID -> long map, loaded on demand)
+    private static final BalanceStore playerBalances = new BalanceStore();
+
+    // Positive balances ranked from highest to lowest, updated on every change
+    private static final Leaderboard leaderboard = new Leaderboard();
+
+    // Money supply and flows, updated on every change
+    private static final EconomyMetrics metrics = new EconomyMetrics();
 
     // Reference to the current server (needed for saving)
-    private static MinecraftServer currentServer = null;
+    private static volatile MinecraftServer currentServer = null;
+
+    // Storage backend the cache loads from (null while no server is running)
+    private static volatile BalanceStorage storage = null;
+
+    // Backend indexes answering leaderboard queries instead of the in-memory leaderboard (null if none)
+    private static volatile BalanceStorage.Indexed rankingIndex = null;
+
+    // Write-behind journal of balance changes (null while no server is running)
+    private static volatile BalanceJournal journal = null;
+
+    // Audit log of balance changes (null while no server is running or when disabled)
+    private static volatile AuditLog auditLog = null;
+
+    // Components of online players in "component" storage mode (always empty otherwise)
+    private static final Map<UUID, BalanceComponent> onlineComponents = new ConcurrentHashMap<>();
 
     /**
      * Initializes the currency system.
@@ -47,20 +90,33 @@ public class CurrencyManager {
         ServerLifecycleEvents.SERVER_STARTED.register(server -> {
             currentServer = server;
             loadData(server);
+            openAuditLog(server);
             DyuusAcademyFeatures.LOGGER.info("Currency data loaded");
         });
 
-        // Save data when server stops
+        // Flush the journal and checkpoint the storage backend when server stops
         ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
-            saveData(server);
+            boolean loaded = journal != null;
+            closeJournal();
+            if (loaded) {
+                saveMoneySupply(server);
+            }
+            closeAuditLog();
             DyuusAcademyFeatures.LOGGER.info("Currency data saved");
             currentServer = null;
         });
 
-        // Save data periodically when a player disconnects (safety measure)
-        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
-            saveData(server);
-        });
+        // Apply the leaderboard changes staged during the tick
+        ServerTickEvents.END_SERVER_TICK.register(server -> leaderboard.drain());
+
+        // Keep online players' balances in memory
+        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> onJoin(handler.getPlayer()));
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> onDisconnect(handler.getPlayer()));
+
+        if (CurrencyConfig.get().useComponentStorage()) {
+            ServerPlayerEvents.AFTER_RESPAWN.register((oldPlayer, newPlayer, alive) ->
+                    attachComponent(newPlayer));
+        }
 
         DyuusAcademyFeatures.LOGGER.info("Currency system initialized");
     }
@@ -69,9 +125,39 @@ public class CurrencyManager {
      * Gets the path to the data file within the world folder.
      *
      * @param server The Minecraft server instance
-     * @return Path to the pokedollars.json file
+     * @return Path to the legacy pokedollars.json file
      */
     private static Path getDataPath(MinecraftServer server) {
+        return getDataFolder(server).resolve(DATA_FILE_NAME);
+    }
+
+    /**
+     * Gets the path to the sharded ledger directory within the world folder.
+     *
+     * @param server The Minecraft server instance
+     * @return Path to the pokedollars directory
+     */
+    private static Path getLedgerDirectory(MinecraftServer server) {
+        return getDataFolder(server).resolve(LEDGER_DIRECTORY_NAME);
+    }
+
+    /**
+     * Gets the path to the journal file within the world folder.
+     *
+     * @param server The Minecraft server instance
+     * @return Path to the pokedollars.journal file
+     */
+    private static Path getJournalPath(MinecraftServer server) {
+        return getDataFolder(server).resolve(JOURNAL_FILE_NAME);
+    }
+
+    /**
+     * Gets the mod's data folder within the world folder, creating it if needed.
+     *
+     * @param server The Minecraft server instance
+     * @return Path to the data folder
+     */
+    private static Path getDataFolder(MinecraftServer server) {
         // Save in the world folder under a "data" subdirectory
         Path worldFolder = server.getSavePath(WorldSavePath.ROOT);
         Path dataFolder = worldFolder.resolve("data").resolve(DyuusAcademyFeatures.MOD_ID);
@@ -83,68 +169,622 @@ public class CurrencyManager {
             DyuusAcademyFeatures.LOGGER.error("Failed to create data directory", e);
         }
 
-        return dataFolder.resolve(DATA_FILE_NAME);
+        return dataFolder;
     }
 
     /**
-     * Loads currency data from the JSON file.
+     * Opens the configured storage backend (copying balances over from the previous backend
+     * or older formats when needed), replays the journal into it and starts the journal writer.
+     * No balance is loaded into memory here, and the backend is only scanned after an unclean
+     * shutdown, to recompute the money supply; the leaderboard is rebuilt in the background.
      *
      * @param server The Minecraft server instance
      */
     private static void loadData(MinecraftServer server) {
-        Path dataPath = getDataPath(server);
-
-        if (Files.exists(dataPath)) {
-            try (Reader reader = Files.newBufferedReader(dataPath)) {
-                Map<UUID, Integer> loadedData = GSON.fromJson(reader, DATA_TYPE);
-                if (loadedData != null) {
-                    playerBalances.clear();
-                    playerBalances.putAll(loadedData);
-                    DyuusAcademyFeatures.LOGGER.info("Loaded {} player balances from {}",
-                            playerBalances.size(), dataPath);
-                }
-            } catch (IOException e) {
-                DyuusAcademyFeatures.LOGGER.error("Failed to load currency data from {}", dataPath, e);
-            } catch (Exception e) {
-                DyuusAcademyFeatures.LOGGER.error("Failed to parse currency data", e);
+        Path journalPath = getJournalPath(server);
+        String backend = CurrencyConfig.get().storageBackend;
+
+        playerBalances.clear();
+        leaderboard.clear();
+        onlineComponents.clear();
+        playerBalances.setListener(CurrencyManager::onBalanceChanged);
+        playerBalances.setLoader(CurrencyManager::loadAccount);
+
+        BalanceStorage opened;
+        try {
+            opened = openStorage(server, backend);
+        } catch (IOException e) {
+            DyuusAcademyFeatures.LOGGER.error("Failed to open {} currency storage, balances will not be saved", backend, e);
+            return;
+        }
+
+        try {
+            migrateStorage(server, backend, opened);
+        } catch (IOException | RuntimeException e) {
+            DyuusAcademyFeatures.LOGGER.error("Failed to copy balances into the {} currency storage, balances will not be saved",
+                    backend, e);
+            closeStorage(opened);
+            return;
+        }
+
+        int replayed = 0;
+        try {
+            replayed = BalanceJournal.replay(journalPath, opened);
+            if (replayed > 0) {
+                DyuusAcademyFeatures.LOGGER.info("Replayed {} currency journal records from {}", replayed, journalPath);
             }
-        } else {
-            DyuusAcademyFeatures.LOGGER.info("No existing currency data found, starting fresh");
+        } catch (IOException e) {
+            DyuusAcademyFeatures.LOGGER.error("Failed to replay currency journal {}", journalPath, e);
+        }
+
+        // A clean shutdown leaves an empty journal; otherwise the saved supply may be stale
+        long supply = readMoneySupply(server);
+        if (supply < 0 || replayed > 0) {
+            supply = computeMoneySupply(opened);
+        }
+        metrics.reset(supply);
+
+        try {
+            journal = new BalanceJournal(journalPath, opened, CurrencyManager::evictIdleAccounts);
+            storage = opened;
+        } catch (IOException e) {
+            DyuusAcademyFeatures.LOGGER.error("Failed to open currency journal {}", journalPath, e);
+            closeStorage(opened);
+            return;
+        }
+
+        // In "component" storage mode the backend does not hold online players' balances
+        if (opened instanceof BalanceStorage.Indexed indexed && !CurrencyConfig.get().useComponentStorage()) {
+            rankingIndex = indexed;
+            return;
+        }
+
+        // Changes made meanwhile are staged, and applied once the backend has been read
+        CompletableFuture.runAsync(() -> {
+            try {
+                leaderboard.rebuild(opened::forEach);
+            } catch (IOException | RuntimeException e) {
+                DyuusAcademyFeatures.LOGGER.error("Failed to read balances for the PokéDollars leaderboard", e);
+            }
+        }, Util.getIoWorkerExecutor());
+    }
+
+    /**
+     * Reads the money supply saved at the last clean shutdown, and deletes it so that a
+     * crash before the next clean shutdown cannot leave a stale value behind.
+     *
+     * @param server The Minecraft server instance
+     * @return The saved money supply, or -1 if there is none
+     */
+    private static long readMoneySupply(MinecraftServer server) {
+        Path supplyPath = getDataFolder(server).resolve(SUPPLY_FILE_NAME);
+        if (!Files.exists(supplyPath)) return -1L;
+        try {
+            long supply = Long.parseLong(Files.readString(supplyPath).trim());
+            Files.delete(supplyPath);
+            return supply;
+        } catch (IOException | NumberFormatException e) {
+            DyuusAcademyFeatures.LOGGER.warn("Ignoring unreadable PokéDollars money supply file {}", supplyPath, e);
+            return -1L;
         }
     }
 
     /**
-     * Saves currency data to the JSON file.
+     * Saves the money supply for the next start. Called once the journal is closed.
      *
      * @param server The Minecraft server instance
      */
-    private static void saveData(MinecraftServer server) {
-        if (server == null) {
-            DyuusAcademyFeatures.LOGGER.warn("Cannot save currency data: server is null");
+    private static void saveMoneySupply(MinecraftServer server) {
+        Path supplyPath = getDataFolder(server).resolve(SUPPLY_FILE_NAME);
+        try {
+            Files.writeString(supplyPath, Long.toString(metrics.moneySupply()));
+        } catch (IOException e) {
+            DyuusAcademyFeatures.LOGGER.error("Failed to save the PokéDollars money supply, it will be recomputed on next start", e);
+        }
+    }
+
+    /**
+     * Adds up every balance of a backend. Only needed on the first start and after an unclean shutdown.
+     */
+    private static long computeMoneySupply(BalanceStorage opened) {
+        DyuusAcademyFeatures.LOGGER.info("Recomputing the PokéDollars money supply from the storage backend");
+        long[] supply = new long[1];
+        try {
+            opened.forEach((msb, lsb, balance) -> supply[0] += balance);
+        } catch (IOException e) {
+            DyuusAcademyFeatures.LOGGER.error("Failed to read balances for the PokéDollars money supply", e);
+        }
+        return supply[0];
+    }
+
+    /**
+     * Opens a storage backend.
+     *
+     * @param server The Minecraft server instance
+     * @param backend One of the CurrencyConfig.BACKEND_* names
+     * @return The opened backend
+     */
+    private static BalanceStorage openStorage(MinecraftServer server, String backend) throws IOException {
+        return switch (backend) {
+            case CurrencyConfig.BACKEND_SQLITE -> SqliteBalanceStorage.open(getDataFolder(server).resolve(DATABASE_FILE_NAME));
+            case CurrencyConfig.BACKEND_JSON -> JsonBalanceStorage.open(getDataPath(server));
+            default -> ShardedLedger.open(getLedgerDirectory(server));
+        };
+    }
+
+    private static void closeStorage(BalanceStorage opened) {
+        try {
+            opened.close();
+        } catch (IOException e) {
+            DyuusAcademyFeatures.LOGGER.error("Failed to close currency storage", e);
+        }
+    }
+
+    /**
+     * Copies balances into the configured backend when it is not the one they were last
+     * saved with. Worlds that predate backend selection have no record of it: a new backend
+     * is then filled from the first older format found.
+     *
+     * @param server The Minecraft server instance
+     * @param backend Name of the configured backend
+     * @param target The configured backend, opened
+     */
+    private static void migrateStorage(MinecraftServer server, String backend, BalanceStorage target) throws IOException {
+        Path backendPath = getDataFolder(server).resolve(BACKEND_FILE_NAME);
+        String previous = Files.exists(backendPath) ? Files.readString(backendPath).trim() : null;
+
+        if (previous != null && !previous.equals(backend)) {
+            try (BalanceStorage source = openStorage(server, previous)) {
+                int imported = target.importFrom(source::forEach);
+                DyuusAcademyFeatures.LOGGER.info("Copied {} player balances from the {} storage into the {} storage",
+                        imported, previous, backend);
+            }
+        } else if (previous == null && target.isNew()) {
+            importLegacyData(server, backend, target);
+        }
+
+        if (!backend.equals(previous)) {
+            Files.writeString(backendPath, backend);
+        }
+    }
+
+    /**
+     * Fills a new backend from the sharded ledger, the single-file ledger or the legacy
+     * pokedollars.json file, whichever is found first. The old files are left untouched.
+     *
+     * @param server The Minecraft server instance
+     * @param backend Name of the backend being filled
+     * @param target The backend being filled
+     */
+    private static void importLegacyData(MinecraftServer server, String backend, BalanceStorage target) throws IOException {
+        Path ledgerDirectory = getLedgerDirectory(server);
+        Path legacyLedgerPath = getDataFolder(server).resolve(LEGACY_LEDGER_FILE_NAME);
+        Path jsonPath = getDataPath(server);
+
+        Path from;
+        int imported;
+        if (!backend.equals(CurrencyConfig.BACKEND_LEDGER) && ShardedLedger.exists(ledgerDirectory)) {
+            from = ledgerDirectory;
+            try (ShardedLedger source = ShardedLedger.open(ledgerDirectory)) {
+                imported = target.importFrom(source::forEach);
+            }
+        } else if (Files.exists(legacyLedgerPath)) {
+            from = legacyLedgerPath;
+            imported = target.importFrom(consumer -> BalanceLedger.readLegacy(legacyLedgerPath, consumer));
+        } else if (!backend.equals(CurrencyConfig.BACKEND_JSON) && Files.exists(jsonPath)) {
+            from = jsonPath;
+            imported = target.importFrom(consumer -> JsonBalanceStorage.read(jsonPath, consumer));
+        } else {
             return;
         }
+        DyuusAcademyFeatures.LOGGER.info("Imported {} player balances from {} into the {} storage", imported, from, backend);
+    }
+
+    /**
+     * Loads an account that is not in memory from the storage backend.
+     * Fails rather than returning 0, so a read error can never overwrite a real balance.
+     */
+    private static long loadAccount(long msb, long lsb) {
+        BalanceStorage current = storage;
+        if (current == null) return 0L;
+        try {
+            return Math.max(0L, current.read(msb, lsb));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load balance of " + new UUID(msb, lsb), e);
+        }
+    }
+
+    /**
+     * Drops idle offline balances from memory once the cache exceeds its configured size.
+     * Runs on the journal writer after each batch: only balances already applied to the
+     * storage backend are evicted, so they always load back unchanged.
+     *
+     * @param appliedSequence Sequence of the last journal record applied to the backend
+     */
+    private static void evictIdleAccounts(long appliedSequence) {
+        MinecraftServer server = currentServer;
+        int online = server != null ? server.getCurrentPlayerCount() : 0;
+        int limit = CurrencyConfig.get().maxCachedAccounts + online;
+        if (playerBalances.size() > limit) {
+            int evicted = playerBalances.evict(limit, appliedSequence);
+            DyuusAcademyFeatures.LOGGER.debug("Evicted {} idle player balances from memory", evicted);
+        }
+    }
+
+    /**
+     * Routes a balance change to where that account is persisted: the player's component
+     * if they are online in "component" storage mode, the journal otherwise.
+     * Called under the account's stripe lock, so changes arrive in the order they were applied.
+     *
+     * @return The journal sequence of the change (0 when it went to a component)
+     */
+    private static long onBalanceChanged(long msb, long lsb, long balance) {
+        // Only staged here: the ranking itself is updated outside the stripe lock
+        if (rankingIndex == null) {
+            leaderboard.update(msb, lsb, balance);
+        }
+
+        if (!onlineComponents.isEmpty()) {
+            BalanceComponent component = onlineComponents.get(new UUID(msb, lsb));
+            if (component != null) {
+                component.setBalance(balance);
+                return 0L;
+            }
+        }
+
+        BalanceJournal current = journal;
+        return current != null ? current.append(msb, lsb, balance) : 0L;
+    }
+
+    /**
+     * Loads a joining player's balance and keeps it in memory while they are online.
+     *
+     * @param player The player who joined
+     */
+    private static void onJoin(ServerPlayerEntity player) {
+        // Pin first, so the account cannot be evicted while it moves into the component
+        playerBalances.setPinned(player.getUuid(), true);
+        if (CurrencyConfig.get().useComponentStorage()) {
+            attachComponent(player);
+        }
+    }
+
+    /**
+     * Lets a disconnecting player's balance be evicted from memory once idle.
+     *
+     * @param player The player who disconnected
+     */
+    private static void onDisconnect(ServerPlayerEntity player) {
+        if (CurrencyConfig.get().useComponentStorage()) {
+            detachComponent(player);
+        }
+        playerBalances.setPinned(player.getUuid(), false);
+    }
+
+    /**
+     * Makes a player's component the home of their balance ("component" storage mode).
+     * Anything the storage backend holds for them (credits received while offline, or their
+     * whole balance the first time after switching modes) is merged into the component and
+     * cleared from the backend. The backend is only cleared once the player data holding the
+     * merged balance has been saved, so a crash in between merges it again rather than losing it.
+     * Also called after respawn, when the player entity and its component instance are replaced.
+     *
+     * @param player The player who joined or respawned
+     */
+    private static void attachComponent(ServerPlayerEntity player) {
+        UUID uuid = player.getUuid();
+        BalanceComponent component = BalanceComponent.KEY.get(player);
+        BalanceComponent previous = onlineComponents.get(uuid);
+        // On respawn the component was already copied over and the store holds the live balance
+        long stored = previous == null ? component.getBalance() : 0L;
+
+        long[] merged = new long[1];
+        playerBalances.update(uuid, ledgerBalance -> {
+            if (previous == null) {
+                merged[0] = ledgerBalance;
+            }
+            onlineComponents.put(uuid, component);
+            return BalanceStore.saturatedAdd(ledgerBalance, stored);
+        });
+
+        // Changes now go to the component, so nothing else touches the backend's entry meanwhile
+        BalanceJournal current = journal;
+        if (merged[0] > 0 && current != null) {
+            ((PlayerManagerInvoker) player.server.getPlayerManager()).academy_features$savePlayerData(player);
+            current.append(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), 0L);
+        }
+    }
+
+    /**
+     * Hands a disconnecting player's balance back to their component ("component" storage mode).
+     * Their component already holds it and is saved with their player data; the cached
+     * account is reset to what the storage backend holds for them (nothing), through the
+     * journal so it is only evicted once the backend agrees.
+     *
+     * @param player The player who disconnected
+     */
+    private static void detachComponent(ServerPlayerEntity player) {
+        UUID uuid = player.getUuid();
+        long[] componentBalance = new long[1];
+        playerBalances.update(uuid, balance -> {
+            onlineComponents.remove(uuid);
+            componentBalance[0] = balance;
+            return 0L;
+        });
+        // The reset above is not a real change: keep the player ranked with their balance
+        leaderboard.update(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), componentBalance[0]);
+    }
+
+    /**
+     * Writes all balances to a JSON file in the legacy pokedollars.json format.
+     * Accounts come from the storage backend, overridden by the in-memory value for resident
+     * ones (which may not be applied to the backend yet).
+     *
+     * @param jsonPath Path of the JSON file to write
+     * @return Number of accounts written
+     */
+    private static int writeJson(Path jsonPath) throws IOException {
+        BalanceStorage current = storage;
+        return JsonBalanceStorage.write(jsonPath, consumer -> {
+            // Accounts already written, so resident accounts missing from the backend are added once
+            BalanceStore written = new BalanceStore();
+            if (current != null) {
+                current.forEach((msb, lsb, stored) -> {
+                    long resident = playerBalances.find(msb, lsb);
+                    consumer.accept(msb, lsb, resident >= 0 ? resident : stored);
+                    written.load(msb, lsb, 1L);
+                });
+            }
+            playerBalances.forEach((msb, lsb, balance) -> {
+                if (written.find(msb, lsb) < 0) {
+                    consumer.accept(msb, lsb, balance);
+                }
+            });
+        });
+    }
 
-        Path dataPath = getDataPath(server);
+    /**
+     * Exports all balances to pokedollars-export.json in the world's data folder, for admins.
+     * The export runs on the IO worker pool and never blocks the server thread.
+     *
+     * @param server The Minecraft server instance
+     * @return A future completed with the export path and the number of accounts written
+     */
+    public static CompletableFuture<Map.Entry<Path, Integer>> exportToJson(MinecraftServer server) {
+        Path exportPath = getDataFolder(server).resolve(EXPORT_FILE_NAME);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return Map.entry(exportPath, writeJson(exportPath));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, Util.getIoWorkerExecutor());
+    }
+
+    /**
+     * Starts the audit log writer, if enabled in the config.
+     *
+     * @param server The Minecraft server instance
+     */
+    private static void openAuditLog(MinecraftServer server) {
+        CurrencyConfig config = CurrencyConfig.get();
+        if (!config.auditLog) return;
 
-        try (Writer writer = Files.newBufferedWriter(dataPath)) {
-            GSON.toJson(playerBalances, DATA_TYPE, writer);
-            DyuusAcademyFeatures.LOGGER.debug("Saved {} player balances to {}",
-                    playerBalances.size(), dataPath);
+        Path directory = getDataFolder(server).resolve(AUDIT_DIRECTORY_NAME);
+        try {
+            auditLog = new AuditLog(directory, config.auditRetentionDays);
         } catch (IOException e) {
-            DyuusAcademyFeatures.LOGGER.error("Failed to save currency data to {}", dataPath, e);
+            DyuusAcademyFeatures.LOGGER.error("Failed to open PokéDollars audit log in {}, transactions will not be recorded",
+                    directory, e);
         }
     }
 
     /**
-     * Forces an immediate save of all currency data.
-     * Can be called manually if needed (e.g., after important transactions).
+     * Writes the remaining audit log entries and stops its writer.
+     */
+    private static void closeAuditLog() {
+        AuditLog current = auditLog;
+        auditLog = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Records a balance change in the economy metrics and in the audit log, if enabled.
+     */
+    private static void record(UUID uuid, TransactionSource source, long delta, long balance,
+                              UUID counterparty, String detail, int quantity) {
+        metrics.record(source, delta);
+        AuditLog current = auditLog;
+        if (current != null) {
+            current.publish(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(),
+                    source, delta, balance, counterparty, detail, quantity);
+        }
+    }
+
+    /**
+     * Gets a player's most recent transactions from the audit log.
+     * Runs on the IO worker pool and never blocks the server thread; entries written in the
+     * last moments may not be visible yet.
+     *
+     * @param uuid The player's UUID
+     * @param limit Maximum number of entries to return
+     * @return A future completed with the entries, newest first, or failed with
+     *         UnsupportedOperationException if the audit log is disabled
+     */
+    public static CompletableFuture<List<AuditEntry>> getHistory(UUID uuid, int limit) {
+        AuditLog current = auditLog;
+        if (current == null) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException("The audit log is disabled"));
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return current.history(uuid, Math.max(0, limit));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, Util.getIoWorkerExecutor());
+    }
+
+    /**
+     * Flushes the journal, checkpoints the storage backend and stops the journal writer.
+     */
+    private static void closeJournal() {
+        BalanceJournal current = journal;
+        journal = null;
+        if (current != null) {
+            // Closing the journal also closes the storage backend, after the final checkpoint
+            current.close();
+        }
+        storage = null;
+        rankingIndex = null;
+    }
+
+    /**
+     * Gets the accounts whose balance was saved at or after the given time.
+     * Requires the "sqlite" backend, which answers from an index; runs on the IO worker pool.
+     *
+     * @param epochMillis Time in milliseconds since the epoch
+     * @return A future completed with (UUID, balance) pairs, oldest change first, or failed
+     *         with UnsupportedOperationException if the backend has no index
+     */
+    public static CompletableFuture<List<Map.Entry<UUID, Integer>>> getBalancesChangedSince(long epochMillis) {
+        return queryIndexed((indexed, consumer) -> indexed.changedSince(epochMillis, consumer));
+    }
+
+    /**
+     * Gets a page of the leaderboard, highest balance first. With the "sqlite" backend this is
+     * an indexed query on the IO worker pool, answered from the balances last applied to the
+     * database (about a second behind at most); otherwise it is answered from memory in
+     * O(log n) per entry.
+     * In "component" storage mode, offline players are ranked with their balance as of their
+     * last disconnect.
+     *
+     * @param offset Number of ranked players to skip
+     * @param limit Maximum number of players to return
+     * @return A future completed with (UUID, balance) pairs by decreasing balance; already
+     *         completed when answered from memory, unless the leaderboard is still being rebuilt
+     */
+    public static CompletableFuture<List<Map.Entry<UUID, Integer>>> getLeaderboard(int offset, int limit) {
+        if (rankingIndex != null) {
+            return queryIndexed((indexed, consumer) -> indexed.topBalances(Math.max(0, offset), Math.max(0, limit), consumer));
+        }
+        return queryLeaderboard(() -> {
+            List<Map.Entry<UUID, Integer>> results = new ArrayList<>(Math.max(0, Math.min(limit, 100)));
+            leaderboard.forEachRanked(offset, limit, (msb, lsb, balance) ->
+                    results.add(Map.entry(new UUID(msb, lsb), toIntBalance(balance))));
+            return results;
+        });
+    }
+
+    /**
+     * Gets a player's position on the leaderboard, see {@link #getLeaderboard} for where it is
+     * answered from.
+     *
+     * @param uuid The player's UUID
+     * @return A future completed with the 1-based rank, or 0 if the player has no PokéDollars
+     */
+    public static CompletableFuture<Integer> getRank(UUID uuid) {
+        BalanceStorage.Indexed index = rankingIndex;
+        if (index != null) {
+            return callIndexed(() -> index.rank(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()));
+        }
+        return queryLeaderboard(() -> leaderboard.rank(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()));
+    }
+
+    /**
+     * @return A future completed with the number of players on the leaderboard (those with a
+     *         positive balance), see {@link #getLeaderboard} for where it is answered from
+     */
+    public static CompletableFuture<Integer> getRankedPlayerCount() {
+        BalanceStorage.Indexed index = rankingIndex;
+        if (index != null) {
+            return callIndexed(index::rankedCount);
+        }
+        return queryLeaderboard(leaderboard::size);
+    }
+
+    /**
+     * Answers a leaderboard query right away, or on the IO worker pool while the leaderboard
+     * is being rebuilt, so the caller never waits for the rebuild.
+     */
+    private static <T> CompletableFuture<T> queryLeaderboard(Supplier<T> query) {
+        if (leaderboard.isReady()) {
+            return CompletableFuture.completedFuture(query.get());
+        }
+        return CompletableFuture.supplyAsync(query, Util.getIoWorkerExecutor());
+    }
+
+    /**
+     * Gets the economy aggregates: money supply, and money created, destroyed and
+     * transferred over the last minute, hour and day, per transaction source.
+     * Kept up to date on every change, so this costs O(1) whatever the number of players.
+     * The money supply is carried over between restarts (and recomputed from the storage
+     * backend after an unclean shutdown); in "component" storage mode, balances held in
+     * player data only count through the changes made to them.
+     *
+     * @return A snapshot of the aggregates
+     */
+    public static EconomyReport getEconomyReport() {
+        return metrics.report();
+    }
+
+    @FunctionalInterface
+    private interface IndexedQuery {
+        void run(BalanceStorage.Indexed indexed, BalanceStore.EntryConsumer consumer) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface IndexedCall<T> {
+        T call() throws IOException;
+    }
+
+    private static CompletableFuture<List<Map.Entry<UUID, Integer>>> queryIndexed(IndexedQuery query) {
+        if (!(storage instanceof BalanceStorage.Indexed indexed)) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException(
+                    "Indexed balance queries require the \"sqlite\" storage backend"));
+        }
+        return callIndexed(() -> {
+            List<Map.Entry<UUID, Integer>> results = new ArrayList<>();
+            query.run(indexed, (msb, lsb, balance) ->
+                    results.add(Map.entry(new UUID(msb, lsb), toIntBalance(balance))));
+            return results;
+        });
+    }
+
+    /**
+     * Runs a query on the storage backend's indexes, on the IO worker pool.
+     */
+    private static <T> CompletableFuture<T> callIndexed(IndexedCall<T> query) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return query.call();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, Util.getIoWorkerExecutor());
+    }
+
+    /**
+     * Requests an immediate checkpoint of all currency data.
+     * The checkpoint is done by the journal writer, so this never blocks the caller.
      */
     public static void forceSave() {
-        if (currentServer != null) {
-            saveData(currentServer);
+        BalanceJournal current = journal;
+        if (current != null) {
+            current.requestCompaction();
         }
     }
 
+    /**
+     * Narrows a stored balance to the int range used by the public API.
+     * Balances are stored as longs, so they can never overflow; reads saturate at Integer.MAX_VALUE.
+     */
+    private static int toIntBalance(long balance) {
+        return (int) Math.min(Integer.MAX_VALUE, balance);
+    }
+
     /**
      * Gets the balance of a player.
      *
@@ -152,7 +792,7 @@ public class CurrencyManager {
      * @return The player's balance (0 if not found)
      */
     public static int getBalance(PlayerEntity player) {
-        return playerBalances.getOrDefault(player.getUuid(), 0);
+        return getBalance(player.getUuid());
     }
 
     /**
@@ -162,7 +802,7 @@ public class CurrencyManager {
      * @return The player's balance (0 if not found)
      */
     public static int getBalance(UUID uuid) {
-        return playerBalances.getOrDefault(uuid, 0);
+        return toIntBalance(playerBalances.get(uuid));
     }
 
     /**
@@ -172,7 +812,7 @@ public class CurrencyManager {
      * @param amount The new balance (will be clamped to minimum 0)
      */
     public static void setBalance(PlayerEntity player, int amount) {
-        playerBalances.put(player.getUuid(), Math.max(0, amount));
+        setBalance(player.getUuid(), amount);
     }
 
     /**
@@ -182,32 +822,98 @@ public class CurrencyManager {
      * @param amount The new balance (will be clamped to minimum 0)
      */
     public static void setBalance(UUID uuid, int amount) {
-        playerBalances.put(uuid, Math.max(0, amount));
+        setBalance(uuid, amount, TransactionSource.OTHER);
+    }
+
+    /**
+     * Sets the balance of a player by UUID, recording the change in the audit log.
+     *
+     * @param uuid The player's UUID
+     * @param amount The new balance (will be clamped to minimum 0)
+     * @param source What caused the change
+     */
+    public static void setBalance(UUID uuid, int amount, TransactionSource source) {
+        long balance = Math.max(0, amount);
+        long[] previous = new long[1];
+        playerBalances.update(uuid, current -> {
+            previous[0] = current;
+            return balance;
+        });
+        record(uuid, source, balance - previous[0], balance, null, null, 0);
+    }
+
+    /**
+     * Atomically sets a player's balance if it currently equals the expected value.
+     *
+     * @param uuid The player's UUID
+     * @param expected The balance the caller expects the player to have (balances are stored
+     *                 as longs, so this may exceed Integer.MAX_VALUE)
+     * @param amount The new balance (will be clamped to minimum 0)
+     * @return true if the balance was updated, false if it did not match the expected value
+     */
+    public static boolean compareAndSetBalance(UUID uuid, long expected, int amount) {
+        long balance = Math.max(0, amount);
+        if (!playerBalances.compareAndSet(uuid, expected, balance)) {
+            return false;
+        }
+        record(uuid, TransactionSource.OTHER, balance - expected, balance, null, null, 0);
+        return true;
     }
 
     /**
      * Adds to a player's balance.
      *
      * @param player The player
-     * @param amount The amount to add
-     * @return true (always succeeds)
+     * @param amount The amount to add (must not be negative)
+     * @return true if successful, false if the amount is negative
      */
     public static boolean addBalance(PlayerEntity player, int amount) {
-        int current = getBalance(player);
-        setBalance(player, current + amount);
-        return true;
+        return addBalance(player.getUuid(), amount);
     }
 
     /**
      * Adds to a player's balance by UUID.
+     * The update is atomic for that account.
+     *
+     * @param uuid The player's UUID
+     * @param amount The amount to add (must not be negative)
+     * @return true if successful, false if the amount is negative
+     */
+    public static boolean addBalance(UUID uuid, int amount) {
+        return addBalance(uuid, amount, TransactionSource.OTHER, null, 0);
+    }
+
+    /**
+     * Adds to a player's balance, recording the change in the audit log.
+     *
+     * @param player The player
+     * @param amount The amount to add
+     * @param source What caused the change
+     * @param detail Free-form detail such as the item sold, or null
+     * @param quantity Quantity involved, or 0
+     * @return true (always succeeds)
+     */
+    public static boolean addBalance(PlayerEntity player, int amount, TransactionSource source, String detail, int quantity) {
+        return addBalance(player.getUuid(), amount, source, detail, quantity);
+    }
+
+    /**
+     * Adds to a player's balance by UUID, recording the change in the audit log.
      *
      * @param uuid The player's UUID
      * @param amount The amount to add
+     * @param source What caused the change
+     * @param detail Free-form detail such as the item sold, or null
+     * @param quantity Quantity involved, or 0
      * @return true (always succeeds)
      */
-    public static boolean addBalance(UUID uuid, int amount) {
-        int current = getBalance(uuid);
-        setBalance(uuid, current + amount);
+    public static boolean addBalance(UUID uuid, int amount, TransactionSource source, String detail, int quantity) {
+        // Debits go through removeBalance, which checks the funds
+        if (amount < 0) {
+            return false;
+        }
+        long balance = playerBalances.add(uuid, amount);
+        record(uuid, source, amount, balance, null, detail, quantity);
         return true;
     }
 
@@ -215,32 +921,87 @@ public class CurrencyManager {
      * Removes from a player's balance if they have enough.
      *
      * @param player The player
-     * @param amount The amount to remove
-     * @return true if successful, false if insufficient funds
+     * @param amount The amount to remove (must not be negative)
+     * @return true if successful, false if the amount is negative or funds are insufficient
      */
     public static boolean removeBalance(PlayerEntity player, int amount) {
-        int current = getBalance(player);
-        if (current >= amount) {
-            setBalance(player, current - amount);
-            return true;
-        }
-        return false;
+        return removeBalance(player.getUuid(), amount);
     }
 
     /**
      * Removes from a player's balance by UUID if they have enough.
+     * The check and the update happen atomically for that account.
+     *
+     * @param uuid The player's UUID
+     * @param amount The amount to remove (must not be negative)
+     * @return true if successful, false if the amount is negative or funds are insufficient
+     */
+    public static boolean removeBalance(UUID uuid, int amount) {
+        return removeBalance(uuid, amount, TransactionSource.OTHER, null, 0);
+    }
+
+    /**
+     * Removes from a player's balance if they have enough, recording the change in the audit log.
+     *
+     * @param player The player
+     * @param amount The amount to remove
+     * @param source What caused the change
+     * @param detail Free-form detail such as the item bought, or null
+     * @param quantity Quantity involved, or 0
+     * @return true if successful, false if insufficient funds
+     */
+    public static boolean removeBalance(PlayerEntity player, int amount, TransactionSource source, String detail, int quantity) {
+        return removeBalance(player.getUuid(), amount, source, detail, quantity);
+    }
+
+    /**
+     * Removes from a player's balance by UUID if they have enough, recording the change in the audit log.
+     * The check and the update happen atomically for that account.
      *
      * @param uuid The player's UUID
      * @param amount The amount to remove
+     * @param source What caused the change
+     * @param detail Free-form detail such as the item bought, or null
+     * @param quantity Quantity involved, or 0
      * @return true if successful, false if insufficient funds
      */
-    public static boolean removeBalance(UUID uuid, int amount) {
-        int current = getBalance(uuid);
-        if (current >= amount) {
-            setBalance(uuid, current - amount);
-            return true;
+    public static boolean removeBalance(UUID uuid, int amount, TransactionSource source, String detail, int quantity) {
+        // A negative amount would credit the account
+        if (amount < 0) {
+            return false;
         }
-        return false;
+        long balance = playerBalances.subtractIfAtLeast(uuid, amount);
+        if (balance < 0) {
+            return false;
+        }
+        record(uuid, source, -(long) amount, balance, null, detail, quantity);
+        return true;
+    }
+
+    /**
+     * Moves PokéDollars from one player to another.
+     * The sender is debited atomically first; the receiver is only credited if the debit
+     * succeeded. Each step locks a single account, so there is no global lock and no
+     * possibility of deadlock between concurrent transfers.
+     *
+     * @param from The sender's UUID
+     * @param to The receiver's UUID
+     * @param amount The amount to transfer (must be positive)
+     * @return true if successful, false if the amount is invalid, the accounts are the same
+     *         or the sender has insufficient funds
+     */
+    public static boolean transfer(UUID from, UUID to, int amount) {
+        if (amount <= 0 || from.equals(to)) {
+            return false;
+        }
+        long fromBalance = playerBalances.subtractIfAtLeast(from, amount);
+        if (fromBalance < 0) {
+            return false;
+        }
+        long toBalance = playerBalances.add(to, amount);
+        record(from, TransactionSource.PAY, -(long) amount, fromBalance, to, null, 0);
+        record(to, TransactionSource.PAY, amount, toBalance, from, null, 0);
+        return true;
     }
 
     /**
@@ -0,0 +1,204 @@
+package com.dyuus.academy_features.currency;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Live aggregates of the PokéDollars economy: money supply, money created and destroyed
+ * per {@link TransactionSource}, and transfer volume, over rolling 1 minute / 1 hour /
+ * 24 hour windows.
+ *
+ * Every change is added to {@link LongAdder}s for the current minute, which are striped
+ * so concurrent updates do not contend. When the minute changes, they are moved into a
+ * ring of per-minute totals and the running hour and day totals are adjusted by the
+ * minute entering and the minute leaving each window, so a report costs O(sources)
+ * regardless of the number of accounts or transactions.
+ *
+ * A window is the minute in progress plus the closed minutes before it, one fewer than
+ * its length (none, 59 and 1439), so it never spans more than its length.
+ */
+class EconomyMetrics {
+    private static final TransactionSource[] SOURCES = TransactionSource.values();
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int HOUR_MINUTES = 60;
+    private static final int DAY_MINUTES = 24 * 60;
+
+    // One series per source for created money, one per source for destroyed money
+    private static final int SERIES = SOURCES.length * 2;
+    private static final long[] IDLE_MINUTE = new long[SERIES];
+
+    private final LongSupplier clock;
+    private final LongAdder supply = new LongAdder();
+
+    // Current minute
+    private final LongAdder[] current = new LongAdder[SERIES];
+    private volatile long currentMinute;
+
+    // Closed minutes, indexed by minute % DAY_MINUTES (guarded by this)
+    private final long[][] minutes = new long[DAY_MINUTES][SERIES];
+    // Totals of the closed minutes in the hour and day windows
+    private final long[] hourTotals = new long[SERIES];
+    private final long[] dayTotals = new long[SERIES];
+
+    EconomyMetrics() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock Current time in milliseconds since the epoch
+     */
+    EconomyMetrics(LongSupplier clock) {
+        this.clock = clock;
+        for (int i = 0; i < SERIES; i++) {
+            current[i] = new LongAdder();
+        }
+        currentMinute = clock.getAsLong() / MINUTE_MILLIS;
+    }
+
+    /**
+     * Resets all aggregates and sets the money supply.
+     */
+    synchronized void reset(long moneySupply) {
+        supply.reset();
+        supply.add(moneySupply);
+        for (LongAdder adder : current) {
+            adder.reset();
+        }
+        clearWindows();
+        currentMinute = clock.getAsLong() / MINUTE_MILLIS;
+    }
+
+    /**
+     * Records a balance change.
+     *
+     * @param source What caused the change
+     * @param delta  Signed change of the balance; payments are recorded for both accounts
+     *               and only their credit side counts as transfer volume
+     */
+    void record(TransactionSource source, long delta) {
+        if (delta == 0) return;
+        supply.add(delta);
+        rollIfNeeded(clock.getAsLong() / MINUTE_MILLIS);
+        if (delta > 0) {
+            current[createdSeries(source)].add(delta);
+        } else {
+            current[destroyedSeries(source)].add(-delta);
+        }
+    }
+
+    /**
+     * @return The current money supply
+     */
+    long moneySupply() {
+        return supply.sum();
+    }
+
+    /**
+     * Builds a report of the current aggregates.
+     */
+    synchronized EconomyReport report() {
+        rollIfNeeded(clock.getAsLong() / MINUTE_MILLIS);
+        long[] partial = new long[SERIES];
+        for (int i = 0; i < SERIES; i++) {
+            partial[i] = current[i].sum();
+        }
+        return new EconomyReport(
+                supply.sum(),
+                // The minute window is the minute in progress alone
+                window(partial, IDLE_MINUTE),
+                window(partial, hourTotals),
+                window(partial, dayTotals));
+    }
+
+    // ==================== Internals ====================
+
+    private static int createdSeries(TransactionSource source) {
+        return source.ordinal() * 2;
+    }
+
+    private static int destroyedSeries(TransactionSource source) {
+        return source.ordinal() * 2 + 1;
+    }
+
+    /**
+     * Builds a window from the minute in progress and the totals of the window's closed minutes.
+     */
+    private static EconomyReport.Window window(long[] partial, long[] closed) {
+        long created = 0;
+        long destroyed = 0;
+        long transferred = 0;
+        Map<TransactionSource, Long> createdBySource = new EnumMap<>(TransactionSource.class);
+        Map<TransactionSource, Long> destroyedBySource = new EnumMap<>(TransactionSource.class);
+
+        for (TransactionSource source : SOURCES) {
+            long in = partial[createdSeries(source)] + closed[createdSeries(source)];
+            long out = partial[destroyedSeries(source)] + closed[destroyedSeries(source)];
+            if (source == TransactionSource.PAY) {
+                // Payments move money without creating or destroying it
+                transferred += in;
+                continue;
+            }
+            created += in;
+            destroyed += out;
+            if (in > 0) createdBySource.put(source, in);
+            if (out > 0) destroyedBySource.put(source, out);
+        }
+        return new EconomyReport.Window(created, destroyed, transferred, createdBySource, destroyedBySource);
+    }
+
+    private void rollIfNeeded(long minute) {
+        if (minute != currentMinute) {
+            roll(minute);
+        }
+    }
+
+    /**
+     * Closes the current minute (and any idle minutes since) and starts a new one.
+     */
+    private synchronized void roll(long minute) {
+        long closing = currentMinute;
+        if (minute <= closing) return;
+
+        long[] closed = new long[SERIES];
+        for (int i = 0; i < SERIES; i++) {
+            closed[i] = current[i].sumThenReset();
+        }
+        currentMinute = minute;
+
+        if (minute - closing > DAY_MINUTES) {
+            // Idle for over a day: every window is empty
+            clearWindows();
+            return;
+        }
+        // Close every minute in between, so each one leaves its windows exactly once
+        for (long m = closing; m < minute; m++) {
+            close(m, m == closing ? closed : IDLE_MINUTE);
+        }
+    }
+
+    /**
+     * Stores a closed minute in the ring and slides the windows over it: each window keeps
+     * one closed minute fewer than its length, the minute in progress completes it.
+     */
+    private void close(long minute, long[] values) {
+        long[] leavingDay = minutes[(int) ((minute - (DAY_MINUTES - 1)) % DAY_MINUTES)];
+        long[] leavingHour = minutes[(int) ((minute - (HOUR_MINUTES - 1)) % DAY_MINUTES)];
+        for (int i = 0; i < SERIES; i++) {
+            dayTotals[i] += values[i] - leavingDay[i];
+            hourTotals[i] += values[i] - leavingHour[i];
+        }
+        System.arraycopy(values, 0, minutes[(int) (minute % DAY_MINUTES)], 0, SERIES);
+    }
+
+    private void clearWindows() {
+        for (long[] slot : minutes) {
+            Arrays.fill(slot, 0L);
+        }
+        Arrays.fill(hourTotals, 0L);
+        Arrays.fill(dayTotals, 0L);
+    }
+}
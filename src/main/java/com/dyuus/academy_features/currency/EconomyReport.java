@@ -0,0 +1,28 @@
+package com.dyuus.academy_features.currency;
+
+import java.util.Map;
+
+/**
+ * Snapshot of the PokéDollars economy aggregates, see {@link CurrencyManager#getEconomyReport()}.
+ *
+ * @param moneySupply Total PokéDollars held by all players
+ * @param lastMinute  Activity over the last minute
+ * @param lastHour    Activity over the last hour
+ * @param lastDay     Activity over the last 24 hours
+ */
+public record EconomyReport(long moneySupply, Window lastMinute, Window lastHour, Window lastDay) {
+
+    /**
+     * Money flows over a rolling window, to the minute.
+     *
+     * @param created           PokéDollars created (faucets: rewards, sales, refunds, admin credits)
+     * @param destroyed         PokéDollars destroyed (sinks: purchases, admin debits)
+     * @param transferred       PokéDollars paid from one player to another (counted once)
+     * @param createdBySource   Created amount of each source that created money
+     * @param destroyedBySource Destroyed amount of each source that destroyed money
+     */
+    public record Window(long created, long destroyed, long transferred,
+                         Map<TransactionSource, Long> createdBySource,
+                         Map<TransactionSource, Long> destroyedBySource) {
+    }
+}
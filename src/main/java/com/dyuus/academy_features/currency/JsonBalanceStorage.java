@@ -0,0 +1,164 @@
+package com.dyuus.academy_features.currency;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * Storage backend keeping every balance in the original pokedollars.json format
+ * ({"uuid": balance, ...}).
+ *
+ * The format cannot be updated in place, so all accounts stay in memory and each
+ * checkpoint rewrites the whole file (only if something changed). Kept for compatibility
+ * and for admins who want to edit balances by hand; the other backends scale better.
+ */
+class JsonBalanceStorage implements BalanceStorage {
+    private final Path path;
+    private final BalanceStore balances = new BalanceStore();
+    private boolean fresh;
+    private volatile boolean dirty = false;
+
+    private JsonBalanceStorage(Path path) {
+        this.path = path;
+        this.fresh = !Files.exists(path);
+    }
+
+    /**
+     * Opens a JSON balance file, reading all of it.
+     *
+     * @param path Path of the JSON file (created on the first checkpoint if missing)
+     * @return The storage
+     */
+    static JsonBalanceStorage open(Path path) throws IOException {
+        JsonBalanceStorage storage = new JsonBalanceStorage(path);
+        if (!storage.fresh) {
+            read(path, storage.balances::load);
+        }
+        return storage;
+    }
+
+    @Override
+    public long read(long msb, long lsb) {
+        return balances.find(msb, lsb);
+    }
+
+    @Override
+    public void forEach(BalanceStore.EntryConsumer consumer) {
+        balances.forEach(consumer);
+    }
+
+    @Override
+    public boolean isNew() {
+        return fresh;
+    }
+
+    @Override
+    public int importFrom(Source source) throws IOException {
+        balances.clear();
+        int[] imported = {0};
+        source.forEach((msb, lsb, balance) -> {
+            balances.load(msb, lsb, balance);
+            imported[0]++;
+        });
+        // The file is replaced atomically, so an interrupted import leaves the old one intact
+        dirty = true;
+        checkpoint();
+        fresh = false;
+        return imported[0];
+    }
+
+    // ==================== Journal target ====================
+
+    @Override
+    public void apply(long[] records, int longs) {
+        for (int i = 0; i + 2 < longs; i += 3) {
+            balances.load(records[i], records[i + 1], records[i + 2]);
+        }
+        dirty = true;
+    }
+
+    @Override
+    public void checkpoint() throws IOException {
+        if (!dirty) return;
+        dirty = false;
+        try {
+            write(path, balances::forEach);
+        } catch (IOException | RuntimeException e) {
+            dirty = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        checkpoint();
+    }
+
+    // ==================== JSON format ====================
+
+    /**
+     * Streams a JSON balance file without building a boxed map.
+     *
+     * @param jsonPath Path to the JSON file
+     * @param consumer Receives (msb, lsb, balance) for each account
+     * @return Number of accounts read
+     */
+    static int read(Path jsonPath, BalanceStore.EntryConsumer consumer) throws IOException {
+        int read = 0;
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(jsonPath))) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return 0;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                UUID uuid = UUID.fromString(reader.nextName());
+                consumer.accept(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(),
+                        Math.max(0L, reader.nextLong()));
+                read++;
+            }
+            reader.endObject();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new IOException("Malformed currency JSON " + jsonPath, e);
+        }
+        return read;
+    }
+
+    /**
+     * Writes accounts to a JSON balance file.
+     * The file is written to a temporary file first and then moved into place, so a crash
+     * mid-write never leaves a truncated file behind.
+     *
+     * @param jsonPath Path of the JSON file to write
+     * @param source   Accounts to write
+     * @return Number of accounts written
+     */
+    static int write(Path jsonPath, Source source) throws IOException {
+        Path tempPath = jsonPath.resolveSibling(jsonPath.getFileName() + ".tmp");
+        int[] written = {0};
+
+        try (JsonWriter writer = new JsonWriter(Files.newBufferedWriter(tempPath))) {
+            writer.setIndent("  ");
+            writer.beginObject();
+            source.forEach((msb, lsb, balance) -> {
+                try {
+                    writer.name(new UUID(msb, lsb).toString()).value(balance);
+                    written[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.endObject();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(tempPath, jsonPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written[0];
+    }
+}
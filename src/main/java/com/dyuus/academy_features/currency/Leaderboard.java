@@ -0,0 +1,378 @@
+package com.dyuus.academy_features.currency;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Balances ranked from highest to lowest, kept up to date on every balance change.
+ *
+ * An order-statistic treap: a binary search tree ordered by (balance descending, UUID)
+ * and balanced by random priorities, where each node also stores the size of its subtree.
+ * Updating a balance, finding an account's rank and finding the account at a given rank
+ * all take O(log n). Nodes live in parallel primitive arrays (recycled through a free
+ * list) and accounts map to their node through a {@link BalanceStore}, so updates do not
+ * allocate once the arrays are sized.
+ *
+ * Changes are not applied to the tree by the thread making them: {@link #update} only copies
+ * them into a primitive staging buffer under a short lock of its own, so callers holding
+ * their own locks never wait for the tree. The staged changes are applied in order by
+ * {@link #drain} (once per server tick) or by the next query, whichever comes first.
+ *
+ * Accounts with a balance of 0 are not ranked. The tree is guarded by this object's lock;
+ * consumers are called under it, so they must be short and must not call back into this class.
+ */
+class Leaderboard {
+    private static final int NIL = 0;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int LONGS_PER_CHANGE = 3;
+
+    // Node 0 is the empty tree (size 0); real nodes start at 1
+    private long[] msbs = new long[INITIAL_CAPACITY];
+    private long[] lsbs = new long[INITIAL_CAPACITY];
+    private long[] balances = new long[INITIAL_CAPACITY];
+    private int[] lefts = new int[INITIAL_CAPACITY];
+    private int[] rights = new int[INITIAL_CAPACITY];
+    private int[] sizes = new int[INITIAL_CAPACITY];
+    private int[] priorities = new int[INITIAL_CAPACITY];
+
+    private int root = NIL;
+    private int allocated = 1;
+    private int freeList = NIL; // Freed nodes, chained through lefts
+    private int random = 0x9E3779B9;
+
+    // Account → node index
+    private final BalanceStore nodes = new BalanceStore();
+
+    // Outputs of split(), valid right after a call
+    private int splitLeft;
+    private int splitRight;
+
+    // Changes not applied to the tree yet (msb, lsb, balance triples), guarded by stagingLock
+    private final Object stagingLock = new Object();
+    private long[] staged = new long[LONGS_PER_CHANGE * INITIAL_CAPACITY];
+    private int stagedLongs = 0;
+    // Buffer being applied (guarded by this), swapped with "staged" on each drain
+    private long[] draining = new long[LONGS_PER_CHANGE * INITIAL_CAPACITY];
+
+    // False while the ranking is being rebuilt: changes are staged and kept for afterwards
+    private volatile boolean ready = true;
+
+    // ==================== Updates ====================
+
+    /**
+     * Stages a change of an account's ranked balance (0 removes it from the ranking).
+     * Never waits for the tree; the change is applied by the next {@link #drain} or query.
+     */
+    void update(long msb, long lsb, long balance) {
+        synchronized (stagingLock) {
+            if (stagedLongs + LONGS_PER_CHANGE > staged.length) {
+                long[] grown = new long[staged.length * 2];
+                System.arraycopy(staged, 0, grown, 0, stagedLongs);
+                staged = grown;
+            }
+            staged[stagedLongs++] = msb;
+            staged[stagedLongs++] = lsb;
+            staged[stagedLongs++] = balance;
+        }
+    }
+
+    /**
+     * Applies the staged changes to the tree, unless the ranking is being rebuilt.
+     */
+    void drain() {
+        if (!ready) return;
+        synchronized (this) {
+            drainStaged();
+        }
+    }
+
+    /**
+     * Replaces the ranking with the accounts of a source, then applies the changes staged
+     * meanwhile. Those are at least as recent as what the source returns for their account,
+     * so the ranking ends up current. Queries wait until the rebuild is done; {@link #isReady()}
+     * tells whether one is running.
+     */
+    synchronized void rebuild(BalanceStorage.Source source) throws IOException {
+        ready = false;
+        try {
+            clearTree();
+            source.forEach(this::set);
+        } finally {
+            drainStaged();
+            ready = true;
+        }
+    }
+
+    /**
+     * @return false while {@link #rebuild} runs
+     */
+    boolean isReady() {
+        return ready;
+    }
+
+    synchronized void clear() {
+        synchronized (stagingLock) {
+            stagedLongs = 0;
+        }
+        clearTree();
+    }
+
+    private void drainStaged() {
+        long[] changes;
+        int longs;
+        synchronized (stagingLock) {
+            changes = staged;
+            longs = stagedLongs;
+            staged = draining;
+            stagedLongs = 0;
+        }
+        draining = changes;
+        for (int i = 0; i < longs; i += LONGS_PER_CHANGE) {
+            set(changes[i], changes[i + 1], changes[i + 2]);
+        }
+    }
+
+    /**
+     * Sets an account's ranked balance in the tree.
+     */
+    private void set(long msb, long lsb, long balance) {
+        long existing = nodes.find(msb, lsb);
+        if (existing >= 0) {
+            int node = (int) existing;
+            if (balances[node] == balance) return;
+
+            root = erase(root, node);
+            if (balance > 0) {
+                balances[node] = balance;
+                lefts[node] = NIL;
+                rights[node] = NIL;
+                sizes[node] = 1;
+                root = insert(root, node);
+            } else {
+                nodes.remove(msb, lsb);
+                free(node);
+            }
+        } else if (balance > 0) {
+            int node = allocate(msb, lsb, balance);
+            nodes.load(msb, lsb, node);
+            root = insert(root, node);
+        }
+    }
+
+    private void clearTree() {
+        root = NIL;
+        allocated = 1;
+        freeList = NIL;
+        nodes.clear();
+    }
+
+    // ==================== Queries ====================
+
+    /**
+     * @return Number of ranked accounts (those with a positive balance)
+     */
+    synchronized int size() {
+        drainStaged();
+        return sizes[root];
+    }
+
+    /**
+     * Gets an account's position in the ranking.
+     *
+     * @return The 1-based rank, or 0 if the account is not ranked
+     */
+    synchronized int rank(long msb, long lsb) {
+        drainStaged();
+        long existing = nodes.find(msb, lsb);
+        if (existing < 0) return 0;
+
+        int node = (int) existing;
+        int before = 0;
+        int current = root;
+        while (current != NIL) {
+            int order = compare(node, current);
+            if (order == 0) {
+                return before + sizes[lefts[current]] + 1;
+            }
+            if (order < 0) {
+                current = lefts[current];
+            } else {
+                before += sizes[lefts[current]] + 1;
+                current = rights[current];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Visits a page of the ranking, highest balance first.
+     *
+     * @param offset Number of ranked accounts to skip
+     * @param limit Maximum number of accounts to visit
+     */
+    synchronized void forEachRanked(int offset, int limit, BalanceStore.EntryConsumer consumer) {
+        drainStaged();
+        int end = (int) Math.min(sizes[root], (long) Math.max(0, offset) + Math.max(0, limit));
+        for (int position = Math.max(0, offset); position < end; position++) {
+            int node = select(position);
+            consumer.accept(msbs[node], lsbs[node], balances[node]);
+        }
+    }
+
+    /**
+     * Finds the node at a 0-based position.
+     */
+    private int select(int position) {
+        int current = root;
+        while (true) {
+            int leftSize = sizes[lefts[current]];
+            if (position < leftSize) {
+                current = lefts[current];
+            } else if (position == leftSize) {
+                return current;
+            } else {
+                position -= leftSize + 1;
+                current = rights[current];
+            }
+        }
+    }
+
+    // ==================== Treap ====================
+
+    /**
+     * Orders nodes by balance descending, then by UUID so every account has a distinct position.
+     */
+    private int compare(int a, int b) {
+        int order = Long.compare(balances[b], balances[a]);
+        if (order != 0) return order;
+        order = Long.compare(msbs[a], msbs[b]);
+        return order != 0 ? order : Long.compare(lsbs[a], lsbs[b]);
+    }
+
+    private int insert(int tree, int node) {
+        if (tree == NIL) {
+            return node;
+        }
+        if (priorities[node] > priorities[tree]) {
+            split(tree, node);
+            lefts[node] = splitLeft;
+            rights[node] = splitRight;
+            resize(node);
+            return node;
+        }
+        if (compare(node, tree) < 0) {
+            lefts[tree] = insert(lefts[tree], node);
+        } else {
+            rights[tree] = insert(rights[tree], node);
+        }
+        resize(tree);
+        return tree;
+    }
+
+    private int erase(int tree, int node) {
+        if (tree == NIL) {
+            return NIL;
+        }
+        if (tree == node) {
+            return merge(lefts[tree], rights[tree]);
+        }
+        if (compare(node, tree) < 0) {
+            lefts[tree] = erase(lefts[tree], node);
+        } else {
+            rights[tree] = erase(rights[tree], node);
+        }
+        resize(tree);
+        return tree;
+    }
+
+    /**
+     * Splits a tree into the nodes ordered before {@code pivot} ({@link #splitLeft}) and the others ({@link #splitRight}).
+     */
+    private void split(int tree, int pivot) {
+        if (tree == NIL) {
+            splitLeft = NIL;
+            splitRight = NIL;
+            return;
+        }
+        if (compare(tree, pivot) < 0) {
+            split(rights[tree], pivot);
+            rights[tree] = splitLeft;
+            resize(tree);
+            splitLeft = tree;
+        } else {
+            split(lefts[tree], pivot);
+            lefts[tree] = splitRight;
+            resize(tree);
+            splitRight = tree;
+        }
+    }
+
+    /**
+     * Joins two trees where every node of {@code a} is ordered before every node of {@code b}.
+     */
+    private int merge(int a, int b) {
+        if (a == NIL) return b;
+        if (b == NIL) return a;
+        if (priorities[a] > priorities[b]) {
+            rights[a] = merge(rights[a], b);
+            resize(a);
+            return a;
+        }
+        lefts[b] = merge(a, lefts[b]);
+        resize(b);
+        return b;
+    }
+
+    private void resize(int node) {
+        sizes[node] = sizes[lefts[node]] + sizes[rights[node]] + 1;
+    }
+
+    // ==================== Node storage ====================
+
+    private int allocate(long msb, long lsb, long balance) {
+        int node;
+        if (freeList != NIL) {
+            node = freeList;
+            freeList = lefts[node];
+        } else {
+            if (allocated == msbs.length) {
+                grow();
+            }
+            node = allocated++;
+        }
+        msbs[node] = msb;
+        lsbs[node] = lsb;
+        balances[node] = balance;
+        lefts[node] = NIL;
+        rights[node] = NIL;
+        sizes[node] = 1;
+        priorities[node] = nextPriority();
+        return node;
+    }
+
+    private void free(int node) {
+        lefts[node] = freeList;
+        rights[node] = NIL;
+        sizes[node] = 0;
+        freeList = node;
+    }
+
+    private void grow() {
+        int capacity = msbs.length * 2;
+        msbs = Arrays.copyOf(msbs, capacity);
+        lsbs = Arrays.copyOf(lsbs, capacity);
+        balances = Arrays.copyOf(balances, capacity);
+        lefts = Arrays.copyOf(lefts, capacity);
+        rights = Arrays.copyOf(rights, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+    }
+
+    private int nextPriority() {
+        // xorshift32: fast, allocation-free and good enough to keep the treap balanced
+        random ^= random << 13;
+        random ^= random >>> 17;
+        random ^= random << 5;
+        return random;
+    }
+}
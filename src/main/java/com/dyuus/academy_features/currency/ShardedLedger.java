@@ -0,0 +1,279 @@
+package com.dyuus.academy_features.currency;
+
+import com.dyuus.academy_features.DyuusAcademyFeatures;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Balance ledger split into {@link #SHARDS} {@link BalanceLedger} files by the first byte
+ * of the UUID, in a directory of the world folder.
+ *
+ * Shards are opened lazily on first access, so startup only lists the directory and a
+ * lookup touches a single small file. Each shard file is named after its index and the
+ * log2 of its capacity ("3f-10.ledger"); growing a shard writes the next generation and
+ * then deletes the previous one, and on open the largest complete generation wins.
+ * While an import runs, a marker file in the directory makes the next open discard the
+ * partially imported shards.
+ *
+ * Thread-safe: every shard has its own lock. Those locks are never held while calling
+ * back into other code, so callers may hold their own locks around reads and writes.
+ */
+class ShardedLedger implements BalanceStorage {
+    static final int SHARDS = 256;
+    private static final String IMPORT_MARKER = "import.pending";
+    private static final Pattern SHARD_FILE = Pattern.compile("([0-9a-f]{2})-(\\d{1,2})\\.ledger");
+    private static final int MIN_CAPACITY_BITS = Integer.numberOfTrailingZeros(BalanceLedger.MIN_CAPACITY);
+
+    private final Path directory;
+    private final Object[] locks = new Object[SHARDS];
+    private final BalanceLedger[] shards = new BalanceLedger[SHARDS];
+    // Bit n set: a file with capacity 2^n exists for that shard and has not been tried yet
+    private final int[] generations = new int[SHARDS];
+    private boolean fresh;
+
+    private ShardedLedger(Path directory) {
+        this.directory = directory;
+        for (int i = 0; i < SHARDS; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Opens (or creates) a sharded ledger directory. Only the file names are read here.
+     *
+     * @param directory Directory holding the shard files
+     * @return The ledger
+     */
+    static ShardedLedger open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        ShardedLedger ledger = new ShardedLedger(directory);
+        if (Files.exists(directory.resolve(IMPORT_MARKER))) {
+            DyuusAcademyFeatures.LOGGER.warn("Discarding interrupted currency ledger import in {}", directory);
+            ledger.deleteShardFiles();
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.ledger")) {
+            for (Path file : files) {
+                Matcher matcher = SHARD_FILE.matcher(file.getFileName().toString());
+                if (!matcher.matches()) continue;
+                int bits = Integer.parseInt(matcher.group(2));
+                if (bits < MIN_CAPACITY_BITS || bits > 30) continue;
+                ledger.generations[Integer.parseInt(matcher.group(1), 16)] |= 1 << bits;
+            }
+        }
+        ledger.fresh = Arrays.stream(ledger.generations).allMatch(bits -> bits == 0);
+        return ledger;
+    }
+
+    /**
+     * Whether the directory holds at least one shard file from a completed import or use.
+     */
+    static boolean exists(Path directory) throws IOException {
+        if (!Files.isDirectory(directory) || Files.exists(directory.resolve(IMPORT_MARKER))) return false;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.ledger")) {
+            return files.iterator().hasNext();
+        }
+    }
+
+    @Override
+    public long read(long msb, long lsb) throws IOException {
+        int shard = shardOf(msb);
+        synchronized (locks[shard]) {
+            BalanceLedger ledger = shard(shard, false);
+            return ledger != null ? ledger.read(msb, lsb) : -1L;
+        }
+    }
+
+    /**
+     * Writes a balance in place, growing the account's shard if needed.
+     */
+    void write(long msb, long lsb, long balance) throws IOException {
+        int shard = shardOf(msb);
+        synchronized (locks[shard]) {
+            BalanceLedger ledger = shard(shard, true);
+            if (!ledger.write(msb, lsb, balance)) {
+                ledger = grow(shard, ledger);
+                ledger.write(msb, lsb, balance);
+            }
+        }
+    }
+
+    /**
+     * Visits every account. Each shard is copied out under its lock and the consumer is
+     * called outside of it, so the consumer may use the ledger or other locks freely.
+     */
+    @Override
+    public void forEach(BalanceStore.EntryConsumer consumer) throws IOException {
+        for (int shard = 0; shard < SHARDS; shard++) {
+            long[] records;
+            int[] longs = {0};
+            synchronized (locks[shard]) {
+                BalanceLedger ledger = shard(shard, false);
+                if (ledger == null) continue;
+                records = new long[ledger.size() * 3];
+                ledger.forEach((msb, lsb, balance) -> {
+                    records[longs[0]++] = msb;
+                    records[longs[0]++] = lsb;
+                    records[longs[0]++] = balance;
+                });
+            }
+            for (int i = 0; i < longs[0]; i += 3) {
+                consumer.accept(records[i], records[i + 1], records[i + 2]);
+            }
+        }
+    }
+
+    @Override
+    public boolean isNew() {
+        return fresh;
+    }
+
+    @Override
+    public int importFrom(Source source) throws IOException {
+        Path marker = directory.resolve(IMPORT_MARKER);
+        if (!Files.exists(marker)) {
+            Files.createFile(marker);
+        }
+        close();
+        deleteShardFiles();
+        Arrays.fill(generations, 0);
+
+        int[] imported = {0};
+        try {
+            source.forEach((msb, lsb, balance) -> {
+                try {
+                    write(msb, lsb, balance);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                imported[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        checkpoint();
+        Files.delete(marker);
+        fresh = false;
+        return imported[0];
+    }
+
+    // ==================== Journal target ====================
+
+    @Override
+    public void apply(long[] records, int longs) throws IOException {
+        for (int i = 0; i + 2 < longs; i += 3) {
+            write(records[i], records[i + 1], records[i + 2]);
+        }
+    }
+
+    @Override
+    public void checkpoint() throws IOException {
+        for (int shard = 0; shard < SHARDS; shard++) {
+            synchronized (locks[shard]) {
+                if (shards[shard] != null) {
+                    shards[shard].force();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (int shard = 0; shard < SHARDS; shard++) {
+            synchronized (locks[shard]) {
+                if (shards[shard] == null) continue;
+                try {
+                    shards[shard].close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+                shards[shard] = null;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // ==================== Internals ====================
+
+    private void deleteShardFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.ledger")) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static int shardOf(long msb) {
+        return (int) (msb >>> 56);
+    }
+
+    private Path pathOf(int shard, int capacityBits) {
+        return directory.resolve(String.format(Locale.ROOT, "%02x-%d.ledger", shard, capacityBits));
+    }
+
+    /**
+     * Returns a shard, opening its newest complete file on first access. Called under the shard's lock.
+     *
+     * @param create Whether to create the shard if it has no file yet
+     * @return The shard, or null if it does not exist and create is false
+     */
+    private BalanceLedger shard(int shard, boolean create) throws IOException {
+        BalanceLedger ledger = shards[shard];
+        if (ledger != null) return ledger;
+
+        while (ledger == null && generations[shard] != 0) {
+            int bits = 31 - Integer.numberOfLeadingZeros(generations[shard]);
+            generations[shard] &= ~(1 << bits);
+            Path path = pathOf(shard, bits);
+            try {
+                ledger = BalanceLedger.open(path);
+            } catch (IOException e) {
+                if (generations[shard] == 0) {
+                    // Nothing older to fall back to: keep the file and fail instead of starting empty
+                    generations[shard] |= 1 << bits;
+                    throw e;
+                }
+                // Left behind by a crash while growing: the previous generation is still complete
+                DyuusAcademyFeatures.LOGGER.warn("Discarding unusable currency ledger shard {}: {}", path, e.getMessage());
+                Files.deleteIfExists(path);
+            }
+        }
+        // Anything older than the file just opened is stale
+        for (int bits = MIN_CAPACITY_BITS; generations[shard] != 0; bits++) {
+            if ((generations[shard] & (1 << bits)) != 0) {
+                generations[shard] &= ~(1 << bits);
+                Files.deleteIfExists(pathOf(shard, bits));
+            }
+        }
+
+        if (ledger == null && create) {
+            ledger = BalanceLedger.create(pathOf(shard, MIN_CAPACITY_BITS), BalanceLedger.MIN_CAPACITY);
+        }
+        shards[shard] = ledger;
+        return ledger;
+    }
+
+    private BalanceLedger grow(int shard, BalanceLedger ledger) throws IOException {
+        Path oldPath = ledger.path();
+        int newBits = Integer.numberOfTrailingZeros(ledger.capacity()) + 1;
+        BalanceLedger grown = ledger.grow(pathOf(shard, newBits));
+        shards[shard] = grown;
+        try {
+            Files.deleteIfExists(oldPath);
+        } catch (IOException e) {
+            // Some platforms refuse to delete a file that is still mapped; stale generations are removed on next start
+            DyuusAcademyFeatures.LOGGER.debug("Could not delete old currency ledger shard {}", oldPath, e);
+        }
+        return grown;
+    }
+}
@@ -0,0 +1,329 @@
+package com.dyuus.academy_features.currency;
+
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteDataSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Storage backend keeping balances in a single-file SQLite database (pokedollars.db).
+ *
+ * Each account is one row keyed by the two UUID longs, with indexes on the balance and on
+ * the time it was last stored, so top balances and recent changes are indexed queries.
+ * The database runs in WAL mode: journal batches are applied by the journal writer as one
+ * transaction of prepared upserts, while reads use a second connection and never wait for
+ * a write to finish. A checkpoint copies the WAL into the database file.
+ */
+class SqliteBalanceStorage implements BalanceStorage, BalanceStorage.Indexed {
+    private static final String SCHEMA_BALANCES = """
+            CREATE TABLE IF NOT EXISTS balances (
+                msb INTEGER NOT NULL,
+                lsb INTEGER NOT NULL,
+                balance INTEGER NOT NULL,
+                updated_at INTEGER NOT NULL,
+                PRIMARY KEY (msb, lsb)
+            ) WITHOUT ROWID""";
+    private static final String SCHEMA_META = "CREATE TABLE IF NOT EXISTS meta (key TEXT PRIMARY KEY, value TEXT NOT NULL)";
+    private static final String INDEX_BALANCE = "CREATE INDEX IF NOT EXISTS balances_by_balance ON balances (balance DESC)";
+    private static final String INDEX_UPDATED = "CREATE INDEX IF NOT EXISTS balances_by_update ON balances (updated_at)";
+
+    private static final String UPSERT = "INSERT INTO balances (msb, lsb, balance, updated_at) VALUES (?, ?, ?, ?) "
+            + "ON CONFLICT (msb, lsb) DO UPDATE SET balance = excluded.balance, updated_at = excluded.updated_at";
+    private static final String SELECT_ONE = "SELECT balance FROM balances WHERE msb = ? AND lsb = ?";
+    private static final String SELECT_ALL = "SELECT msb, lsb, balance FROM balances";
+    private static final String SELECT_TOP = "SELECT msb, lsb, balance FROM balances WHERE balance > 0 "
+            + "ORDER BY balance DESC, msb, lsb LIMIT ? OFFSET ?";
+    // Accounts ordered before one with the given balance and UUID
+    private static final String COUNT_BEFORE = "SELECT COUNT(*) FROM balances WHERE balance > ? "
+            + "OR (balance = ? AND (msb < ? OR (msb = ? AND lsb < ?)))";
+    private static final String COUNT_RANKED = "SELECT COUNT(*) FROM balances WHERE balance > 0";
+    private static final String SELECT_CHANGED = "SELECT msb, lsb, balance FROM balances WHERE updated_at >= ? ORDER BY updated_at";
+    private static final String SELECT_INITIALIZED = "SELECT value FROM meta WHERE key = 'initialized'";
+    private static final String MARK_INITIALIZED = "INSERT OR REPLACE INTO meta (key, value) VALUES ('initialized', ?)";
+
+    private final Path path;
+    // Used only by the journal writer (and imports before it starts)
+    private final Connection writeConnection;
+    private final PreparedStatement upsert;
+    // Shared by readers, guarded by its own monitor
+    private final Connection readConnection;
+    private final PreparedStatement selectOne;
+    private boolean fresh;
+
+    private SqliteBalanceStorage(Path path, Connection writeConnection, Connection readConnection) throws SQLException {
+        this.path = path;
+        this.writeConnection = writeConnection;
+        this.readConnection = readConnection;
+
+        try (Statement statement = writeConnection.createStatement()) {
+            statement.executeUpdate(SCHEMA_BALANCES);
+            statement.executeUpdate(SCHEMA_META);
+            statement.executeUpdate(INDEX_BALANCE);
+            statement.executeUpdate(INDEX_UPDATED);
+            try (ResultSet result = statement.executeQuery(SELECT_INITIALIZED)) {
+                this.fresh = !result.next();
+            }
+        }
+        writeConnection.setAutoCommit(false);
+        this.upsert = writeConnection.prepareStatement(UPSERT);
+        this.selectOne = readConnection.prepareStatement(SELECT_ONE);
+    }
+
+    /**
+     * Opens (or creates) a balance database.
+     *
+     * @param path Path of the database file
+     * @return The storage
+     */
+    static SqliteBalanceStorage open(Path path) throws IOException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        // Durability comes from the currency journal and from checkpoints, not from every commit
+        config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+        config.setBusyTimeout(5000);
+        SQLiteDataSource dataSource = new SQLiteDataSource(config);
+        dataSource.setUrl("jdbc:sqlite:" + path.toAbsolutePath());
+
+        Connection writeConnection = null;
+        Connection readConnection = null;
+        try {
+            writeConnection = dataSource.getConnection();
+            readConnection = dataSource.getConnection();
+            return new SqliteBalanceStorage(path, writeConnection, readConnection);
+        } catch (SQLException e) {
+            closeQuietly(writeConnection);
+            closeQuietly(readConnection);
+            throw new IOException("Failed to open currency database " + path, e);
+        }
+    }
+
+    @Override
+    public long read(long msb, long lsb) throws IOException {
+        synchronized (readConnection) {
+            try {
+                selectOne.setLong(1, msb);
+                selectOne.setLong(2, lsb);
+                try (ResultSet result = selectOne.executeQuery()) {
+                    return result.next() ? result.getLong(1) : -1L;
+                }
+            } catch (SQLException e) {
+                throw new IOException("Failed to read balance from " + path, e);
+            }
+        }
+    }
+
+    @Override
+    public void forEach(BalanceStore.EntryConsumer consumer) throws IOException {
+        query(SELECT_ALL, null, consumer);
+    }
+
+    @Override
+    public void topBalances(int offset, int limit, BalanceStore.EntryConsumer consumer) throws IOException {
+        query(SELECT_TOP, statement -> {
+            statement.setInt(1, limit);
+            statement.setInt(2, offset);
+        }, consumer);
+    }
+
+    @Override
+    public int rank(long msb, long lsb) throws IOException {
+        long balance = read(msb, lsb);
+        if (balance <= 0) return 0;
+        return 1 + count(COUNT_BEFORE, statement -> {
+            statement.setLong(1, balance);
+            statement.setLong(2, balance);
+            statement.setLong(3, msb);
+            statement.setLong(4, msb);
+            statement.setLong(5, lsb);
+        });
+    }
+
+    @Override
+    public int rankedCount() throws IOException {
+        return count(COUNT_RANKED, null);
+    }
+
+    @Override
+    public void changedSince(long epochMillis, BalanceStore.EntryConsumer consumer) throws IOException {
+        query(SELECT_CHANGED, statement -> statement.setLong(1, epochMillis), consumer);
+    }
+
+    @Override
+    public boolean isNew() {
+        return fresh;
+    }
+
+    @Override
+    public int importFrom(Source source) throws IOException {
+        long now = System.currentTimeMillis();
+        int[] imported = {0};
+        try {
+            // One transaction: an interrupted import is rolled back entirely
+            try (Statement statement = writeConnection.createStatement()) {
+                statement.executeUpdate("DELETE FROM balances");
+            }
+            source.forEach((msb, lsb, balance) -> {
+                try {
+                    addUpsert(msb, lsb, balance, now);
+                    if (++imported[0] % 1024 == 0) {
+                        upsert.executeBatch();
+                    }
+                } catch (SQLException e) {
+                    throw new UncheckedIOException(new IOException(e));
+                }
+            });
+            upsert.executeBatch();
+            markInitialized(now);
+            writeConnection.commit();
+        } catch (SQLException | UncheckedIOException | IOException e) {
+            rollbackQuietly();
+            if (e instanceof UncheckedIOException unchecked) throw unchecked.getCause();
+            if (e instanceof IOException io) throw io;
+            throw new IOException("Failed to import balances into " + path, e);
+        }
+        checkpoint();
+        fresh = false;
+        return imported[0];
+    }
+
+    // ==================== Journal target ====================
+
+    @Override
+    public void apply(long[] records, int longs) throws IOException {
+        long now = System.currentTimeMillis();
+        try {
+            for (int i = 0; i + 2 < longs; i += 3) {
+                addUpsert(records[i], records[i + 1], records[i + 2], now);
+            }
+            upsert.executeBatch();
+            if (fresh) {
+                markInitialized(now);
+                fresh = false;
+            }
+            writeConnection.commit();
+        } catch (SQLException e) {
+            rollbackQuietly();
+            throw new IOException("Failed to write balances to " + path, e);
+        }
+    }
+
+    @Override
+    public void checkpoint() throws IOException {
+        try (Statement statement = writeConnection.createStatement()) {
+            // FULL syncs the WAL and the database file, so the currency journal can be truncated
+            statement.execute("PRAGMA wal_checkpoint(FULL)");
+        } catch (SQLException e) {
+            throw new IOException("Failed to checkpoint " + path, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            checkpoint();
+        } finally {
+            synchronized (readConnection) {
+                closeQuietly(readConnection);
+            }
+            closeQuietly(writeConnection);
+        }
+    }
+
+    // ==================== Internals ====================
+
+    @FunctionalInterface
+    private interface Binder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    private void addUpsert(long msb, long lsb, long balance, long now) throws SQLException {
+        upsert.setLong(1, msb);
+        upsert.setLong(2, lsb);
+        upsert.setLong(3, balance);
+        upsert.setLong(4, now);
+        upsert.addBatch();
+    }
+
+    private void markInitialized(long now) throws SQLException {
+        try (PreparedStatement statement = writeConnection.prepareStatement(MARK_INITIALIZED)) {
+            statement.setString(1, Long.toString(now));
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Runs a query on the read connection. Rows are copied out first and the consumer is
+     * called after the connection is released, so it may call {@link #read}.
+     */
+    private void query(String sql, Binder binder, BalanceStore.EntryConsumer consumer) throws IOException {
+        long[] rows = new long[3 * 64];
+        int longs = 0;
+        synchronized (readConnection) {
+            try (PreparedStatement statement = readConnection.prepareStatement(sql)) {
+                if (binder != null) {
+                    binder.bind(statement);
+                }
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        if (longs + 3 > rows.length) {
+                            long[] grown = new long[rows.length * 2];
+                            System.arraycopy(rows, 0, grown, 0, longs);
+                            rows = grown;
+                        }
+                        rows[longs++] = result.getLong(1);
+                        rows[longs++] = result.getLong(2);
+                        rows[longs++] = result.getLong(3);
+                    }
+                }
+            } catch (SQLException e) {
+                throw new IOException("Failed to query " + path, e);
+            }
+        }
+        for (int i = 0; i < longs; i += 3) {
+            consumer.accept(rows[i], rows[i + 1], rows[i + 2]);
+        }
+    }
+
+    /**
+     * Runs a COUNT query on the read connection.
+     */
+    private int count(String sql, Binder binder) throws IOException {
+        synchronized (readConnection) {
+            try (PreparedStatement statement = readConnection.prepareStatement(sql)) {
+                if (binder != null) {
+                    binder.bind(statement);
+                }
+                try (ResultSet result = statement.executeQuery()) {
+                    return result.next() ? result.getInt(1) : 0;
+                }
+            } catch (SQLException e) {
+                throw new IOException("Failed to query " + path, e);
+            }
+        }
+    }
+
+    private void rollbackQuietly() {
+        try {
+            upsert.clearBatch();
+            writeConnection.rollback();
+        } catch (SQLException ignored) {
+            // The connection is unusable; the next commit will fail and report it
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Nothing left to do with a connection that cannot be closed
+        }
+    }
+}
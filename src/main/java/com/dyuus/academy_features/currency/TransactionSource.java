@@ -0,0 +1,44 @@
+package com.dyuus.academy_features.currency;
+
+/**
+ * What caused a PokéDollars balance change, as recorded in the audit log.
+ */
+public enum TransactionSource {
+    SHOP_BUY("Achat boutique"),
+    SHOP_SELL("Vente boutique"),
+    SHOP_REFUND("Remboursement boutique"),
+    PAY("Paiement"),
+    POKEDEX_REWARD("Récompense Pokédex"),
+    ADMIN_SET("Admin (défini)"),
+    ADMIN_ADD("Admin (ajout)"),
+    ADMIN_REMOVE("Admin (retrait)"),
+    OTHER("Autre");
+
+    private static final TransactionSource[] VALUES = values();
+
+    private final String label;
+
+    TransactionSource(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return The name shown to players in the transaction history
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    static TransactionSource byOrdinal(int ordinal) {
+        return ordinal >= 0 && ordinal < VALUES.length ? VALUES[ordinal] : OTHER;
+    }
+
+    static TransactionSource byName(String name) {
+        for (TransactionSource source : VALUES) {
+            if (source.name().equals(name)) {
+                return source;
+            }
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,15 @@
+package com.dyuus.academy_features.mixin;
+
+import net.minecraft.server.PlayerManager;
+import net.minecraft.server.network.ServerPlayerEntity;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Invoker;
+
+/**
+ * Exposes the saving of a single player's data.
+ */
+@Mixin(PlayerManager.class)
+public interface PlayerManagerInvoker {
+    @Invoker("savePlayerData")
+    void academy_features$savePlayerData(ServerPlayerEntity player);
+}
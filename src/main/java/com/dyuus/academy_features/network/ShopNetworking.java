@@ -1,8 +1,14 @@
 package com.dyuus.academy_features.network;
 
 import com.dyuus.academy_features.DyuusAcademyFeatures;
+import com.dyuus.academy_features.config.ShopCatalog;
+import com.dyuus.academy_features.config.ShopConfigManager;
+import com.dyuus.academy_features.config.ShopItem;
+import com.dyuus.academy_features.currency.CurrencyManager;
 import com.dyuus.academy_features.screen.ShopScreenHandler;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.minecraft.network.RegistryByteBuf;
 import net.minecraft.network.codec.PacketCodec;
@@ -10,47 +16,234 @@ import net.minecraft.network.packet.CustomPayload;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class ShopNetworking {
     public static final Identifier BUY_PACKET_ID = DyuusAcademyFeatures.id("buy_item");
     public static final Identifier SELL_PACKET_ID = DyuusAcademyFeatures.id("sell_item");
+    public static final Identifier CHECKOUT_PACKET_ID = DyuusAcademyFeatures.id("shop_checkout");
+    public static final Identifier CATALOG_REQUEST_PACKET_ID = DyuusAcademyFeatures.id("shop_catalog_request");
+    public static final Identifier CACHED_CATALOGS_PACKET_ID = DyuusAcademyFeatures.id("shop_cached_catalogs");
+    public static final Identifier CATALOG_PACKET_ID = DyuusAcademyFeatures.id("shop_catalog");
+    public static final Identifier PAGE_REQUEST_PACKET_ID = DyuusAcademyFeatures.id("shop_page_request");
+    public static final Identifier PAGE_PACKET_ID = DyuusAcademyFeatures.id("shop_page");
+    public static final Identifier TRANSACTION_RESULT_PACKET_ID = DyuusAcademyFeatures.id("shop_transaction_result");
+
+    // Maximum number of lines in a cart
+    public static final int MAX_CART_LINES = 64;
+
+    // Maximum number of quick mode requests a client keeps in flight, also the burst of
+    // purchases and sales the server accepts (see ShopRateLimiter)
+    public static final int MAX_IN_FLIGHT = 32;
+
+    // Maximum number of coalesced requests a transaction result may acknowledge
+    public static final int MAX_MERGED_RESULTS = 64;
+
+    // Maximum number of cached catalogs a client may report
+    public static final int MAX_CACHED_CATALOGS = 64;
+
+    // Catalog versions each online player's client is known to have cached
+    private static final Map<UUID, Set<Long>> knownCatalogs = new ConcurrentHashMap<>();
 
     public static void registerPackets() {
         PayloadTypeRegistry.playC2S().register(BuyPayload.ID, BuyPayload.CODEC);
         PayloadTypeRegistry.playC2S().register(SellPayload.ID, SellPayload.CODEC);
+        PayloadTypeRegistry.playC2S().register(CheckoutPayload.ID, CheckoutPayload.CODEC);
+        PayloadTypeRegistry.playC2S().register(CatalogRequestPayload.ID, CatalogRequestPayload.CODEC);
+        PayloadTypeRegistry.playC2S().register(CachedCatalogsPayload.ID, CachedCatalogsPayload.CODEC);
+        PayloadTypeRegistry.playC2S().register(PageRequestPayload.ID, PageRequestPayload.CODEC);
+        PayloadTypeRegistry.playS2C().register(CatalogPayload.ID, CatalogPayload.CODEC);
+        PayloadTypeRegistry.playS2C().register(PagePayload.ID, PagePayload.CODEC);
+        PayloadTypeRegistry.playS2C().register(TransactionResultPayload.ID, TransactionResultPayload.CODEC);
     }
 
     public static void registerServerReceivers() {
+        // Fabric API runs these handlers on the server thread, so nothing is handed over to it.
+        // Every request is throttled (see ShopRateLimiter) and transactions are pre-validated
+        // as they are received; purchases and sales are then queued and committed, coalesced,
+        // at the end of the tick, carts right away. Quick mode requests (seq != 0) are always
+        // acknowledged, even when dropped
         ServerPlayNetworking.registerGlobalReceiver(BuyPayload.ID, (payload, context) -> {
             ServerPlayerEntity player = context.player();
-            context.server().execute(() -> {
-                if (player.currentScreenHandler instanceof ShopScreenHandler shopHandler) {
-                    shopHandler.buyItem(player, payload.itemIndex(), payload.quantity());
-                }
-            });
+            ShopScreenHandler shopHandler = acceptTransaction(player, payload.seq());
+            if (shopHandler == null) return;
+
+            ShopScreenHandler.Prepared prepared = shopHandler.prepareBuy(player, payload.version(), payload.entryId(), payload.quantity(), payload.seq());
+            if (prepared != null) {
+                ShopRateLimiter.submit(player, prepared);
+            }
         });
 
         ServerPlayNetworking.registerGlobalReceiver(SellPayload.ID, (payload, context) -> {
             ServerPlayerEntity player = context.player();
-            context.server().execute(() -> {
-                if (player.currentScreenHandler instanceof ShopScreenHandler shopHandler) {
-                    shopHandler.sellItem(player, payload.itemIndex(), payload.quantity());
+            ShopScreenHandler shopHandler = acceptTransaction(player, payload.seq());
+            if (shopHandler == null) return;
+
+            ShopScreenHandler.Prepared prepared = shopHandler.prepareSell(player, payload.version(), payload.entryId(), payload.quantity(), payload.seq());
+            if (prepared != null) {
+                ShopRateLimiter.submit(player, prepared);
+            }
+        });
+
+        ServerPlayNetworking.registerGlobalReceiver(CheckoutPayload.ID, (payload, context) -> {
+            ServerPlayerEntity player = context.player();
+            ShopScreenHandler shopHandler = acceptTransaction(player, payload.seq());
+            if (shopHandler == null) return;
+
+            ShopScreenHandler.PreparedCart cart = shopHandler.prepareCheckout(player, payload.version(), payload.lines(), payload.seq());
+            if (cart != null) {
+                ShopScreenHandler.commitCheckout(player, cart);
+            }
+        });
+
+        // The client opened a shop whose catalog it does not have cached
+        ServerPlayNetworking.registerGlobalReceiver(CatalogRequestPayload.ID, (payload, context) -> {
+            ServerPlayerEntity player = context.player();
+            if (!ShopRateLimiter.tryAcquire(player, ShopRateLimiter.Kind.CATALOG)) return;
+            sendCatalog(player, payload.shopId(), payload.version());
+        });
+
+        // The client reports the catalogs it kept from previous sessions
+        ServerPlayNetworking.registerGlobalReceiver(CachedCatalogsPayload.ID, (payload, context) -> {
+            ServerPlayerEntity player = context.player();
+            if (!ShopRateLimiter.tryAcquire(player, ShopRateLimiter.Kind.CATALOG)) return;
+            Set<Long> current = ShopConfigManager.getCatalogVersions();
+            Set<Long> known = knownCatalogs.computeIfAbsent(player.getUuid(), uuid -> ConcurrentHashMap.newKeySet());
+            for (long version : payload.versions()) {
+                if (current.contains(version)) {
+                    known.add(version);
                 }
-            });
+            }
+        });
+
+        // The client needs another page of a catalog sent page by page
+        ServerPlayNetworking.registerGlobalReceiver(PageRequestPayload.ID, (payload, context) -> {
+            ServerPlayerEntity player = context.player();
+            if (!ShopRateLimiter.tryAcquire(player, ShopRateLimiter.Kind.CATALOG)) return;
+            sendPage(player, payload.version(), payload.page());
         });
+
+        ServerTickEvents.END_SERVER_TICK.register(server -> ShopRateLimiter.commitPending());
+
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            knownCatalogs.remove(handler.getPlayer().getUuid());
+            ShopRateLimiter.remove(handler.getPlayer().getUuid());
+        });
+    }
+
+    // ==================== Transactions ====================
+
+    /**
+     * Throttles a transaction request and finds the shop screen it is for.
+     *
+     * @param seq The request's sequence number, 0 if it is not a quick mode request
+     * @return The player's open shop screen handler, or null if the request was dropped
+     */
+    private static ShopScreenHandler acceptTransaction(ServerPlayerEntity player, int seq) {
+        TransactionResultPayload.Status rejection;
+        if (!ShopRateLimiter.tryAcquire(player, ShopRateLimiter.Kind.ACTION)) {
+            rejection = TransactionResultPayload.Status.THROTTLED;
+        } else if (!(player.currentScreenHandler instanceof ShopScreenHandler shopHandler)) {
+            rejection = TransactionResultPayload.Status.CLOSED;
+        } else {
+            return shopHandler;
+        }
+        if (seq != 0) {
+            sendResult(player, new int[]{seq}, rejection, 0);
+        }
+        return null;
+    }
+
+    /**
+     * Acknowledges quick mode requests, with the player's balance after them.
+     *
+     * @param seqs Sequence numbers of the requests, several when they were coalesced
+     * @param status The outcome
+     * @param delta Change of the balance caused by the requests
+     */
+    public static void sendResult(ServerPlayerEntity player, int[] seqs, TransactionResultPayload.Status status, long delta) {
+        if (seqs.length == 0) return;
+        ServerPlayNetworking.send(player, new TransactionResultPayload(seqs[seqs.length - 1], status,
+                CurrencyManager.getBalance(player), delta, Arrays.copyOf(seqs, seqs.length - 1)));
+    }
+
+    // ==================== Catalog cache ====================
+
+    /**
+     * @return Whether a player's client is known to have a catalog version cached
+     */
+    public static boolean hasCatalog(ServerPlayerEntity player, long version) {
+        Set<Long> known = knownCatalogs.get(player.getUuid());
+        return known != null && known.contains(version);
     }
 
-    public record BuyPayload(int itemIndex, int quantity) implements CustomPayload {
+    /**
+     * Records that a player's client receives a catalog version, which it will cache.
+     */
+    public static void markCatalogSent(ServerPlayerEntity player, long version) {
+        knownCatalogs.computeIfAbsent(player.getUuid(), uuid -> ConcurrentHashMap.newKeySet()).add(version);
+    }
+
+    /**
+     * Sends a catalog the client is missing: the one of its open shop screen if it matches
+     * (it may predate a reload), the shop's current one otherwise.
+     */
+    private static void sendCatalog(ServerPlayerEntity player, String shopId, long version) {
+        ShopCatalog catalog = null;
+        if (player.currentScreenHandler instanceof ShopScreenHandler shopHandler
+                && shopHandler.getCatalog() != null
+                && shopHandler.getCatalog().version() == version) {
+            catalog = shopHandler.getCatalog();
+        } else {
+            ShopCatalog current = ShopConfigManager.getCatalog(shopId);
+            if (current != null && current.version() == version) {
+                catalog = current;
+            }
+        }
+        if (catalog == null) return;
+
+        markCatalogSent(player, version);
+        ServerPlayNetworking.send(player, new CatalogPayload(catalog));
+    }
+
+    /**
+     * Sends a page of the catalog of the player's open shop screen.
+     */
+    private static void sendPage(ServerPlayerEntity player, long version, int page) {
+        if (!(player.currentScreenHandler instanceof ShopScreenHandler shopHandler)) return;
+        ShopCatalog catalog = shopHandler.getCatalog();
+        if (catalog == null || catalog.version() != version) return;
+
+        int from = page * ShopScreenHandler.ITEMS_PER_PAGE;
+        if (page < 0 || from >= catalog.items().size()) return;
+        ServerPlayNetworking.send(player, new PagePayload(catalog, page));
+    }
+
+    /**
+     * @param version The catalog version the client saw
+     * @param entryId The item's {@link ShopItem#entryId}
+     * @param seq Sequence number of a quick mode request, 0 for a chat reply instead of a result
+     */
+    public record BuyPayload(long version, int entryId, int quantity, int seq) implements CustomPayload {
         public static final Id<BuyPayload> ID = new Id<>(BUY_PACKET_ID);
         public static final PacketCodec<RegistryByteBuf, BuyPayload> CODEC = new PacketCodec<>() {
             @Override
             public BuyPayload decode(RegistryByteBuf buf) {
-                return new BuyPayload(buf.readInt(), buf.readInt());
+                return new BuyPayload(buf.readLong(), buf.readInt(), buf.readInt(), buf.readVarInt());
             }
 
             @Override
             public void encode(RegistryByteBuf buf, BuyPayload value) {
-                buf.writeInt(value.itemIndex);
+                buf.writeLong(value.version);
+                buf.writeInt(value.entryId);
                 buf.writeInt(value.quantity);
+                buf.writeVarInt(value.seq);
             }
         };
 
@@ -60,18 +253,124 @@ public class ShopNetworking {
         }
     }
 
-    public record SellPayload(int itemIndex, int quantity) implements CustomPayload {
+    /**
+     * @param version The catalog version the client saw
+     * @param entryId The item's {@link ShopItem#entryId}
+     * @param seq Sequence number of a quick mode request, 0 for a chat reply instead of a result
+     */
+    public record SellPayload(long version, int entryId, int quantity, int seq) implements CustomPayload {
         public static final Id<SellPayload> ID = new Id<>(SELL_PACKET_ID);
         public static final PacketCodec<RegistryByteBuf, SellPayload> CODEC = new PacketCodec<>() {
             @Override
             public SellPayload decode(RegistryByteBuf buf) {
-                return new SellPayload(buf.readInt(), buf.readInt());
+                return new SellPayload(buf.readLong(), buf.readInt(), buf.readInt(), buf.readVarInt());
             }
 
             @Override
             public void encode(RegistryByteBuf buf, SellPayload value) {
-                buf.writeInt(value.itemIndex);
+                buf.writeLong(value.version);
+                buf.writeInt(value.entryId);
                 buf.writeInt(value.quantity);
+                buf.writeVarInt(value.seq);
+            }
+        };
+
+        @Override
+        public Id<? extends CustomPayload> getId() {
+            return ID;
+        }
+    }
+
+    /**
+     * A whole cart, bought at once.
+     *
+     * @param version The catalog version the client saw
+     * @param lines The cart's lines (at most {@link #MAX_CART_LINES})
+     * @param seq Sequence number of a quick mode request, 0 for a chat reply instead of a result
+     */
+    public record CheckoutPayload(long version, List<Line> lines, int seq) implements CustomPayload {
+        public static final Id<CheckoutPayload> ID = new Id<>(CHECKOUT_PACKET_ID);
+        public static final PacketCodec<RegistryByteBuf, CheckoutPayload> CODEC = new PacketCodec<>() {
+            @Override
+            public CheckoutPayload decode(RegistryByteBuf buf) {
+                long version = buf.readLong();
+                int size = buf.readVarInt();
+                if (size < 0 || size > MAX_CART_LINES) {
+                    throw new IllegalArgumentException("Too many cart lines: " + size);
+                }
+                List<Line> lines = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    lines.add(new Line(buf.readInt(), buf.readVarInt()));
+                }
+                return new CheckoutPayload(version, lines, buf.readVarInt());
+            }
+
+            @Override
+            public void encode(RegistryByteBuf buf, CheckoutPayload value) {
+                buf.writeLong(value.version);
+                buf.writeVarInt(value.lines.size());
+                for (Line line : value.lines) {
+                    buf.writeInt(line.entryId);
+                    buf.writeVarInt(line.quantity);
+                }
+                buf.writeVarInt(value.seq);
+            }
+        };
+
+        /**
+         * @param entryId The item's {@link ShopItem#entryId}
+         * @param quantity Number of items to buy
+         */
+        public record Line(int entryId, int quantity) {
+        }
+
+        @Override
+        public Id<? extends CustomPayload> getId() {
+            return ID;
+        }
+    }
+
+    public record CatalogRequestPayload(String shopId, long version) implements CustomPayload {
+        public static final Id<CatalogRequestPayload> ID = new Id<>(CATALOG_REQUEST_PACKET_ID);
+        public static final PacketCodec<RegistryByteBuf, CatalogRequestPayload> CODEC = new PacketCodec<>() {
+            @Override
+            public CatalogRequestPayload decode(RegistryByteBuf buf) {
+                return new CatalogRequestPayload(buf.readString(), buf.readLong());
+            }
+
+            @Override
+            public void encode(RegistryByteBuf buf, CatalogRequestPayload value) {
+                buf.writeString(value.shopId);
+                buf.writeLong(value.version);
+            }
+        };
+
+        @Override
+        public Id<? extends CustomPayload> getId() {
+            return ID;
+        }
+    }
+
+    public record CachedCatalogsPayload(long[] versions) implements CustomPayload {
+        public static final Id<CachedCatalogsPayload> ID = new Id<>(CACHED_CATALOGS_PACKET_ID);
+        public static final PacketCodec<RegistryByteBuf, CachedCatalogsPayload> CODEC = new PacketCodec<>() {
+            @Override
+            public CachedCatalogsPayload decode(RegistryByteBuf buf) {
+                int size = Math.min(buf.readVarInt(), MAX_CACHED_CATALOGS);
+                long[] versions = new long[size];
+                for (int i = 0; i < size; i++) {
+                    versions[i] = buf.readLong();
+                }
+                return new CachedCatalogsPayload(versions);
+            }
+
+            @Override
+            public void encode(RegistryByteBuf buf, CachedCatalogsPayload value) {
+                int size = Math.min(value.versions.length, MAX_CACHED_CATALOGS);
+                buf.writeVarInt(size);
+                for (int i = 0; i < size; i++) {
+                    buf.writeLong(value.versions[i]);
+                }
             }
         };
 
@@ -80,4 +379,151 @@ public class ShopNetworking {
             return ID;
         }
     }
+
+    public record CatalogPayload(ShopCatalog catalog) implements CustomPayload {
+        public static final Id<CatalogPayload> ID = new Id<>(CATALOG_PACKET_ID);
+        public static final PacketCodec<RegistryByteBuf, CatalogPayload> CODEC = new PacketCodec<>() {
+            @Override
+            public CatalogPayload decode(RegistryByteBuf buf) {
+                String shopId = buf.readString();
+                long version = buf.readLong();
+                return new CatalogPayload(ShopCatalog.read(buf, shopId, version));
+            }
+
+            @Override
+            public void encode(RegistryByteBuf buf, CatalogPayload value) {
+                buf.writeString(value.catalog.shopId() != null ? value.catalog.shopId() : "");
+                buf.writeLong(value.catalog.version());
+                value.catalog.write(buf);
+            }
+        };
+
+        @Override
+        public Id<? extends CustomPayload> getId() {
+            return ID;
+        }
+    }
+
+    public record PageRequestPayload(long version, int page) implements CustomPayload {
+        public static final Id<PageRequestPayload> ID = new Id<>(PAGE_REQUEST_PACKET_ID);
+        public static final PacketCodec<RegistryByteBuf, PageRequestPayload> CODEC = new PacketCodec<>() {
+            @Override
+            public PageRequestPayload decode(RegistryByteBuf buf) {
+                return new PageRequestPayload(buf.readLong(), buf.readVarInt());
+            }
+
+            @Override
+            public void encode(RegistryByteBuf buf, PageRequestPayload value) {
+                buf.writeLong(value.version);
+                buf.writeVarInt(value.page);
+            }
+        };
+
+        @Override
+        public Id<? extends CustomPayload> getId() {
+            return ID;
+        }
+    }
+
+    /**
+     * A page of a catalog. Written from the server's catalog, read as the page's items.
+     */
+    public record PagePayload(long version, int page, ShopCatalog catalog, List<ShopItem> items) implements CustomPayload {
+        public static final Id<PagePayload> ID = new Id<>(PAGE_PACKET_ID);
+        public static final PacketCodec<RegistryByteBuf, PagePayload> CODEC = new PacketCodec<>() {
+            @Override
+            public PagePayload decode(RegistryByteBuf buf) {
+                long version = buf.readLong();
+                int page = buf.readVarInt();
+                return new PagePayload(version, page, null, ShopCatalog.readItems(buf));
+            }
+
+            @Override
+            public void encode(RegistryByteBuf buf, PagePayload value) {
+                int from = value.page * ShopScreenHandler.ITEMS_PER_PAGE;
+                int to = Math.min(from + ShopScreenHandler.ITEMS_PER_PAGE, value.catalog.items().size());
+                buf.writeLong(value.version);
+                buf.writeVarInt(value.page);
+                value.catalog.writeItems(buf, from, to);
+            }
+        };
+
+        public PagePayload(ShopCatalog catalog, int page) {
+            this(catalog.version(), page, catalog, List.of());
+        }
+
+        @Override
+        public Id<? extends CustomPayload> getId() {
+            return ID;
+        }
+    }
+
+    /**
+     * Acknowledgement of quick mode requests.
+     *
+     * @param seq Sequence number of the request
+     * @param status The outcome
+     * @param balance The player's balance after the request
+     * @param delta Change of the balance caused by the request
+     * @param merged Sequence numbers of earlier requests coalesced with this one, which share its outcome
+     */
+    public record TransactionResultPayload(int seq, Status status, long balance, long delta, int[] merged) implements CustomPayload {
+        public static final Id<TransactionResultPayload> ID = new Id<>(TRANSACTION_RESULT_PACKET_ID);
+        public static final PacketCodec<RegistryByteBuf, TransactionResultPayload> CODEC = new PacketCodec<>() {
+            @Override
+            public TransactionResultPayload decode(RegistryByteBuf buf) {
+                int seq = buf.readVarInt();
+                Status status = buf.readEnumConstant(Status.class);
+                long balance = buf.readVarLong();
+                // Zigzag-encoded, purchases are negative
+                long zigzag = buf.readVarLong();
+                long delta = (zigzag >>> 1) ^ -(zigzag & 1);
+                int size = buf.readVarInt();
+                if (size < 0 || size > MAX_MERGED_RESULTS) {
+                    throw new IllegalArgumentException("Too many merged results: " + size);
+                }
+                int[] merged = new int[size];
+                for (int i = 0; i < size; i++) {
+                    merged[i] = buf.readVarInt();
+                }
+                return new TransactionResultPayload(seq, status, balance, delta, merged);
+            }
+
+            @Override
+            public void encode(RegistryByteBuf buf, TransactionResultPayload value) {
+                buf.writeVarInt(value.seq);
+                buf.writeEnumConstant(value.status);
+                buf.writeVarLong(value.balance);
+                buf.writeVarLong((value.delta << 1) ^ (value.delta >> 63));
+                buf.writeVarInt(value.merged.length);
+                for (int seq : value.merged) {
+                    buf.writeVarInt(seq);
+                }
+            }
+        };
+
+        /**
+         * Outcome of a request.
+         */
+        public enum Status {
+            OK,
+            INSUFFICIENT_FUNDS,
+            INVENTORY_FULL,
+            NOT_ENOUGH_ITEMS,
+            // The item cannot be bought or sold
+            UNAVAILABLE,
+            // The shop was reloaded since the screen opened
+            CATALOG_CHANGED,
+            // Dropped by the rate limiter
+            THROTTLED,
+            // The shop screen was closed
+            CLOSED,
+            INVALID
+        }
+
+        @Override
+        public Id<? extends CustomPayload> getId() {
+            return ID;
+        }
+    }
 }
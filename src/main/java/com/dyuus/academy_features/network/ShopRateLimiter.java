@@ -0,0 +1,268 @@
+package com.dyuus.academy_features.network;
+
+import com.dyuus.academy_features.DyuusAcademyFeatures;
+import com.dyuus.academy_features.config.ShopItem;
+import com.dyuus.academy_features.screen.ShopScreenHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-player throttling of shop packets, applied as each packet is received, before the
+ * request it carries is looked at.
+ *
+ * Each player has two token buckets: one for purchases and sales, one for catalog
+ * downloads. A packet taking a token from an empty bucket is dropped and counted. Buy and
+ * sell requests that passed pre-validation are also coalesced: they are queued until the
+ * end of the tick, and those for the same item received during the tick are summed into a
+ * single operation. Quick mode requests are only merged with each other, and the
+ * operation's result acknowledges all of them.
+ *
+ * Fabric API delivers play packets on the server thread, so everything here runs on it
+ * apart from the statistics, which commands may read from anywhere.
+ */
+public class ShopRateLimiter {
+    // Purchases and sales: bursts of as many requests as quick mode keeps in flight, then
+    // 5 per second. Clients pace their quick mode requests with the same bucket
+    private static final int ACTION_CAPACITY = ShopNetworking.MAX_IN_FLIGHT;
+    private static final double ACTION_REFILL_PER_SECOND = 5;
+
+    // Catalog and page requests: bursts of 64, then 32 per second
+    private static final int CATALOG_CAPACITY = 64;
+    private static final double CATALOG_REFILL_PER_SECOND = 32;
+
+    // Coalesced requests never exceed what a single click can ask for
+    private static final int MAX_COALESCED_QUANTITY = 64;
+
+    // Minimum delay between two warnings about the same player
+    private static final long WARN_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final Map<UUID, PlayerState> players = new ConcurrentHashMap<>();
+    private static final LongAdder totalDropped = new LongAdder();
+    // Players with operations queued for the end of the tick (server thread only)
+    private static final List<PlayerState> scheduled = new ArrayList<>();
+
+    /**
+     * Kind of throttled packet, each with its own bucket.
+     */
+    public enum Kind {
+        ACTION,
+        CATALOG
+    }
+
+    // ==================== Throttling ====================
+
+    /**
+     * Takes a token for a packet from one of the player's buckets.
+     *
+     * @return true if the packet may be handled, false if it must be dropped
+     */
+    public static boolean tryAcquire(ServerPlayerEntity player, Kind kind) {
+        PlayerState state = state(player);
+        TokenBucket bucket = kind == Kind.ACTION ? state.actions : state.catalog;
+        if (bucket.tryAcquire()) return true;
+
+        totalDropped.increment();
+        state.dropped.increment();
+        state.droppedSinceWarn++;
+        long now = System.nanoTime();
+        if (now - state.lastWarn >= WARN_INTERVAL_NANOS || state.lastWarn == 0) {
+            state.lastWarn = now;
+            DyuusAcademyFeatures.LOGGER.warn("Throttled shop packets from {}: {} dropped since last warning ({} in total)",
+                    player.getName().getString(), state.droppedSinceWarn, state.dropped.sum());
+            state.droppedSinceWarn = 0;
+        }
+        return false;
+    }
+
+    /**
+     * @return A bucket with the limits of {@link Kind#ACTION} packets, for a client to send
+     * no more than the server accepts
+     */
+    static TokenBucket newActionBucket() {
+        return new TokenBucket(ACTION_CAPACITY, ACTION_REFILL_PER_SECOND);
+    }
+
+    // ==================== Coalescing ====================
+
+    /**
+     * Queues a pre-validated buy or sell request until the end of the tick, merged with
+     * queued requests for the same item.
+     *
+     * @param player The requesting player
+     * @param prepared The request
+     */
+    public static void submit(ServerPlayerEntity player, ShopScreenHandler.Prepared prepared) {
+        PlayerState state = state(player);
+        PendingOperation merged = null;
+        for (PendingOperation operation : state.pending) {
+            if (operation.handler == prepared.handler() && operation.item == prepared.item()
+                    && operation.buy == prepared.buy() && operation.canMerge(prepared)) {
+                merged = operation;
+                break;
+            }
+        }
+        if (merged != null) {
+            merged.merge(prepared);
+        } else {
+            state.pending.add(new PendingOperation(prepared));
+        }
+
+        // The player entity changes on respawn: commit for the latest one
+        state.player = player;
+        if (!state.scheduled) {
+            state.scheduled = true;
+            scheduled.add(state);
+        }
+    }
+
+    /**
+     * Commits the operations queued during the tick, in the order they were received.
+     * Called at the end of every server tick.
+     */
+    public static void commitPending() {
+        if (scheduled.isEmpty()) return;
+        for (PlayerState state : scheduled) {
+            state.scheduled = false;
+            for (PendingOperation operation : state.pending) {
+                ShopScreenHandler.commit(state.player, new ShopScreenHandler.Prepared(
+                        operation.handler, operation.item, operation.buy, operation.quantity, operation.seqs));
+            }
+            state.pending.clear();
+        }
+        scheduled.clear();
+    }
+
+    // ==================== Statistics ====================
+
+    /**
+     * @return Number of shop packets dropped since the server started
+     */
+    public static long getTotalDropped() {
+        return totalDropped.sum();
+    }
+
+    /**
+     * @return Online players' names with the number of packets dropped for them, most first
+     */
+    public static Map<String, Long> getDroppedByPlayer() {
+        List<PlayerState> states = new ArrayList<>(players.values());
+        states.removeIf(state -> state.dropped.sum() == 0);
+        states.sort((a, b) -> Long.compare(b.dropped.sum(), a.dropped.sum()));
+
+        Map<String, Long> dropped = new LinkedHashMap<>();
+        for (PlayerState state : states) {
+            dropped.put(state.name, state.dropped.sum());
+        }
+        return dropped;
+    }
+
+    /**
+     * Forgets a player's state when they disconnect, along with the operations they queued.
+     */
+    public static void remove(UUID uuid) {
+        PlayerState state = players.remove(uuid);
+        if (state != null) {
+            state.pending.clear();
+        }
+    }
+
+    private static PlayerState state(ServerPlayerEntity player) {
+        return players.computeIfAbsent(player.getUuid(), uuid -> new PlayerState(player.getName().getString()));
+    }
+
+    // ==================== Internals ====================
+
+    private static class PlayerState {
+        final String name;
+        final TokenBucket actions = newActionBucket();
+        final TokenBucket catalog = new TokenBucket(CATALOG_CAPACITY, CATALOG_REFILL_PER_SECOND);
+        final LongAdder dropped = new LongAdder();
+
+        // Server thread only
+        long droppedSinceWarn;
+        long lastWarn;
+        final List<PendingOperation> pending = new ArrayList<>();
+        boolean scheduled;
+        ServerPlayerEntity player;
+
+        PlayerState(String name) {
+            this.name = Objects.requireNonNull(name);
+        }
+    }
+
+    private static class PendingOperation {
+        final ShopScreenHandler handler;
+        final ShopItem item;
+        final boolean buy;
+        int quantity;
+        // Sequence numbers of the merged quick mode requests, in order
+        int[] seqs;
+
+        PendingOperation(ShopScreenHandler.Prepared prepared) {
+            this.handler = prepared.handler();
+            this.item = prepared.item();
+            this.buy = prepared.buy();
+            this.quantity = prepared.quantity();
+            this.seqs = prepared.seqs();
+        }
+
+        boolean canMerge(ShopScreenHandler.Prepared prepared) {
+            // Quick mode requests get results, the others chat messages: never mix them
+            if ((seqs.length == 0) != (prepared.seqs().length == 0)) return false;
+            if (seqs.length + prepared.seqs().length > ShopNetworking.MAX_MERGED_RESULTS) return false;
+
+            // Selling as many as possible absorbs any other sale of the item
+            int other = prepared.quantity();
+            if (quantity == -1 || other == -1) return !buy;
+            if (quantity + other > MAX_COALESCED_QUANTITY) return false;
+            // Each request's cost was checked alone; the merged one must still fit an int
+            return !buy || (long) item.buyPrice * (quantity + other) <= Integer.MAX_VALUE;
+        }
+
+        void merge(ShopScreenHandler.Prepared prepared) {
+            int other = prepared.quantity();
+            quantity = quantity == -1 || other == -1 ? -1 : quantity + other;
+            if (prepared.seqs().length > 0) {
+                int[] merged = Arrays.copyOf(seqs, seqs.length + prepared.seqs().length);
+                System.arraycopy(prepared.seqs(), 0, merged, seqs.length, prepared.seqs().length);
+                seqs = merged;
+            }
+        }
+    }
+
+    /**
+     * Token bucket refilled continuously from the elapsed time.
+     */
+    static class TokenBucket {
+        private final double capacity;
+        private final double refillPerNano;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(int capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerNano = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        boolean tryAcquire() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+            lastRefill = now;
+            if (tokens < 1) return false;
+            tokens -= 1;
+            return true;
+        }
+    }
+}
@@ -1,38 +1,68 @@
 package com.dyuus.academy_features.screen;
 
 import com.dyuus.academy_features.DyuusAcademyFeatures;
+import com.dyuus.academy_features.config.ShopCatalog;
 import com.dyuus.academy_features.config.ShopConfig;
 import com.dyuus.academy_features.config.ShopConfigManager;
 import com.dyuus.academy_features.config.ShopItem;
 import com.dyuus.academy_features.currency.CurrencyManager;
+import com.dyuus.academy_features.currency.TransactionSource;
+import com.dyuus.academy_features.network.ShopNetworking;
+import com.dyuus.academy_features.network.ShopNetworking.TransactionResultPayload.Status;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.player.PlayerInventory;
-import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.network.RegistryByteBuf;
 import net.minecraft.network.codec.PacketCodec;
-import net.minecraft.registry.Registries;
 import net.minecraft.screen.ScreenHandler;
 import net.minecraft.screen.slot.Slot;
 import net.minecraft.screen.slot.SlotActionType;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
 import net.minecraft.util.Formatting;
-import net.minecraft.util.Identifier;
 
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class ShopScreenHandler extends ScreenHandler {
-    private static final int ITEMS_PER_PAGE = 27; // 9x3 grid
+    public static final int ITEMS_PER_PAGE = 27; // 9x3 grid
+    // Catalogs with more items are sent page by page
+    public static final int PAGED_THRESHOLD = 10 * ITEMS_PER_PAGE;
+    // Slots of the player's main inventory, hotbar included
+    public static final int INVENTORY_SLOTS = 36;
+    // Most of one item a cart can hold (a full inventory of 64-stacks)
+    public static final int MAX_CART_QUANTITY = INVENTORY_SLOTS * 64;
+
     private final Data data;
+    // Null on the client until the catalog is found in its cache or downloaded
+    private ShopCatalog catalog;
+    // Client only, paged delivery: items by index, null until their page is received
+    private ShopItem[] pagedItems;
+    private boolean[] receivedPages;
+    private boolean[] requestedPages;
+    // Client only: changes whenever the catalog is set or a page is received
+    private int contentRevision;
+    // Client only: the player's balance, predicted while quick mode transactions are in flight
+    private long balance;
     private int currentPage = 0;
 
     public ShopScreenHandler(int syncId, PlayerInventory playerInventory, Data data) {
         super(DyuusAcademyFeatures.SHOP_SCREEN_HANDLER, syncId);
         this.data = data;
+        this.catalog = data.catalog();
+        this.balance = data.balance();
+        if (data.delivery() == Delivery.PAGED && catalog == null) {
+            int pages = Math.max(1, (data.itemCount() + ITEMS_PER_PAGE - 1) / ITEMS_PER_PAGE);
+            this.pagedItems = new ShopItem[data.itemCount()];
+            this.receivedPages = new boolean[pages];
+            this.requestedPages = new boolean[pages];
+            requestedPages[0] = true;
+            acceptPage(0, data.firstPage());
+        }
 
         // Add player inventory slots
         // Main inventory (3 rows of 9 slots)
@@ -67,11 +97,134 @@ public class ShopScreenHandler extends ScreenHandler {
     }
 
     public List<ShopItem> getItems() {
-        return data.items;
+        return catalog != null ? catalog.items() : List.of();
+    }
+
+    /**
+     * @return Number of items in the shop, including those whose page was not received yet
+     */
+    public int getItemCount() {
+        if (catalog != null) return catalog.items().size();
+        return pagedItems != null ? pagedItems.length : 0;
+    }
+
+    /**
+     * @return The item at an index, or null if its page was not received yet
+     */
+    public ShopItem getItem(int index) {
+        if (catalog != null) return catalog.items().get(index);
+        return pagedItems != null ? pagedItems[index] : null;
     }
 
     public String getShopTitle() {
-        return data.shopTitle;
+        return data.title();
+    }
+
+    public Data getData() {
+        return data;
+    }
+
+    /**
+     * @return On the client, the player's balance as last known
+     */
+    public long getBalance() {
+        return balance;
+    }
+
+    /**
+     * Updates the client's view of the player's balance, e.g. after quick mode transactions.
+     */
+    public void setBalance(long balance) {
+        this.balance = balance;
+    }
+
+    /**
+     * @return The shop's catalog, or null on the client while it is being downloaded
+     */
+    public ShopCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Sets the catalog once the client has found it in its cache or downloaded it.
+     */
+    public void setCatalog(ShopCatalog catalog) {
+        this.catalog = catalog;
+        this.contentRevision++;
+        this.pagedItems = null;
+        this.receivedPages = null;
+        this.requestedPages = null;
+    }
+
+    /**
+     * @return A counter that changes whenever the items shown by the screen change
+     */
+    public int getContentRevision() {
+        return contentRevision;
+    }
+
+    // ==================== Paged delivery (client) ====================
+
+    /**
+     * @return Whether the items are still being received page by page
+     */
+    public boolean isPaged() {
+        return catalog == null && pagedItems != null;
+    }
+
+    public boolean isPageReceived(int page) {
+        return !isPaged() || (page >= 0 && page < receivedPages.length && receivedPages[page]);
+    }
+
+    /**
+     * Marks a page as requested.
+     *
+     * @return true if it still had to be requested
+     */
+    public boolean markPageRequested(int page) {
+        if (!isPaged() || page < 0 || page >= requestedPages.length || requestedPages[page]) return false;
+        requestedPages[page] = true;
+        return true;
+    }
+
+    /**
+     * @return Number of pages requested but not received yet
+     */
+    public int getPagesInFlight() {
+        if (!isPaged()) return 0;
+        int inFlight = 0;
+        for (int page = 0; page < requestedPages.length; page++) {
+            if (requestedPages[page] && !receivedPages[page]) inFlight++;
+        }
+        return inFlight;
+    }
+
+    /**
+     * Stores a received page.
+     *
+     * @return true if every page has now been received
+     */
+    public boolean acceptPage(int page, List<ShopItem> items) {
+        if (!isPaged() || page < 0 || page >= receivedPages.length || receivedPages[page]) return false;
+        int start = page * ITEMS_PER_PAGE;
+        int count = Math.min(items.size(), Math.min(ITEMS_PER_PAGE, pagedItems.length - start));
+        for (int i = 0; i < count; i++) {
+            pagedItems[start + i] = items.get(i);
+        }
+        receivedPages[page] = true;
+        contentRevision++;
+
+        for (boolean received : receivedPages) {
+            if (!received) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Every item, once all pages have been received
+     */
+    public List<ShopItem> getReceivedItems() {
+        return pagedItems != null ? List.of(pagedItems) : getItems();
     }
 
     public int getCurrentPage() {
@@ -79,236 +232,568 @@ public class ShopScreenHandler extends ScreenHandler {
     }
 
     public void setCurrentPage(int page) {
-        int maxPage = Math.max(0, (data.items.size() + ITEMS_PER_PAGE - 1) / ITEMS_PER_PAGE - 1);
+        int maxPage = Math.max(0, (getItemCount() + ITEMS_PER_PAGE - 1) / ITEMS_PER_PAGE - 1);
         this.currentPage = Math.max(0, Math.min(page, maxPage));
     }
 
     public int getTotalPages() {
-        if (data.items.isEmpty()) return 1;
-        return (data.items.size() + ITEMS_PER_PAGE - 1) / ITEMS_PER_PAGE;
+        if (getItemCount() == 0) return 1;
+        return (getItemCount() + ITEMS_PER_PAGE - 1) / ITEMS_PER_PAGE;
     }
 
-    // Server-side method to buy an item
-    public boolean buyItem(ServerPlayerEntity player, int itemIndex, int quantity) {
-        if (itemIndex < 0 || itemIndex >= data.items.size()) return false;
+    // ==================== Transactions ====================
+    // Each transaction is split in two stages, both on the server thread (where Fabric API
+    // delivers the packets):
+    // - prepare*: checks run as the packet is received (request sanity, catalog lookup,
+    //   price math, balance), which reject impossible requests before they are queued;
+    // - commit*: the part that touches the inventory and balance; at the end of the tick for
+    //   purchases and sales, once coalesced (see ShopRateLimiter), right away for carts.
+    // Outcomes are reported as chat messages, built only when sent, in commit order, for
+    // requests sent with sequence number 0, and as TransactionResultPayloads for quick mode
+    // requests (see report()).
+
+    private static final int[] NO_SEQS = new int[0];
+
+    /**
+     * A buy or sell request that passed pre-validation.
+     *
+     * @param handler The screen it was validated against
+     * @param item The requested item
+     * @param buy true for a purchase, false for a sale
+     * @param quantity Requested quantity (-1 to sell as many as possible)
+     * @param seqs Sequence numbers of the quick mode requests it answers (empty otherwise)
+     */
+    public record Prepared(ShopScreenHandler handler, ShopItem item, boolean buy, int quantity, int[] seqs) {
+    }
+
+    /**
+     * A cart that passed pre-validation.
+     *
+     * @param handler The screen it was validated against
+     * @param quantities Quantity of each item, merged across lines
+     * @param stacks Stacks to give
+     * @param totalCost Total price
+     * @param totalQuantity Total number of items
+     * @param seqs Sequence number of the quick mode request (empty otherwise)
+     */
+    public record PreparedCart(ShopScreenHandler handler, Map<ShopItem, Integer> quantities, List<ItemStack> stacks,
+                               int totalCost, int totalQuantity, int[] seqs) {
+    }
+
+    /**
+     * Resolves an item requested by the client, from the shop's current catalog: a screen
+     * left open across a reload must not trade at the prices it was opened with.
+     *
+     * @param version The catalog version the client saw
+     * @param entryId The item's entry ID
+     * @return The item, or null if the request does not match the shop's current catalog
+     */
+    private ShopItem resolveItem(ServerPlayerEntity player, long version, int entryId, int[] seqs) {
+        ShopCatalog current = ShopConfigManager.getCatalog(data.shopId());
+        int index = resolveIndex(catalog, current, version, entryId);
+        if (index < 0) {
+            report(player, seqs, Status.CATALOG_CHANGED, 0,
+                    () -> Text.literal("Cette boutique a changé, veuillez la rouvrir").formatted(Formatting.RED));
+            return null;
+        }
+        return current.items().get(index);
+    }
 
-        ShopItem shopItem = data.items.get(itemIndex);
-        int totalCost = shopItem.buyPrice * quantity;
+    /**
+     * Finds the item a request is for, if the screen's catalog, the shop's current one and
+     * the request all agree on the version.
+     *
+     * @param opened  The catalog the screen was opened with
+     * @param current The shop's current catalog, null if the shop no longer exists
+     * @param version The catalog version the client saw
+     * @param entryId The item's entry ID
+     * @return The item's index in the current catalog, or -1 if the request is stale
+     */
+    static int resolveIndex(ShopCatalog opened, ShopCatalog current, long version, int entryId) {
+        if (opened == null || current == null || opened.version() != version || current.version() != version) {
+            return -1;
+        }
+        return current.indexOf(entryId);
+    }
+
+    /**
+     * Pre-validates a purchase. Server thread only.
+     *
+     * @param seq The request's sequence number, 0 if it is not a quick mode request
+     * @return The request to commit, or null if it was rejected
+     */
+    public Prepared prepareBuy(ServerPlayerEntity player, long version, int entryId, int quantity, int seq) {
+        int[] seqs = seqs(seq);
+        if (quantity <= 0 || quantity > MAX_CART_QUANTITY) {
+            report(player, seqs, Status.INVALID, 0, null);
+            return null;
+        }
+        ShopItem shopItem = resolveItem(player, version, entryId, seqs);
+        if (shopItem == null) return null;
 
         if (!shopItem.canBuy) {
-            player.sendMessage(Text.literal("Cet item ne peut pas être acheté").formatted(Formatting.RED), false);
-            return false;
+            report(player, seqs, Status.UNAVAILABLE, 0,
+                    () -> Text.literal("Cet item ne peut pas être acheté").formatted(Formatting.RED));
+            return null;
         }
+        // Compiled at load time; invalid items were reported then
+        if (shopItem.template == null) {
+            report(player, seqs, Status.UNAVAILABLE, 0,
+                    () -> Text.literal("Cet item n'est pas disponible").formatted(Formatting.RED));
+            return null;
+        }
+        long totalCost = (long) shopItem.buyPrice * quantity;
+        if (totalCost > Integer.MAX_VALUE || CurrencyManager.getBalance(player) < totalCost) {
+            report(player, seqs, Status.INSUFFICIENT_FUNDS, 0,
+                    () -> Text.literal("Solde insuffisant!").formatted(Formatting.RED));
+            return null;
+        }
+        return new Prepared(this, shopItem, true, quantity, seqs);
+    }
 
-        if (CurrencyManager.getBalance(player) < totalCost) {
-            player.sendMessage(Text.literal("Solde insuffisant!").formatted(Formatting.RED), false);
-            return false;
+    /**
+     * Pre-validates a sale. Server thread only; the inventory is only checked by {@link #commitSell}.
+     *
+     * @param seq The request's sequence number, 0 if it is not a quick mode request
+     * @return The request to commit, or null if it was rejected
+     */
+    public Prepared prepareSell(ServerPlayerEntity player, long version, int entryId, int quantity, int seq) {
+        int[] seqs = seqs(seq);
+        if (quantity != -1 && (quantity <= 0 || quantity > MAX_CART_QUANTITY)) {
+            report(player, seqs, Status.INVALID, 0, null);
+            return null;
         }
+        ShopItem shopItem = resolveItem(player, version, entryId, seqs);
+        if (shopItem == null) return null;
 
-        Identifier itemId = Identifier.tryParse(shopItem.itemId);
-        if (itemId == null) {
-            DyuusAcademyFeatures.LOGGER.error("Invalid item ID: {}", shopItem.itemId);
-            return false;
+        if (!shopItem.canSell) {
+            report(player, seqs, Status.UNAVAILABLE, 0,
+                    () -> Text.literal("Cet item ne peut pas être vendu").formatted(Formatting.RED));
+            return null;
+        }
+        if (shopItem.template == null) {
+            report(player, seqs, Status.UNAVAILABLE, 0,
+                    () -> Text.literal("Cet item n'est pas disponible").formatted(Formatting.RED));
+            return null;
         }
+        if ((long) shopItem.sellPrice * Math.max(quantity, 64) > Integer.MAX_VALUE) {
+            report(player, seqs, Status.INVALID, 0, null);
+            return null;
+        }
+        return new Prepared(this, shopItem, false, quantity, seqs);
+    }
 
-        Item item = Registries.ITEM.get(itemId);
-        ItemStack stack = new ItemStack(item, quantity);
+    /**
+     * Pre-validates a cart: resolves and merges its lines, builds the stacks to give and
+     * checks the total cost against the balance. Server thread only.
+     *
+     * @param seq The request's sequence number, 0 if it is not a quick mode request
+     * @return The cart to commit, or null if it was rejected
+     */
+    public PreparedCart prepareCheckout(ServerPlayerEntity player, long version, List<ShopNetworking.CheckoutPayload.Line> lines, int seq) {
+        int[] seqs = seqs(seq);
+        if (lines.isEmpty()) {
+            report(player, seqs, Status.INVALID, 0, null);
+            return null;
+        }
 
-        if (!shopItem.components.isEmpty()) {
-            for (Map.Entry<String, String> entry : shopItem.components.entrySet()) {
-                applyCustomComponent(stack, entry.getKey(), entry.getValue(), player);
+        Map<ShopItem, Integer> quantities = new LinkedHashMap<>();
+        for (ShopNetworking.CheckoutPayload.Line line : lines) {
+            if (line.quantity() <= 0 || line.quantity() > MAX_CART_QUANTITY) {
+                report(player, seqs, Status.INVALID, 0, null);
+                return null;
+            }
+            ShopItem shopItem = resolveItem(player, version, line.entryId(), seqs);
+            if (shopItem == null) return null;
+            if (!shopItem.canBuy) {
+                report(player, seqs, Status.UNAVAILABLE, 0,
+                        () -> Text.literal(shopItem.displayName + " ne peut pas être acheté").formatted(Formatting.RED));
+                return null;
+            }
+            if (shopItem.template == null) {
+                report(player, seqs, Status.UNAVAILABLE, 0,
+                        () -> Text.literal(shopItem.displayName + " n'est pas disponible").formatted(Formatting.RED));
+                return null;
+            }
+            if (quantities.merge(shopItem, line.quantity(), Integer::sum) > MAX_CART_QUANTITY) {
+                report(player, seqs, Status.INVALID, 0, null);
+                return null;
             }
         }
 
-        if (!player.getInventory().insertStack(stack)) {
-            player.sendMessage(Text.literal("Inventaire plein!").formatted(Formatting.RED), false);
+        // A cart needing more stacks than the inventory has slots can never be given:
+        // reject it before building any of them
+        int stackCount = 0;
+        for (Map.Entry<ShopItem, Integer> entry : quantities.entrySet()) {
+            int maxCount = entry.getKey().template.getMaxCount();
+            stackCount += (entry.getValue() + maxCount - 1) / maxCount;
+            if (stackCount > INVENTORY_SLOTS) {
+                report(player, seqs, Status.INVENTORY_FULL, 0,
+                        () -> Text.literal("Inventaire plein!").formatted(Formatting.RED));
+                return null;
+            }
+        }
+
+        long totalCost = 0;
+        int totalQuantity = 0;
+        List<ItemStack> stacks = new ArrayList<>(stackCount);
+        for (Map.Entry<ShopItem, Integer> entry : quantities.entrySet()) {
+            ShopItem shopItem = entry.getKey();
+            int quantity = entry.getValue();
+            totalCost += (long) shopItem.buyPrice * quantity;
+            totalQuantity += quantity;
+
+            ItemStack template = shopItem.template;
+            for (int remaining = quantity; remaining > 0; ) {
+                int count = Math.min(remaining, template.getMaxCount());
+                stacks.add(template.copyWithCount(count));
+                remaining -= count;
+            }
+        }
+
+        if (totalCost > Integer.MAX_VALUE || CurrencyManager.getBalance(player) < totalCost) {
+            report(player, seqs, Status.INSUFFICIENT_FUNDS, 0,
+                    () -> Text.literal("Solde insuffisant!").formatted(Formatting.RED));
+            return null;
+        }
+        return new PreparedCart(this, quantities, stacks, (int) totalCost, totalQuantity, seqs);
+    }
+
+    /**
+     * Commits a pre-validated request, if the player still has the same screen open.
+     * Server thread only.
+     */
+    public static boolean commit(ServerPlayerEntity player, Prepared prepared) {
+        if (player.currentScreenHandler != prepared.handler()) {
+            report(player, prepared.seqs(), Status.CLOSED, 0, null);
             return false;
         }
+        return prepared.buy()
+                ? commitBuy(player, prepared.item(), prepared.quantity(), prepared.seqs())
+                : commitSell(player, prepared.item(), prepared.quantity(), prepared.seqs());
+    }
 
-        CurrencyManager.removeBalance(player, totalCost);
+    private static boolean commitBuy(ServerPlayerEntity player, ShopItem shopItem, int quantity, int[] seqs) {
+        long cost = (long) shopItem.buyPrice * quantity;
+        if (cost > Integer.MAX_VALUE) {
+            report(player, seqs, Status.INSUFFICIENT_FUNDS, 0,
+                    () -> Text.literal("Solde insuffisant!").formatted(Formatting.RED));
+            return false;
+        }
+        int totalCost = (int) cost;
 
-        player.sendMessage(
-                Text.literal("Acheté ")
-                        .formatted(Formatting.GREEN)
-                        .append(Text.literal(quantity + "x " + shopItem.displayName)
-                                .formatted(Formatting.YELLOW))
-                        .append(Text.literal(" pour " + totalCost + " PokéDollars")
-                                .formatted(Formatting.GOLD)),
-                false
-        );
+        // Checked before paying, as a failed insertion may already have placed part of the stack
+        List<ItemStack> stacks = List.of(shopItem.createStack(quantity));
+        if (!fitsInInventory(player, stacks)) {
+            report(player, seqs, Status.INVENTORY_FULL, 0,
+                    () -> Text.literal("Inventaire plein!").formatted(Formatting.RED));
+            return false;
+        }
 
+        // Debit first so the balance check and the payment are a single atomic step
+        if (!CurrencyManager.removeBalance(player, totalCost, TransactionSource.SHOP_BUY, shopItem.itemId, quantity)) {
+            report(player, seqs, Status.INSUFFICIENT_FUNDS, 0,
+                    () -> Text.literal("Solde insuffisant!").formatted(Formatting.RED));
+            return false;
+        }
+        give(stacks, player.getInventory()::insertStack, stack -> player.dropItem(stack, false));
+
+        report(player, seqs, Status.OK, -totalCost, () -> Text.literal("Acheté ")
+                .formatted(Formatting.GREEN)
+                .append(Text.literal(quantity + "x " + shopItem.displayName)
+                        .formatted(Formatting.YELLOW))
+                .append(Text.literal(" pour " + totalCost + " PokéDollars")
+                        .formatted(Formatting.GOLD)));
         return true;
     }
 
-    // NOUVELLE MÉTHODE : Applique un composant personnalisé à un ItemStack
-    @SuppressWarnings("unchecked")
-    private void applyCustomComponent(ItemStack stack, String componentKey, String componentValue, ServerPlayerEntity player) {
-        try {
-            Identifier componentId = Identifier.tryParse(componentKey);
-            if (componentId == null) {
-                DyuusAcademyFeatures.LOGGER.warn("Invalid component key: {}", componentKey);
-                return;
-            }
-
-            var componentType = Registries.DATA_COMPONENT_TYPE.get(componentId);
-            if (componentType == null) {
-                DyuusAcademyFeatures.LOGGER.warn("Component type not found: {}", componentKey);
-                return;
+    private static boolean commitSell(ServerPlayerEntity player, ShopItem shopItem, int requested, int[] seqs) {
+        // -1 means "sell as many as possible, capped at 64"
+        int target = requested == -1 ? 64 : requested;
+
+        // Single sweep: take matching items as they are found, and put them back if there
+        // are not enough (rare, so cheaper than counting first)
+        List<ItemStack> main = player.getInventory().main;
+        int[] takenSlots = new int[main.size()];
+        int[] takenCounts = new int[main.size()];
+        int takenStacks = 0;
+        int taken = 0;
+        for (int i = 0; i < main.size() && taken < target; i++) {
+            ItemStack stack = main.get(i);
+            if (!stack.isEmpty() && shopItem.matches(stack)) {
+                int removed = Math.min(target - taken, stack.getCount());
+                stack.decrement(removed);
+                takenSlots[takenStacks] = i;
+                takenCounts[takenStacks++] = removed;
+                taken += removed;
             }
+        }
 
-            // Traitement spécial pour minecraft:custom_name (nécessite un Text Component)
-            if (componentKey.equals("minecraft:custom_name")) {
-                try {
-                    // Parser le JSON en Text component
-                    Text customName = Text.Serialization.fromJson(componentValue, player.getRegistryManager());
-                    if (customName != null) {
-                        stack.set((net.minecraft.component.ComponentType<Text>) componentType, customName);
-                        DyuusAcademyFeatures.LOGGER.info("Applied custom_name: {}", customName.getString());
-                    } else {
-                        DyuusAcademyFeatures.LOGGER.error("Failed to parse custom_name, got null");
-                    }
-                } catch (Exception e) {
-                    DyuusAcademyFeatures.LOGGER.error("Failed to parse custom_name JSON: {}", componentValue, e);
+        if (taken == 0 || (requested != -1 && taken < requested)) {
+            for (int i = 0; i < takenStacks; i++) {
+                ItemStack stack = main.get(takenSlots[i]);
+                if (stack.isEmpty()) {
+                    // Emptied stacks matched the template exactly, so rebuild them from it
+                    main.set(takenSlots[i], shopItem.createStack(takenCounts[i]));
+                } else {
+                    stack.increment(takenCounts[i]);
                 }
-            } else {
-                // Pour les autres composants (comme academy:booster_pack), on utilise le raw type
-                @SuppressWarnings("rawtypes")
-                net.minecraft.component.ComponentType rawType = componentType;
-                stack.set(rawType, componentValue);
-                DyuusAcademyFeatures.LOGGER.info("Applied component {} with value {}", componentKey, componentValue);
             }
-
-        } catch (Exception e) {
-            DyuusAcademyFeatures.LOGGER.error("Failed to apply component {}", componentKey, e);
+            int owned = taken;
+            report(player, seqs, Status.NOT_ENOUGH_ITEMS, 0, () -> owned == 0
+                    ? Text.literal("Vous n'avez aucun " + shopItem.displayName).formatted(Formatting.RED)
+                    : Text.literal("Vous n'avez que " + owned + " " + shopItem.displayName).formatted(Formatting.RED));
+            return false;
         }
-    }
+        int quantity = taken;
 
-    // Server-side method to sell an item
-    public boolean sellItem(ServerPlayerEntity player, int itemIndex, int quantity) {
-        if (itemIndex < 0 || itemIndex >= data.items.size()) return false;
+        int totalEarned = shopItem.sellPrice * quantity;
+        CurrencyManager.addBalance(player, totalEarned, TransactionSource.SHOP_SELL, shopItem.itemId, quantity);
+
+        report(player, seqs, Status.OK, totalEarned, () -> Text.literal("Vendu ")
+                .formatted(Formatting.GREEN)
+                .append(Text.literal(quantity + "x " + shopItem.displayName)
+                        .formatted(Formatting.YELLOW))
+                .append(Text.literal(" pour " + totalEarned + " PokéDollars")
+                        .formatted(Formatting.GOLD)));
+        return true;
+    }
 
-        ShopItem shopItem = data.items.get(itemIndex);
+    /**
+     * Commits a pre-validated cart: checks the inventory space, then debits the total and
+     * gives every item in a single step. Server thread only.
+     *
+     * @return true if the whole cart was bought, false if nothing was
+     */
+    public static boolean commitCheckout(ServerPlayerEntity player, PreparedCart cart) {
+        if (player.currentScreenHandler != cart.handler()) {
+            report(player, cart.seqs(), Status.CLOSED, 0, null);
+            return false;
+        }
 
-        if (!shopItem.canSell) {
-            player.sendMessage(Text.literal("Cet item ne peut pas être vendu").formatted(Formatting.RED), false);
+        if (!fitsInInventory(player, cart.stacks())) {
+            report(player, cart.seqs(), Status.INVENTORY_FULL, 0,
+                    () -> Text.literal("Inventaire plein!").formatted(Formatting.RED));
             return false;
         }
 
-        Identifier itemId = Identifier.tryParse(shopItem.itemId);
-        if (itemId == null) {
-            DyuusAcademyFeatures.LOGGER.error("Invalid item ID: {}", shopItem.itemId);
+        StringBuilder detail = new StringBuilder();
+        for (Map.Entry<ShopItem, Integer> entry : cart.quantities().entrySet()) {
+            if (!detail.isEmpty()) detail.append(", ");
+            detail.append(entry.getKey().itemId).append(" x").append(entry.getValue());
+        }
+        if (!CurrencyManager.removeBalance(player, cart.totalCost(), TransactionSource.SHOP_BUY, detail.toString(), cart.totalQuantity())) {
+            report(player, cart.seqs(), Status.INSUFFICIENT_FUNDS, 0,
+                    () -> Text.literal("Solde insuffisant!").formatted(Formatting.RED));
             return false;
         }
 
-        Item item = Registries.ITEM.get(itemId);
+        // Space was checked above; never lose a paid item if it still does not fit
+        give(cart.stacks(), player.getInventory()::insertStack, stack -> player.dropItem(stack, false));
 
-        int available = 0;
-        for (ItemStack stack : player.getInventory().main) {
-            if (stack.getItem() == item) {
-                available += stack.getCount();
-            }
-        }
+        report(player, cart.seqs(), Status.OK, -cart.totalCost(), () -> Text.literal("Acheté ")
+                .formatted(Formatting.GREEN)
+                .append(Text.literal(cart.totalQuantity() + " articles (" + cart.quantities().size() + " différents)")
+                        .formatted(Formatting.YELLOW))
+                .append(Text.literal(" pour " + cart.totalCost() + " PokéDollars")
+                        .formatted(Formatting.GOLD)));
+        return true;
+    }
 
-        // Resolve quantity: -1 means "sell as many as possible, capped at 64"
-        if (quantity == -1) {
-            quantity = Math.min(64, available);
-            if (quantity <= 0) {
-                player.sendMessage(
-                        Text.literal("Vous n'avez aucun " + shopItem.displayName)
-                                .formatted(Formatting.RED),
-                        false
-                );
-                return false;
+    /**
+     * Gives paid stacks: inserts a copy of each, then drops whatever is left of it. The
+     * remainder is checked rather than the insertion's result, which is also false after
+     * a partial insertion.
+     *
+     * @param insert Inserts as much of a stack as fits, shrinking it to what is left
+     * @param drop Drops what is left of a stack
+     */
+    static void give(List<ItemStack> stacks, Consumer<ItemStack> insert, Consumer<ItemStack> drop) {
+        for (ItemStack stack : stacks) {
+            ItemStack given = stack.copy();
+            insert.accept(given);
+            if (!given.isEmpty()) {
+                drop.accept(given);
             }
         }
+    }
 
-        if (available < quantity) {
-            player.sendMessage(
-                    Text.literal("Vous n'avez que " + available + " " + shopItem.displayName)
-                            .formatted(Formatting.RED),
-                    false
-            );
-            return false;
+    /**
+     * Checks that stacks fit in a player's main inventory, by inserting them into a copy of it.
+     */
+    private static boolean fitsInInventory(ServerPlayerEntity player, List<ItemStack> stacks) {
+        List<ItemStack> slots = new ArrayList<>();
+        for (ItemStack stack : player.getInventory().main) {
+            slots.add(stack.copy());
         }
 
-        int toRemove = quantity;
-        for (int i = 0; i < player.getInventory().main.size() && toRemove > 0; i++) {
-            ItemStack stack = player.getInventory().main.get(i);
-            if (stack.getItem() == item) {
-                int removed = Math.min(toRemove, stack.getCount());
-                stack.decrement(removed);
-                toRemove -= removed;
+        for (ItemStack stack : stacks) {
+            int remaining = stack.getCount();
+            // Top up matching stacks first, then use empty slots
+            for (ItemStack slot : slots) {
+                if (remaining == 0) break;
+                if (!slot.isEmpty() && ItemStack.areItemsAndComponentsEqual(slot, stack)) {
+                    int moved = Math.min(remaining, slot.getMaxCount() - slot.getCount());
+                    if (moved > 0) {
+                        slot.increment(moved);
+                        remaining -= moved;
+                    }
+                }
+            }
+            for (int i = 0; i < slots.size() && remaining > 0; i++) {
+                if (slots.get(i).isEmpty()) {
+                    int moved = Math.min(remaining, stack.getMaxCount());
+                    slots.set(i, stack.copyWithCount(moved));
+                    remaining -= moved;
+                }
             }
+            if (remaining > 0) return false;
         }
+        return true;
+    }
 
-        int totalEarned = shopItem.sellPrice * quantity;
-        CurrencyManager.addBalance(player, totalEarned);
-
-        player.sendMessage(
-                Text.literal("Vendu ")
-                        .formatted(Formatting.GREEN)
-                        .append(Text.literal(quantity + "x " + shopItem.displayName)
-                                .formatted(Formatting.YELLOW))
-                        .append(Text.literal(" pour " + totalEarned + " PokéDollars")
-                                .formatted(Formatting.GOLD)),
-                false
-        );
+    /**
+     * Reports a transaction's outcome: acknowledges quick mode requests with a result packet,
+     * tells the player in chat otherwise.
+     *
+     * @param seqs Sequence numbers of the quick mode requests answered (empty otherwise)
+     * @param delta Change of the player's balance
+     * @param message Chat message, or null to report nothing outside quick mode
+     */
+    private static void report(ServerPlayerEntity player, int[] seqs, Status status, long delta, Supplier<Text> message) {
+        if (seqs.length > 0) {
+            ShopNetworking.sendResult(player, seqs, status, delta);
+        } else if (message != null) {
+            reply(player, message);
+        }
+    }
 
-        return true;
+    private static int[] seqs(int seq) {
+        return seq == 0 ? NO_SEQS : new int[]{seq};
+    }
+
+    /**
+     * Sends a chat message to a player. Server thread only, like every caller, so messages
+     * arrive in the order the transactions were committed.
+     */
+    private static void reply(ServerPlayerEntity player, Supplier<Text> message) {
+        player.sendMessage(message.get(), false);
+    }
+
+    // Server-side method to buy an item
+    public boolean buyItem(ServerPlayerEntity player, long version, int entryId, int quantity) {
+        Prepared prepared = prepareBuy(player, version, entryId, quantity, 0);
+        return prepared != null && commit(player, prepared);
+    }
+
+    // Server-side method to sell an item
+    public boolean sellItem(ServerPlayerEntity player, long version, int entryId, int quantity) {
+        Prepared prepared = prepareSell(player, version, entryId, quantity, 0);
+        return prepared != null && commit(player, prepared);
     }
 
-    // Data record for client transmission (now includes shop title)
-    public record Data(String shopTitle, List<ShopItem> items) {
+    // Server-side method to buy a whole cart
+    public boolean checkout(ServerPlayerEntity player, long version, List<ShopNetworking.CheckoutPayload.Line> lines) {
+        PreparedCart cart = prepareCheckout(player, version, lines, 0);
+        return cart != null && commitCheckout(player, cart);
+    }
+
+    /**
+     * How a shop's catalog reaches the client.
+     */
+    public enum Delivery {
+        // The whole catalog is in the opening packet
+        INLINE,
+        // The client has the catalog cached
+        CACHED,
+        // The opening packet has the first page, the client requests the others as needed
+        PAGED
+    }
+
+    /**
+     * Screen opening data. Identifies the shop's catalog by ID and version, and carries
+     * as much of it as the client needs (see {@link Delivery}). On the client, {@code catalog}
+     * is only set for inline deliveries, and {@code firstPage} for paged ones. {@code balance}
+     * is the player's balance when the screen opened, for the client's affordability sort.
+     */
+    public record Data(String shopId, long version, String title, Delivery delivery,
+                       ShopCatalog catalog, int itemCount, List<ShopItem> firstPage, long balance) {
         public static final PacketCodec<RegistryByteBuf, Data> PACKET_CODEC =
                 new PacketCodec<>() {
                     @Override
                     public Data decode(RegistryByteBuf buf) {
-                        // Read shop title
-                        String shopTitle = readString(buf);
-
-                        // Read items
-                        int size = buf.readInt();
-                        List<ShopItem> items = new ArrayList<>(size);
-                        for (int i = 0; i < size; i++) {
-                            items.add(ShopItem.decode(buf));
-                        }
-                        return new Data(shopTitle, items);
+                        String shopId = buf.readString();
+                        long version = buf.readLong();
+                        String title = buf.readString();
+                        Delivery delivery = buf.readEnumConstant(Delivery.class);
+                        long balance = buf.readVarLong();
+                        return switch (delivery) {
+                            case INLINE -> {
+                                ShopCatalog catalog = ShopCatalog.read(buf, shopId, version);
+                                yield new Data(shopId, version, title, delivery, catalog, catalog.items().size(), List.of(), balance);
+                            }
+                            case CACHED -> new Data(shopId, version, title, delivery, null, 0, List.of(), balance);
+                            case PAGED -> {
+                                int itemCount = buf.readVarInt();
+                                yield new Data(shopId, version, title, delivery, null, itemCount, ShopCatalog.readItems(buf), balance);
+                            }
+                        };
                     }
 
                     @Override
                     public void encode(RegistryByteBuf buf, Data data) {
-                        // Write shop title
-                        writeString(buf, data.shopTitle);
-
-                        // Write items
-                        buf.writeInt(data.items.size());
-                        for (ShopItem item : data.items) {
-                            ShopItem.encode(buf, item);
+                        buf.writeString(data.shopId);
+                        buf.writeLong(data.version);
+                        buf.writeString(data.title);
+                        buf.writeEnumConstant(data.delivery);
+                        buf.writeVarLong(data.balance);
+                        switch (data.delivery) {
+                            case INLINE -> data.catalog.write(buf);
+                            case CACHED -> {
+                            }
+                            case PAGED -> {
+                                buf.writeVarInt(data.itemCount);
+                                data.catalog.writeItems(buf, 0, Math.min(ITEMS_PER_PAGE, data.itemCount));
+                            }
                         }
                     }
+                };
 
-                    private void writeString(RegistryByteBuf buf, String str) {
-                        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
-                        buf.writeInt(bytes.length);
-                        buf.writeBytes(bytes);
-                    }
+        public Data(ShopCatalog catalog) {
+            this(catalog.shopId() != null ? catalog.shopId() : "", catalog.version(), catalog.title(),
+                    Delivery.INLINE, catalog, catalog.items().size(), List.of(), 0);
+        }
 
-                    private String readString(RegistryByteBuf buf) {
-                        int length = buf.readInt();
-                        byte[] bytes = new byte[length];
-                        buf.readBytes(bytes);
-                        return new String(bytes, StandardCharsets.UTF_8);
-                    }
-                };
+        /**
+         * Adapts this data to a player: the catalog is left out if their client already has it,
+         * and sent page by page if it is large, and their balance is added.
+         *
+         * @param player The player opening the screen
+         * @return Data to send to that player
+         */
+        public Data forPlayer(ServerPlayerEntity player) {
+            Delivery delivery;
+            if (ShopNetworking.hasCatalog(player, version)) {
+                delivery = Delivery.CACHED;
+            } else if (itemCount > PAGED_THRESHOLD) {
+                delivery = Delivery.PAGED;
+            } else {
+                delivery = Delivery.INLINE;
+                ShopNetworking.markCatalogSent(player, version);
+            }
+            return new Data(shopId, version, title, delivery, catalog, itemCount, List.of(), CurrencyManager.getBalance(player));
+        }
 
         /**
          * Creates Data from a specific ShopConfig.
+         * Uses the shop's cached catalog, built when shops were last loaded.
          *
          * @param config The shop configuration
          * @return Data for the screen handler
          */
         public static Data fromConfig(ShopConfig config) {
-            return new Data(config.displayName, new ArrayList<>(config.items));
+            ShopCatalog catalog = ShopConfigManager.getCatalog(config.shopId);
+            return new Data(catalog != null ? catalog : ShopCatalog.of(config));
         }
 
         /**
@@ -319,9 +804,9 @@ public class ShopScreenHandler extends ScreenHandler {
         public static Data fromConfig() {
             ShopConfig config = ShopConfigManager.getDefaultShop();
             if (config == null) {
-                return new Data("Shop", new ArrayList<>());
+                return new Data(ShopCatalog.empty("Shop"));
             }
             return fromConfig(config);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,126 @@
+package com.dyuus.academy_features.config;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ShopCatalogTest {
+
+    private static ShopItem item(String itemId, int buyPrice, String... components) {
+        ShopItem item = new ShopItem();
+        item.itemId = itemId;
+        item.displayName = itemId;
+        item.buyPrice = buyPrice;
+        item.sellPrice = buyPrice / 2;
+        item.canBuy = true;
+        item.canSell = true;
+        item.maxStackSize = 64;
+        item.category = "Objets";
+        item.components = new LinkedHashMap<>();
+        for (int i = 0; i < components.length; i += 2) {
+            item.components.put(components[i], components[i + 1]);
+        }
+        return item;
+    }
+
+    private static List<ShopItem> items() {
+        List<ShopItem> items = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            // Keys out of hash order, so a decoder that does not keep them in wire order reorders them
+            items.add(item("cobblemon:item_" + i, 10 + i,
+                    "minecraft:lore", "[\"" + i + "\"]",
+                    "minecraft:custom_name", "\"Objet " + i + "\"",
+                    "cobblemon:pokemon_item", "{}"));
+        }
+        items.add(item("minecraft:stone", 1));
+        return items;
+    }
+
+    private static List<ShopItem> copy(List<ShopItem> items) {
+        List<ShopItem> copies = new ArrayList<>();
+        for (ShopItem original : items) {
+            ShopItem copy = item(original.itemId, original.buyPrice);
+            copy.components.putAll(original.components);
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    @Test
+    void pagesRebuildTheSameVersion() {
+        ShopCatalog catalog = ShopCatalog.of("shop", "Boutique", items());
+
+        // Received in pages, then completed on the client
+        List<ShopItem> received = new ArrayList<>();
+        int size = catalog.items().size();
+        for (int from = 0; from < size; from += 16) {
+            ByteBuf buf = Unpooled.buffer();
+            try {
+                catalog.writeItems(buf, from, Math.min(size, from + 16));
+                received.addAll(ShopCatalog.readItems(buf));
+            } finally {
+                buf.release();
+            }
+        }
+        ShopCatalog completed = ShopCatalog.of("shop", "Boutique", received);
+
+        assertEquals(catalog.version(), completed.version());
+        assertEquals(List.of("minecraft:lore", "minecraft:custom_name", "cobblemon:pokemon_item"),
+                new ArrayList<>(completed.items().get(3).components.keySet()));
+    }
+
+    @Test
+    void wholeCatalogReadsBackAsSent() {
+        ShopCatalog catalog = ShopCatalog.of("shop", "Boutique", items());
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            catalog.write(buf);
+            ShopCatalog read = ShopCatalog.read(buf, "shop", catalog.version());
+            assertEquals(catalog.items().size(), read.items().size());
+            assertEquals(catalog.version(), ShopCatalog.of("shop", read.title(), read.items()).version());
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    void entryIdsFindEveryItemAndSurviveReordering() {
+        List<ShopItem> items = items();
+        // Duplicate entries get distinct IDs
+        items.add(item("minecraft:stone", 5));
+        items.add(item("minecraft:stone", 7));
+        ShopCatalog catalog = ShopCatalog.of("shop", "Boutique", items);
+
+        for (int i = 0; i < catalog.items().size(); i++) {
+            assertEquals(i, catalog.indexOf(catalog.items().get(i).entryId));
+        }
+        int stone = catalog.items().get(40).entryId;
+        assertNotEquals(stone, catalog.items().get(41).entryId);
+        assertNotEquals(catalog.items().get(41).entryId, catalog.items().get(42).entryId);
+
+        int missing = 0;
+        while (catalog.indexOf(missing) >= 0) {
+            missing++;
+        }
+        assertEquals(-1, catalog.indexOf(missing));
+
+        // The same entries in another order, with other prices, keep their IDs
+        List<ShopItem> reordered = copy(items());
+        reordered.add(0, reordered.remove(reordered.size() - 1));
+        reordered.get(5).buyPrice = 999;
+        ShopCatalog reloaded = ShopCatalog.of("shop", "Boutique", reordered);
+        assertEquals(0, reloaded.indexOf(stone));
+        for (int i = 0; i < 40; i++) {
+            int entryId = catalog.items().get(i).entryId;
+            assertEquals(i + 1, reloaded.indexOf(entryId));
+        }
+        assertNotEquals(catalog.version(), reloaded.version());
+    }
+}
@@ -0,0 +1,105 @@
+package com.dyuus.academy_features.currency;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuditLogTest {
+    @TempDir
+    Path dir;
+
+    private static final UUID ALICE = new UUID(1, 1);
+    private static final UUID BOB = new UUID(-5, 2);
+
+    private static void publish(AuditLog log, UUID player, long balance) {
+        log.publish(player.getMostSignificantBits(), player.getLeastSignificantBits(),
+                TransactionSource.OTHER, 1, balance, null, "d\"" + balance, 0);
+    }
+
+    private static List<AuditEntry> awaitHistory(AuditLog log, UUID player, int expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            List<AuditEntry> entries = log.history(player, Integer.MAX_VALUE);
+            if (entries.size() >= expected) return entries;
+            assertTrue(System.currentTimeMillis() < deadline, "audit log did not write its events in time");
+            Thread.sleep(5);
+        }
+    }
+
+    private void deleteFiles(String pattern) throws Exception {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, pattern)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void historyFollowsOneAccountNewestFirst() throws Exception {
+        AuditLog log = new AuditLog(dir, 0);
+        for (int i = 1; i <= 3000; i++) {
+            publish(log, i % 3 == 0 ? BOB : ALICE, i);
+        }
+
+        List<AuditEntry> bob = awaitHistory(log, BOB, 1000);
+        assertEquals(1000, bob.size());
+        for (int i = 0; i < bob.size(); i++) {
+            assertEquals(BOB, bob.get(i).player());
+            assertEquals(3000 - 3L * i, bob.get(i).balance());
+        }
+        assertEquals("d\"3000", bob.get(0).detail());
+
+        List<AuditEntry> latest = log.history(ALICE, 5);
+        assertEquals(5, latest.size());
+        assertEquals(2999, latest.get(0).balance());
+        assertEquals(2998, latest.get(1).balance());
+        assertEquals(0, log.history(new UUID(7, 7), 10).size(), "unknown accounts have no history");
+        log.close();
+    }
+
+    @Test
+    void historySpansClosedFiles() throws Exception {
+        AuditLog first = new AuditLog(dir, 0);
+        publish(first, ALICE, 100);
+        publish(first, BOB, 200);
+        awaitHistory(first, BOB, 1);
+        first.close();
+
+        AuditLog second = new AuditLog(dir, 0);
+        publish(second, ALICE, 300);
+        List<AuditEntry> alice = awaitHistory(second, ALICE, 2);
+        assertEquals(2, alice.size());
+        assertEquals(300, alice.get(0).balance());
+        assertEquals(100, alice.get(1).balance());
+        assertEquals(200, second.history(BOB, 10).get(0).balance());
+        second.close();
+    }
+
+    @Test
+    void indexesLeftWithoutHeadsAreSealedOnStart() throws Exception {
+        AuditLog first = new AuditLog(dir, 0);
+        publish(first, ALICE, 100);
+        publish(first, BOB, 200);
+        publish(first, ALICE, 150);
+        awaitHistory(first, ALICE, 2);
+        first.close();
+        // As if the server had crashed before closing the file
+        deleteFiles("*.heads");
+
+        AuditLog second = new AuditLog(dir, 0);
+        List<AuditEntry> alice = second.history(ALICE, 10);
+        assertEquals(2, alice.size());
+        assertEquals(150, alice.get(0).balance());
+        assertEquals(100, alice.get(1).balance());
+        assertEquals(1, second.history(BOB, 10).size());
+        second.close();
+    }
+}
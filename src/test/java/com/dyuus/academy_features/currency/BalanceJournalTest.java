@@ -0,0 +1,169 @@
+package com.dyuus.academy_features.currency;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BalanceJournalTest {
+    @TempDir
+    Path dir;
+
+    /**
+     * Target remembering what it was given.
+     */
+    private static class RecordingTarget implements BalanceJournal.Target {
+        final List<long[]> applied = new ArrayList<>();
+        int checkpoints;
+        boolean closed;
+        boolean failApply;
+
+        @Override
+        public synchronized void apply(long[] records, int longs) throws IOException {
+            if (failApply) throw new IOException("apply failed");
+            for (int i = 0; i < longs; i += 3) {
+                applied.add(new long[]{records[i], records[i + 1], records[i + 2]});
+            }
+        }
+
+        @Override
+        public synchronized void checkpoint() {
+            checkpoints++;
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+        }
+
+        synchronized List<long[]> applied() {
+            return new ArrayList<>(applied);
+        }
+    }
+
+    private static void awaitApplied(BalanceJournal journal, long sequence) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (journal.appliedSequence() < sequence) {
+            assertTrue(System.currentTimeMillis() < deadline, "journal did not apply its records in time");
+            Thread.sleep(5);
+        }
+    }
+
+    private static List<long[]> replayAll(Path path) throws IOException {
+        List<long[]> records = new ArrayList<>();
+        BalanceJournal.replay(path, (msb, lsb, balance) -> records.add(new long[]{msb, lsb, balance}));
+        return records;
+    }
+
+    @Test
+    void appliesRecordsInOrder() throws Exception {
+        RecordingTarget target = new RecordingTarget();
+        BalanceJournal journal = new BalanceJournal(dir.resolve("test.journal"), target, null);
+
+        long last = 0;
+        for (int i = 1; i <= 10_000; i++) {
+            last = journal.append(i % 7, 42, i);
+        }
+        assertEquals(10_000, last);
+        awaitApplied(journal, last);
+        journal.close();
+
+        List<long[]> applied = target.applied();
+        assertEquals(10_000, applied.size());
+        for (int i = 0; i < applied.size(); i++) {
+            assertEquals((i + 1) % 7, applied.get(i)[0]);
+            assertEquals(i + 1, applied.get(i)[2]);
+        }
+    }
+
+    @Test
+    void closeCheckpointsAndTruncates() throws Exception {
+        Path path = dir.resolve("test.journal");
+        RecordingTarget target = new RecordingTarget();
+        BalanceJournal journal = new BalanceJournal(path, target, null);
+
+        awaitApplied(journal, journal.append(1, 2, 300));
+        assertEquals(BalanceJournal.RECORD_SIZE, Files.size(path));
+        journal.close();
+
+        assertTrue(target.checkpoints >= 1);
+        assertTrue(target.closed);
+        assertEquals(0, Files.size(path));
+        assertEquals(0, journal.append(1, 2, 400), "a closed journal takes no records");
+    }
+
+    @Test
+    void compactionOnRequest() throws Exception {
+        Path path = dir.resolve("test.journal");
+        RecordingTarget target = new RecordingTarget();
+        BalanceJournal journal = new BalanceJournal(path, target, null);
+
+        awaitApplied(journal, journal.append(1, 2, 300));
+        journal.requestCompaction();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (Files.size(path) > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "journal was not compacted in time");
+            Thread.sleep(5);
+        }
+        assertEquals(1, target.checkpoints);
+
+        // Records after a compaction start a fresh journal
+        awaitApplied(journal, journal.append(3, 4, 500));
+        assertEquals(BalanceJournal.RECORD_SIZE, Files.size(path));
+        journal.close();
+    }
+
+    @Test
+    void replayIgnoresTornRecordAndAppendsStayAligned() throws Exception {
+        Path path = dir.resolve("test.journal");
+        ByteBuffer content = ByteBuffer.allocate(BalanceJournal.RECORD_SIZE * 2 + 5);
+        content.putLong(1).putLong(2).putLong(100);
+        content.putLong(3).putLong(4).putLong(200);
+        content.put(new byte[5]);
+        Files.write(path, content.array());
+
+        RecordingTarget replayed = new RecordingTarget();
+        assertEquals(2, BalanceJournal.replay(path, replayed));
+        assertEquals(200, replayed.applied().get(1)[2]);
+
+        // Opening the journal drops the torn record before appending after it
+        RecordingTarget target = new RecordingTarget();
+        target.failApply = true;
+        BalanceJournal journal = new BalanceJournal(path, target, null);
+        journal.append(5, 6, 300);
+        journal.close();
+
+        List<long[]> records = replayAll(path);
+        assertEquals(3, records.size());
+        assertEquals(300, records.get(2)[2]);
+        assertEquals(5, records.get(2)[0]);
+    }
+
+    @Test
+    void failedApplyKeepsJournalForReplay() throws Exception {
+        Path path = dir.resolve("test.journal");
+        RecordingTarget target = new RecordingTarget();
+        target.failApply = true;
+        BalanceJournal journal = new BalanceJournal(path, target, null);
+
+        long sequence = journal.append(1, 2, 300);
+        journal.append(1, 2, 250);
+        journal.close();
+
+        assertTrue(sequence > 0);
+        assertEquals(0, journal.appliedSequence(), "records that were not applied must not count as applied");
+        assertEquals(0, target.checkpoints, "the journal must not be truncated over records missing from the target");
+
+        List<long[]> records = replayAll(path);
+        assertEquals(2, records.size());
+        assertEquals(250, records.get(1)[2]);
+    }
+}
@@ -0,0 +1,73 @@
+package com.dyuus.academy_features.currency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EconomyMetricsTest {
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    // Starts at a minute boundary, far from the epoch like real time
+    private long now = 29_000_000 * MINUTE;
+
+    @Test
+    void windowsNeverSpanMoreThanTheirLength() {
+        EconomyMetrics metrics = new EconomyMetrics(() -> now);
+        metrics.reset(0);
+        metrics.record(TransactionSource.POKEDEX_REWARD, 100);
+
+        EconomyReport report = metrics.report();
+        assertEquals(100, report.lastMinute().created());
+        assertEquals(100, report.lastHour().created());
+
+        now += MINUTE;
+        report = metrics.report();
+        assertEquals(0, report.lastMinute().created(), "a closed minute leaves the minute window");
+        assertEquals(100, report.lastHour().created());
+
+        now += 58 * MINUTE;
+        assertEquals(100, metrics.report().lastHour().created());
+        now += MINUTE;
+        report = metrics.report();
+        assertEquals(0, report.lastHour().created(), "60 minutes later the change is out of the hour");
+        assertEquals(100, report.lastDay().created());
+
+        now += (24 * 60 - 61) * MINUTE;
+        assertEquals(100, metrics.report().lastDay().created());
+        now += MINUTE;
+        assertEquals(0, metrics.report().lastDay().created(), "24 hours later the change is out of the day");
+    }
+
+    @Test
+    void slidesOverEveryMinute() {
+        EconomyMetrics metrics = new EconomyMetrics(() -> now);
+        metrics.reset(0);
+        for (int minute = 0; minute < 3 * 60; minute++) {
+            metrics.record(TransactionSource.SHOP_BUY, -1);
+            metrics.record(TransactionSource.PAY, 2);
+            metrics.record(TransactionSource.PAY, -2);
+            EconomyReport report = metrics.report();
+            assertEquals(1, report.lastMinute().destroyed());
+            assertEquals(Math.min(minute + 1, 60), report.lastHour().destroyed());
+            assertEquals(2L * Math.min(minute + 1, 60), report.lastHour().transferred());
+            assertEquals(minute + 1, report.lastDay().destroyed());
+            now += MINUTE;
+        }
+        assertEquals(-3 * 60, metrics.moneySupply());
+    }
+
+    @Test
+    void idleForOverADayEmptiesEveryWindow() {
+        EconomyMetrics metrics = new EconomyMetrics(() -> now);
+        metrics.reset(500);
+        metrics.record(TransactionSource.ADMIN_ADD, 50);
+        now += 2 * 24 * 60 * MINUTE;
+
+        EconomyReport report = metrics.report();
+        assertEquals(550, report.moneySupply());
+        assertEquals(0, report.lastDay().created());
+        assertEquals(0, report.lastDay().createdBySource().size());
+    }
+}
@@ -0,0 +1,123 @@
+package com.dyuus.academy_features.currency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeaderboardTest {
+
+    private static List<long[]> page(Leaderboard leaderboard, int offset, int limit) {
+        List<long[]> entries = new ArrayList<>();
+        leaderboard.forEachRanked(offset, limit, (msb, lsb, balance) -> entries.add(new long[]{msb, lsb, balance}));
+        return entries;
+    }
+
+    @Test
+    void ranksByBalanceThenUuid() {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.update(0, 1, 100);
+        leaderboard.update(0, 2, 300);
+        leaderboard.update(0, 3, 200);
+        leaderboard.update(0, 4, 200);
+
+        assertEquals(4, leaderboard.size());
+        assertEquals(1, leaderboard.rank(0, 2));
+        assertEquals(2, leaderboard.rank(0, 3));
+        assertEquals(3, leaderboard.rank(0, 4));
+        assertEquals(4, leaderboard.rank(0, 1));
+        assertEquals(0, leaderboard.rank(0, 5), "unknown accounts are not ranked");
+
+        List<long[]> top = page(leaderboard, 1, 2);
+        assertEquals(2, top.size());
+        assertEquals(3, top.get(0)[1]);
+        assertEquals(4, top.get(1)[1]);
+    }
+
+    @Test
+    void updatesMoveAndRemoveAccounts() {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.update(0, 1, 100);
+        leaderboard.update(0, 2, 50);
+        leaderboard.update(0, 2, 500);
+        assertEquals(1, leaderboard.rank(0, 2));
+
+        leaderboard.update(0, 1, 0);
+        assertEquals(1, leaderboard.size());
+        assertEquals(0, leaderboard.rank(0, 1));
+        assertEquals(500, page(leaderboard, 0, 10).get(0)[2]);
+    }
+
+    @Test
+    void matchesSortedOrderOverRandomUpdates() {
+        Leaderboard leaderboard = new Leaderboard();
+        Random random = new Random(42);
+        int accounts = 5000;
+        long[] balances = new long[accounts];
+        for (int step = 0; step < 50_000; step++) {
+            int account = random.nextInt(accounts);
+            long balance = random.nextInt(10) == 0 ? 0 : random.nextInt(1000);
+            balances[account] = balance;
+            leaderboard.update(0, account, balance);
+            if (step % 1000 == 0) {
+                leaderboard.drain();
+            }
+        }
+
+        int ranked = 0;
+        for (long balance : balances) {
+            if (balance > 0) ranked++;
+        }
+        assertEquals(ranked, leaderboard.size());
+
+        for (int account = 0; account < accounts; account += 97) {
+            if (balances[account] == 0) {
+                assertEquals(0, leaderboard.rank(0, account));
+                continue;
+            }
+            int expected = 1;
+            for (int other = 0; other < accounts; other++) {
+                if (balances[other] > balances[account]
+                        || (balances[other] == balances[account] && other < account)) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, leaderboard.rank(0, account));
+            long[] entry = page(leaderboard, expected - 1, 1).get(0);
+            assertEquals(account, entry[1]);
+            assertEquals(balances[account], entry[2]);
+        }
+    }
+
+    @Test
+    void rebuildKeepsChangesStagedMeanwhile() throws Exception {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.update(0, 9, 1000);
+
+        leaderboard.rebuild(consumer -> {
+            consumer.accept(0, 1, 100);
+            consumer.accept(0, 2, 200);
+            // Changes made while the source is read are newer than what it returns
+            leaderboard.update(0, 1, 700);
+            consumer.accept(0, 3, 300);
+        });
+
+        assertTrue(leaderboard.isReady());
+        assertEquals(4, leaderboard.size(), "the account staged before the rebuild is kept");
+        assertEquals(1, leaderboard.rank(0, 9));
+        assertEquals(2, leaderboard.rank(0, 1));
+        assertEquals(4, leaderboard.rank(0, 2));
+    }
+
+    @Test
+    void clearDropsStagedChanges() {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.update(0, 1, 100);
+        leaderboard.clear();
+        assertEquals(0, leaderboard.size());
+    }
+}
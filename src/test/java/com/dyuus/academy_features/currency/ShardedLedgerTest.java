@@ -0,0 +1,98 @@
+package com.dyuus.academy_features.currency;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedLedgerTest {
+    @TempDir
+    Path dir;
+
+    // Every account of these tests falls in shard 0x2a
+    private static long msb(int account) {
+        return 0x2aL << 56 | account;
+    }
+
+    private List<String> files() throws Exception {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            files.forEach(file -> names.add(file.getFileName().toString()));
+        }
+        names.sort(null);
+        return names;
+    }
+
+    @Test
+    void shardGrowsAndKeepsEveryAccount() throws Exception {
+        ShardedLedger ledger = ShardedLedger.open(dir);
+        assertTrue(ledger.isNew());
+        // Far more than the half of MIN_CAPACITY a shard holds before growing
+        int accounts = BalanceLedger.MIN_CAPACITY * 4;
+        for (int i = 1; i <= accounts; i++) {
+            ledger.write(msb(i), i, i * 10L);
+        }
+        for (int i = 1; i <= accounts; i++) {
+            assertEquals(i * 10L, ledger.read(msb(i), i));
+        }
+        assertEquals(-1, ledger.read(msb(accounts + 1), accounts + 1));
+        ledger.write(msb(7), 7, 5);
+        ledger.checkpoint();
+        ledger.close();
+
+        // Only the last generation is left: 1024 accounts at most half full
+        assertEquals(List.of("2a-11.ledger"), files());
+
+        ShardedLedger reopened = ShardedLedger.open(dir);
+        assertFalse(reopened.isNew());
+        Map<Long, Long> balances = new HashMap<>();
+        reopened.forEach((msb, lsb, balance) -> balances.put(lsb, balance));
+        assertEquals(accounts, balances.size());
+        assertEquals(5L, (long) balances.get(7L));
+        assertEquals(accounts * 10L, (long) balances.get((long) accounts));
+        reopened.close();
+    }
+
+    @Test
+    void incompleteGenerationFallsBackToThePreviousOne() throws Exception {
+        ShardedLedger ledger = ShardedLedger.open(dir);
+        ledger.write(msb(1), 1, 100);
+        ledger.close();
+
+        // A crash while growing leaves a larger file without its magic
+        Files.write(dir.resolve("2a-9.ledger"), new byte[24 + 512 * BalanceLedger.RECORD_SIZE]);
+
+        ShardedLedger reopened = ShardedLedger.open(dir);
+        assertEquals(100, reopened.read(msb(1), 1));
+        reopened.close();
+        assertEquals(List.of("2a-8.ledger"), files());
+    }
+
+    @Test
+    void importReplacesTheContents() throws Exception {
+        ShardedLedger ledger = ShardedLedger.open(dir);
+        ledger.write(msb(1), 1, 100);
+
+        int imported = ledger.importFrom(consumer -> {
+            consumer.accept(msb(2), 2, 200);
+            consumer.accept(3L << 56, 3, 300);
+        });
+        assertEquals(2, imported);
+        assertEquals(-1, ledger.read(msb(1), 1));
+        assertEquals(200, ledger.read(msb(2), 2));
+        assertEquals(300, ledger.read(3L << 56, 3));
+        ledger.close();
+        assertTrue(ShardedLedger.exists(dir));
+        assertFalse(files().contains("import.pending"));
+    }
+}
@@ -0,0 +1,101 @@
+package com.dyuus.academy_features.screen;
+
+import com.dyuus.academy_features.config.ShopCatalog;
+import com.dyuus.academy_features.config.ShopItem;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShopScreenHandlerTest {
+
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    private static List<ShopItem> items(int stonePrice) {
+        List<ShopItem> items = new ArrayList<>();
+        for (String itemId : new String[]{"minecraft:dirt", "minecraft:stone"}) {
+            ShopItem item = new ShopItem();
+            item.itemId = itemId;
+            item.displayName = itemId;
+            item.buyPrice = itemId.equals("minecraft:stone") ? stonePrice : 1;
+            item.canBuy = true;
+            item.maxStackSize = 64;
+            items.add(item);
+        }
+        return items;
+    }
+
+    @Test
+    void acceptsRequestsForTheCurrentCatalog() {
+        ShopCatalog opened = ShopCatalog.of("shop", "Boutique", items(10));
+        // A reload that changed nothing builds a new catalog with the same version
+        ShopCatalog current = ShopCatalog.of("shop", "Boutique", items(10));
+        int stone = opened.items().get(1).entryId;
+
+        assertEquals(1, ShopScreenHandler.resolveIndex(opened, current, opened.version(), stone));
+        assertEquals(-1, ShopScreenHandler.resolveIndex(opened, current, opened.version(), stone + 1),
+                "unknown entries are rejected");
+    }
+
+    @Test
+    void rejectsRequestsAfterAReloadWhileOpen() {
+        ShopCatalog opened = ShopCatalog.of("shop", "Boutique", items(10));
+        int stone = opened.items().get(1).entryId;
+
+        // The screen stays open while /shop reload changes a price
+        ShopCatalog reloaded = ShopCatalog.of("shop", "Boutique", items(1));
+        assertEquals(stone, reloaded.items().get(1).entryId, "the entry keeps its ID across the reload");
+        assertEquals(-1, ShopScreenHandler.resolveIndex(opened, reloaded, opened.version(), stone));
+        assertEquals(-1, ShopScreenHandler.resolveIndex(opened, reloaded, reloaded.version(), stone),
+                "a request must match the screen's catalog too");
+    }
+
+    @Test
+    void rejectsRequestsForARemovedShop() {
+        ShopCatalog opened = ShopCatalog.of("shop", "Boutique", items(10));
+        int stone = opened.items().get(1).entryId;
+        assertEquals(-1, ShopScreenHandler.resolveIndex(opened, null, opened.version(), stone));
+    }
+
+    @Test
+    void paidStacksThatOnlyPartlyFitAreDropped() {
+        List<ItemStack> cart = List.of(
+                new ItemStack(Items.STONE, 64),
+                new ItemStack(Items.STONE, 64),
+                new ItemStack(Items.DIAMOND, 5));
+
+        // Room for 70 items: the second stack only partly fits, the third not at all
+        int[] room = {70};
+        List<ItemStack> inserted = new ArrayList<>();
+        List<ItemStack> dropped = new ArrayList<>();
+        ShopScreenHandler.give(cart, stack -> {
+            int moved = Math.min(room[0], stack.getCount());
+            if (moved > 0) {
+                inserted.add(stack.split(moved));
+                room[0] -= moved;
+            }
+        }, dropped::add);
+
+        assertEquals(2, inserted.size());
+        assertEquals(64, inserted.get(0).getCount());
+        assertEquals(6, inserted.get(1).getCount());
+        assertEquals(2, dropped.size());
+        assertEquals(58, dropped.get(0).getCount());
+        assertTrue(dropped.get(0).isOf(Items.STONE));
+        assertEquals(5, dropped.get(1).getCount());
+        assertTrue(dropped.get(1).isOf(Items.DIAMOND));
+        assertEquals(64, cart.get(1).getCount(), "the cart's stacks are copied, not given");
+    }
+}
@@ -0,0 +1,74 @@
+package com.dyuus.academy_features.screen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ShopSearchIndexTest {
+
+    private static final String[][] ENTRIES = {
+            {"Bûche de chêne", "minecraft:oak_log"},
+            {"Fireball charge", "minecraft:fire_charge"},
+            {"Poké Ball", "cobblemon:poke_ball"},
+            {"Potion", "cobblemon:potion"},
+            {"Super Ball", "cobblemon:great_ball"},
+            {"Poké Ball", "cobblemon:poke_ball"},
+    };
+
+    private static ShopSearchIndex index() {
+        ShopSearchIndex index = new ShopSearchIndex(ENTRIES.length);
+        for (int i = 0; i < ENTRIES.length; i++) {
+            index.add(i, ENTRIES[i][0], ENTRIES[i][1]);
+        }
+        return index;
+    }
+
+    private static int[] search(ShopSearchIndex index, String query) {
+        int[] out = new int[ENTRIES.length];
+        int count = index.search(ShopSearchIndex.normalize(query), out);
+        return Arrays.copyOf(out, count);
+    }
+
+    @Test
+    void normalizesAccentsCaseAndPunctuation() {
+        assertEquals("buche de chene", ShopSearchIndex.normalize("Bûche  de Chêne !"));
+        assertEquals("cobblemon poke ball", ShopSearchIndex.normalize("cobblemon:poke_ball"));
+        assertEquals("", ShopSearchIndex.normalize(null));
+    }
+
+    @Test
+    void ranksWordPrefixesAboveSubstringsThenCatalogOrder() {
+        ShopSearchIndex index = index();
+
+        // "ball" starts a word of the Poké Balls and the Super Ball, only ends one of the Fireball
+        assertArrayEquals(new int[]{2, 4, 5, 1}, search(index, "Ball"));
+        // Accents do not matter, and every word of the query must match
+        assertArrayEquals(new int[]{2, 5}, search(index, "poké ball"));
+        assertArrayEquals(new int[]{0}, search(index, "chene"));
+    }
+
+    @Test
+    void toleratesTyposShortWordsAndItemIds() {
+        ShopSearchIndex index = index();
+
+        // Half the trigrams of "pokr" are found in "poke"
+        assertArrayEquals(new int[]{2, 5}, search(index, "pokr"));
+        // Short words match word starts, in names and item IDs
+        assertArrayEquals(new int[]{2, 3, 5}, search(index, "po"));
+        // Item IDs match too
+        assertArrayEquals(new int[]{0}, search(index, "oak"));
+        assertArrayEquals(new int[0], search(index, "diamant"));
+    }
+
+    @Test
+    void repeatedSearchesDoNotLeakScores() {
+        ShopSearchIndex index = index();
+        int[] first = search(index, "ball");
+        search(index, "potion");
+        search(index, "super");
+        assertArrayEquals(first, search(index, "ball"));
+    }
+}
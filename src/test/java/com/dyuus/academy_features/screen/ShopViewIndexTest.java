@@ -0,0 +1,75 @@
+package com.dyuus.academy_features.screen;
+
+import com.dyuus.academy_features.config.ShopItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ShopViewIndexTest {
+
+    private static ShopItem item(String name, boolean canBuy, int buyPrice, int sellPrice, String category) {
+        ShopItem item = new ShopItem();
+        item.itemId = "cobblemon:" + name.toLowerCase();
+        item.displayName = name;
+        item.canBuy = canBuy;
+        item.buyPrice = buyPrice;
+        item.canSell = true;
+        item.sellPrice = sellPrice;
+        item.category = category;
+        return item;
+    }
+
+    private static List<ShopItem> items() {
+        return List.of(
+                item("Hyper Ball", true, 1200, 600, "Balls"),
+                item("Potion", true, 300, 150, "Soins"),
+                item("Écaille Cœur", false, 0, 500, null),
+                item("Super Ball", true, 600, 300, "Balls"),
+                item("Poké Ball", true, 200, 100, "Balls"),
+                item("Baie Oran", true, 300, 50, "Soins"),
+                item("Pépite", false, 0, 2500, ""));
+    }
+
+    @Test
+    void sortsByNameAndPrice() {
+        ShopViewIndex index = new ShopViewIndex(items());
+
+        assertNull(index.order(ShopViewIndex.Sort.DEFAULT, 0));
+        // Accents are folded for sorting: "Écaille" sorts with the E
+        assertArrayEquals(new int[]{5, 2, 0, 6, 4, 1, 3}, index.order(ShopViewIndex.Sort.NAME, 0));
+        // Buyable entries cheapest first, ties in catalog order, then the sell-only ones
+        assertArrayEquals(new int[]{4, 1, 5, 3, 0, 2, 6}, index.order(ShopViewIndex.Sort.PRICE, 0));
+    }
+
+    @Test
+    void affordableEntriesComeFirstMostExpensiveFirst() {
+        ShopViewIndex index = new ShopViewIndex(items());
+
+        assertArrayEquals(new int[]{3, 5, 1, 4, 0, 2, 6}, index.order(ShopViewIndex.Sort.AFFORDABLE, 600));
+        // A price equal to the balance is affordable, one coin more is not
+        assertArrayEquals(new int[]{5, 1, 4, 3, 0, 2, 6}, index.order(ShopViewIndex.Sort.AFFORDABLE, 599));
+        assertArrayEquals(new int[]{4, 1, 5, 3, 0, 2, 6}, index.order(ShopViewIndex.Sort.AFFORDABLE, 0));
+        assertArrayEquals(new int[]{0, 3, 5, 1, 4, 2, 6}, index.order(ShopViewIndex.Sort.AFFORDABLE, Long.MAX_VALUE));
+
+        // A balance paying for the same entries reuses the order
+        int[] order = index.order(ShopViewIndex.Sort.AFFORDABLE, 700);
+        assertSame(order, index.order(ShopViewIndex.Sort.AFFORDABLE, 1199));
+    }
+
+    @Test
+    void groupsCategoriesAlphabetically() {
+        ShopViewIndex index = new ShopViewIndex(items());
+
+        assertArrayEquals(new String[]{"Balls", "Soins"}, index.categories());
+        assertArrayEquals(new int[]{0, 3, 4}, index.categoryEntries(0));
+        assertArrayEquals(new int[]{1, 5}, index.categoryEntries(1));
+        assertEquals(1, index.categoryOf(5));
+        assertEquals(-1, index.categoryOf(2), "entries without a category belong to none");
+        assertEquals(-1, index.categoryOf(6));
+    }
+}